@@ -88,6 +88,10 @@ public class CalliopeHomeController
 		CalliopeData.getInstance().getExecutor().shutdown();
 		// Shutdown ExifTool
 		CalliopeData.getInstance().getMetadataManager().shutdown();
+		// Save the elevation cache
+		CalliopeData.getInstance().getElevationData().shutdown();
+		// Close the metadata cache
+		CalliopeData.getInstance().getMetadataCache().shutdown();
 		// Clear any temp files made
 		CalliopeData.getInstance().getTempDirectoryManager().shutdown();
 		// Kill the Application
@@ -579,7 +579,9 @@ public class CalliopeImportController
 					// Update our on succeeded handler to re-enable the import button
 					importTask.setOnSucceeded(event ->
 					{
-						onSucceeded.handle(event);
+						// Not every data source needs to do anything once its import succeeds
+						if (onSucceeded != null)
+							onSucceeded.handle(event);
 						// Also clear the selection since we're using this combo-box as more of an item list than anything
 						// Because we're in a listener we can't actually modify the combobox in here, so use Platform.runLater to put it into a queue
 						Platform.runLater(() -> this.importListView.getSelectionModel().clearSelection());
@@ -4,9 +4,12 @@ import controller.importView.SitePopOverController;
 import controller.mapView.LayeredMap;
 import controller.mapView.MapCircleController;
 import controller.mapView.MapLayers;
+import controller.mapView.MapNodePool;
+import controller.mapView.MapSiteBoundary;
+import controller.mapView.MapSitePin;
 import fxmapcontrol.*;
 import javafx.animation.*;
-import javafx.beans.binding.Bindings;
+import javafx.application.Platform;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleDoubleProperty;
@@ -22,9 +25,6 @@ import javafx.fxml.FXMLLoader;
 import javafx.geometry.Bounds;
 import javafx.geometry.Point2D;
 import javafx.geometry.Point3D;
-import javafx.geometry.Pos;
-import javafx.scene.CacheHint;
-import javafx.scene.Node;
 import javafx.scene.control.Button;
 import javafx.scene.control.*;
 import javafx.scene.control.Label;
@@ -38,28 +38,30 @@ import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import javafx.util.Duration;
 import javafx.util.StringConverter;
-import library.AlignedMapNode;
 import library.DragResizer;
 import model.CalliopeData;
 import model.constant.CalliopeDataFormats;
 import model.constant.MapProviders;
+import model.cyverse.DownloadEngine;
 import model.cyverse.ImageCollection;
+import model.elasticsearch.GeoAggregationCache;
 import model.elasticsearch.GeoBucket;
+import model.elasticsearch.ImagePathIterator;
 import model.elasticsearch.QueryImageEntry;
 import model.elasticsearch.query.ElasticSearchQuery;
 import model.elasticsearch.query.MapQueryCondition;
 import model.elasticsearch.query.QueryCondition;
 import model.elasticsearch.query.QueryEngine;
 import model.image.Vector3;
-import model.site.Boundary;
 import model.site.Site;
 import model.threading.ErrorTask;
-import model.threading.ReRunnableService;
+import model.threading.ReRunnableAsyncService;
 import model.transitions.HeightTransition;
 import model.util.FXMLLoaderUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.controlsfx.control.*;
+import org.controlsfx.control.action.Action;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.fxmisc.easybind.EasyBind;
@@ -219,12 +221,19 @@ public class CalliopeMapController
 	private static final Image STANDARD_ARROW = new Image("/images/analysisWindow/arrowDivider.png");
 	private static final Image HIGHLIGHTED_ARROW = new Image("/images/analysisWindow/arrowDividerSelected.png");
 
-	// A list of current pins on the map displaying circles with an image amount inside
-	private final List<MapNode> currentCircles = new ArrayList<>();
-	// A parallel list of controllers to that list of pins
-	private final List<MapCircleController> currentCircleControllers = new ArrayList<>();
 	// The zoom threshold where we start to render polygons instead of pins
 	private static final Double PIN_TO_POLY_THRESHOLD = 10D;
+	// The number of circles, pins, and site boundaries created up front so the first redraws don't have to
+	private static final Integer PREALLOCATED_CIRCLES = 256;
+	private static final Integer PREALLOCATED_SITE_NODES = 64;
+	// How far past each edge of the viewport nodes stay attached, as a fraction of the viewport's size. This keeps nodes
+	// dragged in from just off screen visible until the next redraw
+	private static final Double VIEWPORT_MARGIN = 0.5;
+
+	// The pool of circles on the map displaying an image amount inside, only circles inside the viewport are attached
+	private MapNodePool<MapCircleController> circlePool;
+	// The buckets returned by the last circle drawing run, some of which may be outside of the viewport
+	private List<GeoBucket> currentGeoBuckets = new ArrayList<>();
 
 	// Flag telling us if the query box is currently expanded or contracted
 	private Boolean expandedQuery = false;
@@ -237,10 +246,16 @@ public class CalliopeMapController
 
 	// The currently selected circle
 	private final ObjectProperty<MapCircleController> selectedCircle = new SimpleObjectProperty<>();
+	// A token identifying the newest circle metadata lookup, pages from older lookups are thrown away
+	private Object currentCircleLookup = null;
 
-	// Mapping of site codes to map objects
-	private Map<String, MapPolygon> codesToPoly;
-	private Map<String, MapNode> codesToPin;
+	// Mapping of site codes to the locations making up the site's boundary, built once the sites are retrieved
+	private volatile Map<String, List<Location>> codesToBoundary = new HashMap<>();
+	// The pools of site pins and site boundaries, only the sites inside the viewport are attached
+	private MapNodePool<MapSitePin> sitePinPool;
+	private MapNodePool<MapSiteBoundary> siteBoundaryPool;
+	// The site codes returned by the last site drawing run
+	private List<String> currentSiteCodes = new ArrayList<>();
 
 	/**
 	 * Initialize sets up the analysis window and bindings
@@ -328,134 +343,106 @@ public class CalliopeMapController
 		/// Setup our sites on the map. When a new site gets added we add a polygon & pin, when it gets removed we clear the polygon & pin
 		///
 
-		List<Node> mapSiteNodes = new ArrayList<>();
-		ReRunnableService<List<String>> siteBoundaryDrawingService = new ReRunnableService<>(() ->
+		// Site pins are shown when zoomed out, clicking one shows the popover for its site
+		this.sitePinPool = new MapNodePool<>(this.map, MapLayers.SITE_PINS, PREALLOCATED_SITE_NODES, () ->
+		{
+			MapSitePin mapPin = new MapSitePin();
+			// When we click a pin, show the popover
+			mapPin.setOnMouseClicked(event ->
+			{
+				// Call our controller's update method and then show the popup
+				sitePopOverController.updateSite(mapPin.getSite());
+				popOver.show(mapPin);
+				event.consume();
+			});
+			return mapPin;
+		}, mapPin -> mapPin);
+		// Site boundaries are shown when zoomed in, clicking one shows the popover for its site
+		this.siteBoundaryPool = new MapNodePool<>(this.map, MapLayers.BORDER_POLYGON, PREALLOCATED_SITE_NODES, () ->
+		{
+			MapSiteBoundary mapPolygon = new MapSiteBoundary();
+			// When we click a polygon, display the popover
+			mapPolygon.setOnMouseClicked(event ->
+			{
+				// Call our controller's update method and then show the popup
+				sitePopOverController.updateSite(mapPolygon.getSite());
+				popOver.show(mapPolygon);
+				event.consume();
+			});
+			// Pass events through to the map so you can drag and drop through the polygon
+			mapPolygon.addEventHandler(MouseEvent.ANY, event -> Event.fireEvent(map, event));
+			return mapPolygon;
+		}, mapPolygon -> mapPolygon);
+
+		ReRunnableAsyncService<List<String>> siteBoundaryDrawingService = new ReRunnableAsyncService<>(() ->
 		{
 			// Compute the bounds of the map inside of the window, this is used to compute the extent to which we can see the map
-			// We do it here so that it's on the FXApplicationThread and not in our custom task thread
 			Bounds boundsInParent = map.getBoundsInParent();
-			return new ErrorTask<List<String>>()
-			{
-				@Override
-				protected List<String> call()
-				{
-					// Using the bounds we compute the maximum and minimum lat/long values which we will pass to elasticsearch later
-					// Location topLeft = CalliopeMapController.this.map.getProjection().viewportPointToLocation(new Point2D(boundsInParent.getMinX(), boundsInParent.getMinY()));
-					// Location bottomRight = CalliopeMapController.this.map.getProjection().viewportPointToLocation(new Point2D(boundsInParent.getMaxX(), boundsInParent.getMaxY()));
-					Location topLeft = CalliopeMapController.this.map.viewToLocation(new Point2D(boundsInParent.getMinX(), boundsInParent.getMinY()));
-                    Location bottomRight = CalliopeMapController.this.map.viewToLocation(new Point2D(boundsInParent.getMaxX(), boundsInParent.getMaxY()));
-
-					CalliopeMapController.this.map.setDisable(true);	// Disable map movement while loading site boundaries
-					// This is the important line. We call ES to grab all site codes within our viewport
-					List<String> temp = CalliopeData.getInstance().getEsConnectionManager().grabSiteCodesWithin(
-							MathUtil.clamp(topLeft.getLatitude(), -90.0, 90.0),
-							MathUtil.clamp(topLeft.getLongitude(), -180.0, 180.0),
-							MathUtil.clamp(bottomRight.getLatitude(), -90.0, 90.0),
-							MathUtil.clamp(bottomRight.getLongitude(), -180.0, 180.0));
-					CalliopeMapController.this.map.setDisable(false);
-					return temp;
-				}
-			};
+			// Using the bounds we compute the maximum and minimum lat/long values which we will pass to elasticsearch later
+			Location topLeft = this.map.viewToLocation(new Point2D(boundsInParent.getMinX(), boundsInParent.getMinY()));
+			Location bottomRight = this.map.viewToLocation(new Point2D(boundsInParent.getMaxX(), boundsInParent.getMaxY()));
+
+			// This is the important line. We ask ES for all site codes within our viewport, if the map moves again before it
+			// answers this request is cancelled and replaced
+			return CalliopeData.getInstance().getEsConnectionManager().grabSiteCodesWithinAsync(
+					MathUtil.clamp(topLeft.getLatitude(), -90.0, 90.0),
+					MathUtil.clamp(topLeft.getLongitude(), -180.0, 180.0),
+					MathUtil.clamp(bottomRight.getLatitude(), -90.0, 90.0),
+					MathUtil.clamp(bottomRight.getLongitude(), -180.0, 180.0));
 		});
 		siteBoundaryDrawingService.addFinishListener(siteCodesToDraw ->
 		{
-			// Remove any known nodes from the map and clear the site nodes list
-			mapSiteNodes.forEach(this.map::removeChild);
-			mapSiteNodes.clear();
-			// For each of the returned site codes....
-			for (String siteCode : siteCodesToDraw)
-			{
-				// If we're zoomed in far enough, show the polygon, otherwise show the pin
-				if (this.map.getZoomLevel() > PIN_TO_POLY_THRESHOLD) {
-					if(codesToPoly.containsKey(siteCode)) {
-						mapSiteNodes.add(codesToPoly.get(siteCode));
-						this.map.addChild(codesToPoly.get(siteCode), MapLayers.BORDER_POLYGON);
-					}
-				} else {
-					if (codesToPin.containsKey(siteCode)) {
-						mapSiteNodes.add(codesToPin.get(siteCode));
-						this.map.addChild(codesToPin.get(siteCode), MapLayers.SITE_PINS);
-					}
-				}
-			}
+			// Store the site codes and then draw them
+			this.currentSiteCodes = siteCodesToDraw;
+			this.showSites();
 		});
+		// Hide/Show sites when the toggle switches are toggled
+		this.tswNEON.selectedProperty().addListener((observable, oldValue, newValue) -> this.showSites());
+		this.tswUSFS.selectedProperty().addListener((observable, oldValue, newValue) -> this.showSites());
+		this.tswLTAR.selectedProperty().addListener((observable, oldValue, newValue) -> this.showSites());
 
 		///
 		/// Setup the circles that aggregate images into bucket. Use a service to thread this work off
 		///
 
+		// Cache of the circles in areas we've already seen, so panning back over an area does not query ES again
+		GeoAggregationCache geoAggregationCache = new GeoAggregationCache(CalliopeData.getInstance().getEsConnectionManager(), CalliopeData.getInstance().getSensitiveConfigurationManager().getMapGeoCacheMaxMegabytes() * 1024 * 1024);
 		// Service that runs in the background drawing new circles every time the user zooms in and out
-		ReRunnableService<List<GeoBucket>> circleDrawingService = new ReRunnableService<>(() ->
+		ReRunnableAsyncService<List<GeoBucket>> circleDrawingService = new ReRunnableAsyncService<>(() ->
 		{
 			// Compute the bounds of the map inside of the window, this is used to compute the extent to which we can see the map
-			// We do it here so that it's on the FXApplicationThread and not in our custom task thread
 			Bounds boundsInParent = map.getBoundsInParent();
-			return new ErrorTask<List<GeoBucket>>()
-			{
-				@Override
-				protected List<GeoBucket> call()
-				{
-					// Using the bounds we compute the maximum and minimum lat/long values which we will pass to elasticsearch later
-					// Location topLeft = CalliopeMapController.this.map.getProjection().viewportPointToLocation(new Point2D(boundsInParent.getMinX(), boundsInParent.getMinY()));
-					// Location bottomRight = CalliopeMapController.this.map.getProjection().viewportPointToLocation(new Point2D(boundsInParent.getMaxX(), boundsInParent.getMaxY()));
-					Location topLeft = CalliopeMapController.this.map.viewToLocation(new Point2D(boundsInParent.getMinX(), boundsInParent.getMinY()));
-					Location bottomRight = CalliopeMapController.this.map.viewToLocation(new Point2D(boundsInParent.getMaxX(), boundsInParent.getMaxY()));
-
-					// This is the important line. We call ES to perform an aggregation of all uploaded images given bounds and a zoom level.
-					// This call will return a list of buckets including number of images per bucket and centroids for each bucket
-					return CalliopeData.getInstance().getEsConnectionManager().performGeoAggregation(
-							MathUtil.clamp(topLeft.getLatitude(), -90.0, 90.0),
-							MathUtil.clamp(topLeft.getLongitude(), -180.0, 180.0),
-							MathUtil.clamp(bottomRight.getLatitude(), -90.0, 90.0),
-							MathUtil.clamp(bottomRight.getLongitude(), -180.0, 180.0),
-							CalliopeMapController.this.depthForCurrentZoom(),
-							CalliopeMapController.this.currentQuery.getValue(),
-							CalliopeMapController.this.spnMaxImagesPerBucket.getValue());
-				}
-			};
+			// Using the bounds we compute the maximum and minimum lat/long values which we will pass to elasticsearch later
+			Location topLeft = this.map.viewToLocation(new Point2D(boundsInParent.getMinX(), boundsInParent.getMinY()));
+			Location bottomRight = this.map.viewToLocation(new Point2D(boundsInParent.getMaxX(), boundsInParent.getMaxY()));
+
+			// This is the important line. We ask ES to perform an aggregation of all uploaded images given bounds and a zoom level.
+			// The request will return a list of buckets including number of images per bucket and centroids for each bucket. Only
+			// the parts of the map not in the cache are requested. If the map moves again before it answers, this request is
+			// cancelled and replaced
+			return geoAggregationCache.getBucketsAsync(
+					MathUtil.clamp(topLeft.getLatitude(), -90.0, 90.0),
+					MathUtil.clamp(topLeft.getLongitude(), -180.0, 180.0),
+					MathUtil.clamp(bottomRight.getLatitude(), -90.0, 90.0),
+					MathUtil.clamp(bottomRight.getLongitude(), -180.0, 180.0),
+					this.depthForCurrentZoom(),
+					this.currentQuery.getValue());
 		});
+		// Circles are created in code without any FXML, and recycled between redraws
+		this.circlePool = new MapNodePool<>(this.map, MapLayers.CIRCLES, PREALLOCATED_CIRCLES, () ->
+		{
+			MapCircleController circleController = new MapCircleController();
+			circleController.getMapNode().visibleProperty().bind(this.tswImageCounts.selectedProperty());
+			// When we click the circle attempt to retrieve details about that circle
+			circleController.getMapNode().setOnMouseClicked(event -> selectedCircle.setValue(circleController));
+			return circleController;
+		}, MapCircleController::getMapNode);
 		// Once the service is done with its thread, take the results and process them
 		circleDrawingService.addFinishListener(geoBuckets ->
 		{
-			// If we have more buckets than currently existing circles, create more pins until the two buckets have the same size.
-			// We do this so we avoid allocating significant chunks of memory every time this gets called. Try to re-use buckets we already have
-			while (geoBuckets.size() > currentCircles.size())
-			{
-				MapNode newCircle = this.createCircle();
-				newCircle.visibleProperty().bind(this.tswImageCounts.selectedProperty());
-				this.map.addChild(newCircle, MapLayers.CIRCLES);
-			}
-			// If we have less buckets than currently existing circles, remove circles until the two buckets have the same size. We
-			// do this to avoid having to allocate any memory at all
-			while (currentCircles.size() > geoBuckets.size())
-			{
-				MapNode toRemove = currentCircles.remove(currentCircles.size() - 1);
-				currentCircleControllers.remove(currentCircleControllers.size() - 1);
-				this.map.removeChild(toRemove);
-			}
-
-			// At this point our buckets should have the same size, test that here
-			if (currentCircles.size() == geoBuckets.size())
-			{
-				// Iterate over all pins on the map, we're going to update all of their positions and labels
-				for (int i = 0; i < currentCircles.size(); i++)
-				{
-					// Grab the bucket for that pin
-					GeoBucket geoBucket = geoBuckets.get(i);
-					// Grab the pin
-					MapNode mapNode = currentCircles.get(i);
-					// Grab the controller for that pin
-					MapCircleController mapCircleController = currentCircleControllers.get(i);
-					// Update the pin and the controller for that pin
-					mapNode.setLocation(new Location(geoBucket.getCenterLatitude(), geoBucket.getCenterLongitude()));
-					mapCircleController.updateItem(geoBucket);
-				}
-			}
-			else
-			{
-				// If the buckets are not the same size something went wrong, throw an error
-				CalliopeData.getInstance().getErrorDisplay().notify("Pin bucket and geo bucket were not the same size after normalization, this is an error!");
-			}
+			// Store the buckets and then draw the ones we can see
+			this.currentGeoBuckets = geoBuckets;
+			this.showCirclesInView();
 			// Make sure that the selected circle is cleared because it's no longer invalid
 			this.selectedCircle.setValue(null);
 		});
@@ -465,6 +452,8 @@ public class CalliopeMapController
 			// If we started dragging or got a null don't do anything
 			if (newValue == null || newValue)
 				return;
+			// Attach any circles we already have that moved into view right away
+			this.showCirclesInView();
 			// Redraw all the site boundaries in our view because we moved our map
 			siteBoundaryDrawingService.requestAnotherRun();
 			// Redraw all the pin circles with new values because we moved our map
@@ -473,11 +462,16 @@ public class CalliopeMapController
 		// When the mouse scroll is touched and the zoom is changed we update our circles too
 		this.map.zoomLevelProperty().addListener((observable, oldValue, newValue) ->
 		{
+			this.showCirclesInView();
 			siteBoundaryDrawingService.requestAnotherRun();
 			circleDrawingService.requestAnotherRun();
 		});
-		// When our query changes we request another circle drawing run which updates the mini circles containing images
-		this.currentQuery.addListener((observable, oldValue, newValue) -> circleDrawingService.requestAnotherRun());
+		// When our query changes we throw away the cached circles and request another circle drawing run which updates the mini circles containing images
+		this.currentQuery.addListener((observable, oldValue, newValue) ->
+		{
+			geoAggregationCache.invalidate();
+			circleDrawingService.requestAnotherRun();
+		});
 
 		///
 		/// Setup the transition to fade the query tab in and out from the bottom of the screen
@@ -678,27 +672,25 @@ public class CalliopeMapController
 		///
 
 		// A service that can download a selected circle's metadata
-		ReRunnableService<List<QueryImageEntry>> circleMetadataDownloader = new ReRunnableService<>(() ->
-			new ErrorTask<List<QueryImageEntry>>()
-			{
-				@Override
-				protected List<QueryImageEntry> call()
-				{
-					// Test if our input is non-null (it should never be null)
-					if (selectedCircle.getValue() != null)
-						// If it's not null, perform our DB access and return the result
-						return CalliopeData.getInstance().getEsConnectionManager().performCircleLookup(selectedCircle.getValue().getGeoBucket());
-					else
-						return null;
-				}
-			}, CalliopeData.getInstance().getExecutor().getImmediateExecutor());
-		// Once the service finishes we update our tableview with the new items
-		circleMetadataDownloader.addFinishListener(geoImageResults ->
+		ReRunnableAsyncService<Integer> circleMetadataDownloader = new ReRunnableAsyncService<>(() ->
 		{
-			// Update the items
-			this.tbvImageMetadata.getItems().setAll(geoImageResults);
-			// Make sure our title pane is expanded too
+			// Start over with an empty table, and make sure our title pane is expanded too
+			this.tbvImageMetadata.getItems().clear();
 			this.tpnCircleMetadata.setExpanded(true);
+
+			// Pages of this lookup are only shown while it is still the newest lookup
+			Object circleLookup = new Object();
+			this.currentCircleLookup = circleLookup;
+			// Perform our DB access, each page is added to the table as it arrives. If another circle is selected first this request is cancelled and replaced
+			return CalliopeData.getInstance().getEsConnectionManager().performCircleLookupAsync(
+					selectedCircle.getValue() != null ? selectedCircle.getValue().getGeoBucket() : null,
+					this.currentQuery.getValue(),
+					this.spnMaxImagesPerBucket.getValue(),
+					geoImageResults -> Platform.runLater(() ->
+					{
+						if (this.currentCircleLookup == circleLookup)
+							this.tbvImageMetadata.getItems().addAll(geoImageResults);
+					}));
 		});
 		// Whenever we select a new circle we ask our circle thread to perform another run
 		this.selectedCircle.addListener((observable, oldValue, newValue) ->
@@ -770,83 +762,14 @@ public class CalliopeMapController
 				Task<Boolean> cacheCodes = new Task<Boolean>() {
 					@Override
 					protected Boolean call() {
-						codesToPoly = new HashMap<>();
-						codesToPin = new HashMap<>();
+						Map<String, List<Location>> siteBoundaries = new HashMap<>();
 						this.updateMessage("Caching Map Sites");
 						this.updateProgress(0.5, 1.0);
-						for (Site site : CalliopeData.getInstance().getSiteManager().getSites()) {
-							if (site != null) {
-								// Convert the site's center to a location
-								Location centerPoint = new Location(site.getCenter().getLat(), site.getCenter().getLon());
-
-								// CREATE POLYGON
-
-								// Grab the polygon representing the boundary of this site
-								Boundary polygon = site.getBoundary();
-								// Create a map polygon to render this site's boundary
-								MapPolygon mapPolygon = new MapPolygon();
-								// Setup the polygon's boundary
-								mapPolygon.getLocations().addAll(polygon.getOuterBoundary().stream().map(coordinate -> new Location(coordinate.getLat(), coordinate.getLon())).collect(Collectors.toList()));
-								// Setup the polygon's center location point
-								mapPolygon.setLocation(centerPoint);
-								// Add a CSS attribute to all polygons so that we can style them later
-								mapPolygon.getStyleClass().add("site-boundary");
-								// Hide the polygon if the toggle switch is off
-								mapPolygon.visibleProperty().bind(
-										tswNEON.selectedProperty().and(Bindings.createBooleanBinding(() -> StringUtils.startsWithIgnoreCase(site.getCode(), "NEON"), site.nameProperty()))
-												.or(tswUSFS.selectedProperty().and(Bindings.createBooleanBinding(() -> StringUtils.startsWithIgnoreCase(site.getCode(), "USFS"), site.nameProperty())))
-												.or(tswLTAR.selectedProperty().and(Bindings.createBooleanBinding(() -> StringUtils.startsWithIgnoreCase(site.getCode(), "LTAR"), site.nameProperty()))));
-								// When we click a polygon, display the popover
-								mapPolygon.setOnMouseClicked(event ->
-								{
-									// Call our controller's update method and then show the popup
-									sitePopOverController.updateSite(site);
-									popOver.show(mapPolygon);
-									event.consume();
-								});
-								// Performance Tweaks
-								mapPolygon.setCache(true);
-								mapPolygon.setCacheHint(CacheHint.SPEED);
-								// Pass events through to the map so you can drag and drop through the polygon
-								mapPolygon.addEventHandler(MouseEvent.ANY, event -> Event.fireEvent(map, event));
-
-								// CREATE PIN
-
-								// Create a map pin to render the site's center point when zoomed out
-								MapNode mapPin = new AlignedMapNode(Pos.CENTER);
-								// Set the pin's center to be the node's center
-								mapPin.setLocation(centerPoint);
-								// Add a new imageview to the pin
-								ImageView pinImageView = new ImageView();
-								// Make sure the image represents if the pin is hovered or not
-								pinImageView.imageProperty().bind(EasyBind.monadic(mapPin.hoverProperty()).map(site::getIcon));
-								// Add the image to the pin
-								mapPin.getChildren().add(pinImageView);
-								// When we click a pin, show the popover
-								mapPin.setOnMouseClicked(event ->
-								{
-									// Call our controller's update method and then show the popup
-									sitePopOverController.updateSite(site);
-									popOver.show(mapPin);
-									event.consume();
-								});
-
-								// Hide/Show pins when the toggle switches are toggled
-								mapPin.visibleProperty().bind(
-										tswNEON.selectedProperty().and(Bindings.createBooleanBinding(() -> StringUtils.startsWithIgnoreCase(site.getCode(), "NEON"), site.nameProperty()))
-												.or(tswUSFS.selectedProperty().and(Bindings.createBooleanBinding(() -> StringUtils.startsWithIgnoreCase(site.getCode(), "USFS"), site.nameProperty())))
-												.or(tswLTAR.selectedProperty().and(Bindings.createBooleanBinding(() -> StringUtils.startsWithIgnoreCase(site.getCode(), "LTAR"), site.nameProperty()))));
-
-								// Performance Tweaks
-								mapPin.setCache(true);
-								mapPin.setCacheHint(CacheHint.SPEED);
-
-								// MAP SITECODE TO BOTH
-
-								codesToPoly.put(site.getCode(), mapPolygon);
-								codesToPin.put(site.getCode(), mapPin);
-							}
-						}
+						// Only the boundary locations are computed up front, the nodes that draw them come from a pool when the site is in view
+						for (Site site : CalliopeData.getInstance().getSiteManager().getSites())
+							if (site != null)
+								siteBoundaries.put(site.getCode(), site.getBoundary().getOuterBoundary().stream().map(coordinate -> new Location(coordinate.getLat(), coordinate.getLon())).collect(Collectors.toList()));
+						codesToBoundary = siteBoundaries;
 						this.updateProgress(1.0, 1.0);
 						return true;
 					}
@@ -857,26 +780,81 @@ public class CalliopeMapController
 	}
 
 	/**
-	 * Allocates a new pin node and stores the required references into the lists
-	 *
-	 * @return Returns a newly allocated map node with its controller and reference stored into parallel lists
+	 * Shows a circle for every bucket from the last circle drawing run that is inside of the viewport. Circles are taken from
+	 * the circle pool, so nothing is allocated unless more circles are visible than ever before
 	 */
-	private MapNode createCircle()
+	private void showCirclesInView()
 	{
-		// Create a new circle object, call our custom class that ensures the node remains centered on the geo-location
-		MapNode circle = new AlignedMapNode();
-		// Load the FXML document representing this circle
-		FXMLLoader fxmlLoader = FXMLLoaderUtils.loadFXML("mapView/MapCircle.fxml");
-		// Add FXML document to this circle
-		circle.getChildren().add(fxmlLoader.getRoot());
-		// Store the circle and its controller into the parallel lists
-		this.currentCircles.add(circle);
-		MapCircleController circleController = fxmlLoader.getController();
-		this.currentCircleControllers.add(circleController);
-		// When we click the circle attempt to retrieve details about that circle
-		circle.setOnMouseClicked(event -> selectedCircle.setValue(circleController));
-		// Return the circle
-		return circle;
+		// Compute the corners of the viewport, grown by a margin on every side
+		Bounds boundsInParent = this.map.getBoundsInParent();
+		Double marginX = boundsInParent.getWidth() * VIEWPORT_MARGIN;
+		Double marginY = boundsInParent.getHeight() * VIEWPORT_MARGIN;
+		Location topLeft = this.map.viewToLocation(new Point2D(boundsInParent.getMinX() - marginX, boundsInParent.getMinY() - marginY));
+		Location bottomRight = this.map.viewToLocation(new Point2D(boundsInParent.getMaxX() + marginX, boundsInParent.getMaxY() + marginY));
+
+		// Only keep the buckets inside of the viewport, the longitude range wraps if the viewport crosses the date line. When
+		// zoomed out far enough the grown viewport covers every longitude, tiles are 256 pixels wide
+		Boolean allLongitudesInView = boundsInParent.getWidth() + 2 * marginX >= 256 * Math.pow(2, this.map.getZoomLevel());
+		Boolean crossesDateLine = topLeft.getLongitude() > bottomRight.getLongitude();
+		List<GeoBucket> bucketsInView = new ArrayList<>();
+		for (GeoBucket geoBucket : this.currentGeoBuckets)
+		{
+			Double latitude = geoBucket.getCenterLatitude();
+			Double longitude = geoBucket.getCenterLongitude();
+			Boolean longitudeInView = allLongitudesInView ? true : crossesDateLine ?
+					longitude >= topLeft.getLongitude() || longitude <= bottomRight.getLongitude() :
+					longitude >= topLeft.getLongitude() && longitude <= bottomRight.getLongitude();
+			if (longitudeInView && latitude <= topLeft.getLatitude() && latitude >= bottomRight.getLatitude())
+				bucketsInView.add(geoBucket);
+		}
+
+		// If the selected circle is about to be reused for a different bucket, clear the selection
+		MapCircleController selected = this.selectedCircle.getValue();
+		GeoBucket selectedBucket = selected != null ? selected.getGeoBucket() : null;
+
+		// Update the circles and the controllers for those circles
+		this.circlePool.show(bucketsInView, (mapCircleController, geoBucket) ->
+		{
+			mapCircleController.getMapNode().setLocation(new Location(geoBucket.getCenterLatitude(), geoBucket.getCenterLongitude()));
+			mapCircleController.updateItem(geoBucket);
+		});
+
+		if (selected != null && (!this.circlePool.getAttachedItems().contains(selected) || selected.getGeoBucket() != selectedBucket))
+			this.selectedCircle.setValue(null);
+	}
+
+	/**
+	 * Shows the sites from the last site drawing run that are enabled by the toggle switches. If we're zoomed in far enough the
+	 * site boundaries are shown, otherwise the site pins are shown
+	 */
+	private void showSites()
+	{
+		// Grab the sites that are turned on
+		List<Site> sitesToShow = new ArrayList<>();
+		for (String siteCode : this.currentSiteCodes)
+		{
+			Site site = CalliopeData.getInstance().getSiteManager().getSiteByCode(siteCode);
+			if (site != null && (
+					(this.tswNEON.isSelected() && StringUtils.startsWithIgnoreCase(site.getCode(), "NEON")) ||
+					(this.tswUSFS.isSelected() && StringUtils.startsWithIgnoreCase(site.getCode(), "USFS")) ||
+					(this.tswLTAR.isSelected() && StringUtils.startsWithIgnoreCase(site.getCode(), "LTAR"))))
+				sitesToShow.add(site);
+		}
+
+		// If we're zoomed in far enough, show the polygons, otherwise show the pins
+		if (this.map.getZoomLevel() > PIN_TO_POLY_THRESHOLD)
+		{
+			// Sites whose boundaries haven't been cached yet are skipped until the next run
+			List<Site> sitesWithBoundaries = sitesToShow.stream().filter(site -> this.codesToBoundary.containsKey(site.getCode())).collect(Collectors.toList());
+			this.sitePinPool.clear();
+			// Boundaries are keyed by site so panning around doesn't reshape polygons of sites that are still shown
+			this.siteBoundaryPool.showKeyed(sitesWithBoundaries, Site::getCode, (mapPolygon, site) -> mapPolygon.setSite(site, this.codesToBoundary.get(site.getCode())));
+		}
+		else
+		{
+			this.siteBoundaryPool.clear();
+			this.sitePinPool.showKeyed(sitesToShow, Site::getCode, MapSitePin::setSite);
+		}
 	}
 
 	/**
@@ -997,7 +975,7 @@ public class CalliopeMapController
 	}
 
 	/**
-	 * Clicked to download the current query's images as a tar file
+	 * Clicked to download the current query's images either into a folder or into a single archive
 	 *
 	 * @param actionEvent consumed
 	 */
@@ -1006,57 +984,16 @@ public class CalliopeMapController
 		// Make sure that popups are enabled
 		if (!CalliopeData.getInstance().getSettings().getDisablePopups())
 		{
-			// Create a directory chooser to pick which directory to download to
-			DirectoryChooser directoryChooser = new DirectoryChooser();
-			// Set the title of the window
-			directoryChooser.setTitle("Pick a directory to download to");
-			// Set the initial directory to just be documents folder
-			directoryChooser.setInitialDirectory(FileSystemView.getFileSystemView().getDefaultDirectory());
-			// Grab the directory to save to
-			File dirToSaveTo = directoryChooser.showDialog(this.map.getScene().getWindow());
-
-			// Make sure we got a directory to save to
-			if (dirToSaveTo != null)
+			// Grab the current query
+			QueryBuilder currentQuery = this.currentQuery.getValue();
+			// Make sure it's valid
+			if (currentQuery != null)
 			{
-				// Make sure the directory is a directory, exists, and can be written to
-				if (dirToSaveTo.exists() && dirToSaveTo.isDirectory() && dirToSaveTo.canWrite())
-				{
-					// Grab the current query
-					QueryBuilder currentQuery = this.currentQuery.getValue();
-					// Make sure it's valid
-					if (currentQuery != null)
-					{
-						this.btnDownloadQuery.setDisable(true);
-						// Create a new task to perform the computation
-						ErrorTask<Void> errorTask = new ErrorTask<Void>()
-						{
-							@Override
-							protected Void call()
-							{
-								// Update the users on what the query is doing
-								this.updateMessage("Performing query to figure out which images to download...");
-								// Perform the query
-								List<String> absoluteImagePaths = CalliopeData.getInstance().getEsConnectionManager().getImagePathsMatching(currentQuery);
-								// Update the users again
-								this.updateMessage("Downloading images into '" + dirToSaveTo.getAbsolutePath() + "'...");
-								// Create a callback so we can easily update our task progress
-								DoubleProperty progressCallback = new SimpleDoubleProperty(0);
-								progressCallback.addListener((observable, oldValue, newValue) -> this.updateProgress(newValue.doubleValue(), 1.0));
-								// Call the final function to download data to disk
-								CalliopeData.getInstance().getCyConnectionManager().downloadImages(absoluteImagePaths, dirToSaveTo, progressCallback);
-								return null;
-							}
-						};
-						errorTask.setOnSucceeded(event -> this.btnDownloadQuery.setDisable(false));
-						// Execute the task
-						CalliopeData.getInstance().getExecutor().getImmediateExecutor().addTask(errorTask, true);
-					}
-				}
-				else
-				{
-					// If the directory is invalid, show an error
-					CalliopeData.getInstance().getErrorDisplay().notify("The directory chosen must exist and be writable!");
-				}
+				// Ask the user if they want loose files or a single archive
+				CalliopeData.getInstance().getErrorDisplay().notify("Download the query's images into a folder, or stream them into a single archive with a manifest of each image's path and checksum?",
+						new Action("Folder", event -> this.downloadQueryToDirectory(currentQuery)),
+						new Action("TAR Archive", event -> this.downloadQueryToArchive(currentQuery, "tar")),
+						new Action("ZIP Archive", event -> this.downloadQueryToArchive(currentQuery, "zip")));
 			}
 		}
 		else
@@ -1068,6 +1005,116 @@ public class CalliopeMapController
 		actionEvent.consume();
 	}
 
+	/**
+	 * Downloads the query's images into a directory the user picks
+	 *
+	 * @param currentQuery The query to download the images of
+	 */
+	private void downloadQueryToDirectory(QueryBuilder currentQuery)
+	{
+		// Create a directory chooser to pick which directory to download to
+		DirectoryChooser directoryChooser = new DirectoryChooser();
+		// Set the title of the window
+		directoryChooser.setTitle("Pick a directory to download to");
+		// Set the initial directory to just be documents folder
+		directoryChooser.setInitialDirectory(FileSystemView.getFileSystemView().getDefaultDirectory());
+		// Grab the directory to save to
+		File dirToSaveTo = directoryChooser.showDialog(this.map.getScene().getWindow());
+
+		// Make sure we got a directory to save to
+		if (dirToSaveTo != null)
+		{
+			// Make sure the directory is a directory, exists, and can be written to
+			if (dirToSaveTo.exists() && dirToSaveTo.isDirectory() && dirToSaveTo.canWrite())
+			{
+				this.btnDownloadQuery.setDisable(true);
+				// Create a new task to perform the computation
+				ErrorTask<Void> errorTask = new ErrorTask<Void>()
+				{
+					@Override
+					protected Void call()
+					{
+						// Update the users on what the query is doing
+						this.updateMessage("Performing query to figure out which images to download...");
+						// Perform the query, paths are paged in as the download needs them
+						ImagePathIterator absoluteImagePaths = CalliopeData.getInstance().getEsConnectionManager().getImagePathsMatching(currentQuery);
+						// Update the users again
+						this.updateMessage("Downloading images into '" + dirToSaveTo.getAbsolutePath() + "'...");
+						// Create a callback so we can easily update our task progress
+						DoubleProperty progressCallback = new SimpleDoubleProperty(0);
+						progressCallback.addListener((observable, oldValue, newValue) -> this.updateProgress(newValue.doubleValue(), 1.0));
+						// Call the final function to download data to disk
+						DownloadEngine.Report report = CalliopeData.getInstance().getCyConnectionManager().downloadImages(absoluteImagePaths, () -> absoluteImagePaths.getTotalHits() != null ? absoluteImagePaths.getTotalHits() : 0L, dirToSaveTo, progressCallback);
+						// Let the user know if anything didn't download
+						if (!report.getFailures().isEmpty())
+							CalliopeData.getInstance().getErrorDisplay().notify(report.getFailures().size() + " of " + (report.getFailures().size() + report.getDownloadedCount()) + " images could not be downloaded, see the error output for details.");
+						return null;
+					}
+				};
+				errorTask.setOnSucceeded(event -> this.btnDownloadQuery.setDisable(false));
+				// Execute the task
+				CalliopeData.getInstance().getExecutor().getImmediateExecutor().addTask(errorTask, true);
+			}
+			else
+			{
+				// If the directory is invalid, show an error
+				CalliopeData.getInstance().getErrorDisplay().notify("The directory chosen must exist and be writable!");
+			}
+		}
+	}
+
+	/**
+	 * Downloads the query's images straight into a single archive file the user picks
+	 *
+	 * @param currentQuery The query to download the images of
+	 * @param extension The archive's extension, either tar or zip
+	 */
+	private void downloadQueryToArchive(QueryBuilder currentQuery, String extension)
+	{
+		// Create a file chooser to pick which archive to write to
+		FileChooser fileChooser = new FileChooser();
+		// Set the title of the window
+		fileChooser.setTitle("Save Archive As");
+		// Set the initial directory to just be documents folder
+		fileChooser.setInitialDirectory(FileSystemView.getFileSystemView().getDefaultDirectory());
+		fileChooser.setInitialFileName("query." + extension);
+		fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter(extension.toUpperCase() + " Archive", "*." + extension));
+		// Grab the file to save to
+		File archiveFile = fileChooser.showSaveDialog(this.map.getScene().getWindow());
+
+		// Make sure we got a file to save to
+		if (archiveFile != null)
+		{
+			this.btnDownloadQuery.setDisable(true);
+			// Create a new task to perform the computation
+			ErrorTask<Void> errorTask = new ErrorTask<Void>()
+			{
+				@Override
+				protected Void call()
+				{
+					// Update the users on what the query is doing
+					this.updateMessage("Performing query to figure out which images to download...");
+					// Perform the query, paths are paged in as the download needs them
+					ImagePathIterator absoluteImagePaths = CalliopeData.getInstance().getEsConnectionManager().getImagePathsMatching(currentQuery);
+					// Update the users again
+					this.updateMessage("Downloading images into '" + archiveFile.getAbsolutePath() + "'...");
+					// Create a callback so we can easily update our task progress
+					DoubleProperty progressCallback = new SimpleDoubleProperty(0);
+					progressCallback.addListener((observable, oldValue, newValue) -> this.updateProgress(newValue.doubleValue(), 1.0));
+					// Stream the images into the archive
+					DownloadEngine.Report report = CalliopeData.getInstance().getCyConnectionManager().downloadImagesToArchive(absoluteImagePaths, () -> absoluteImagePaths.getTotalHits() != null ? absoluteImagePaths.getTotalHits() : 0L, archiveFile, currentQuery.toString(), progressCallback);
+					// Let the user know if anything didn't download
+					if (report != null && !report.getFailures().isEmpty())
+						CalliopeData.getInstance().getErrorDisplay().notify(report.getFailures().size() + " of " + (report.getFailures().size() + report.getDownloadedCount()) + " images could not be downloaded, they are listed in the archive's manifest.");
+					return null;
+				}
+			};
+			errorTask.setOnSucceeded(event -> this.btnDownloadQuery.setDisable(false));
+			// Execute the task
+			CalliopeData.getInstance().getExecutor().getImmediateExecutor().addTask(errorTask, true);
+		}
+	}
+
 	/**
 	 * Called to add the current filter to the analysis
 	 *
@@ -8,8 +8,10 @@ import javafx.scene.Node;
 import org.fxmisc.easybind.EasyBind;
 import org.fxmisc.easybind.Subscription;
 
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 
 /**
  * Special map that keeps track of map layers
@@ -66,4 +68,28 @@ public class LayeredMap extends Map
 		this.sortedNodes.remove(node);
 		this.zOrder.remove(node);
 	}
+
+	/**
+	 * Adds several nodes into the map at once, the children list is only updated once instead of once per node
+	 *
+	 * @param nodes The nodes to add to the list
+	 * @param zOrder The z-order to assign to every node
+	 */
+	public void addChildren(Collection<? extends Node> nodes, MapLayers zOrder)
+	{
+		nodes.forEach(node -> this.zOrder.put(node, zOrder.getZLayer()));
+		this.sortedNodes.addAll(nodes);
+	}
+
+	/**
+	 * Removes several nodes from the map at once, the children list is only updated once instead of once per node
+	 *
+	 * @param nodes The nodes to remove
+	 */
+	public void removeChildren(Collection<? extends Node> nodes)
+	{
+		// Use a set so each node in the map is checked against the removed nodes in constant time
+		this.sortedNodes.removeAll(new HashSet<Node>(nodes));
+		nodes.forEach(this.zOrder::remove);
+	}
 }
@@ -3,32 +3,26 @@ package controller.mapView;
 import javafx.animation.FillTransition;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
-import javafx.fxml.FXML;
 import javafx.scene.control.Label;
+import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
 import javafx.util.Duration;
+import library.AlignedMapNode;
 import model.elasticsearch.GeoBucket;
 
 /**
- * Simple controller file used to control pin behaviour when placed on the map
+ * Simple controller file used to control pin behaviour when placed on the map. The circle's nodes are built in code instead
+ * of loaded from FXML so that circles are cheap enough to create while the map is being redrawn
  */
 public class MapCircleController
 {
-	///
-	/// FXML Bound Fields Start
-	///
-
+	// The map node that positions the circle on the map
+	private final AlignedMapNode mapNode = new AlignedMapNode();
 	// The label containing the number of images in the pin aggregation
-	@FXML
-	public Label lblImageCount;
+	private final Label lblImageCount = new Label();
 	// The background circle that will dynamically change its size
-	@FXML
-	public Circle crlBackground;
-
-	///
-	/// FXML Bound Fields End
-	///
+	private final Circle crlBackground = new Circle(20);
 
 	// A reference to our data model source
 	private GeoBucket geoBucket = null;
@@ -43,11 +37,16 @@ public class MapCircleController
 	private static final Color SELECTED_HIGHLIGHTED_COLOR = Color.color(0.996, 0.980, 0.725);
 
 	/**
-	 * Initialize doesn't do anything here
+	 * Constructor builds the circle's nodes and sets up the color transitions
 	 */
-	@FXML
-	public void initialize()
+	public MapCircleController()
 	{
+		// Build the circle, a bordered background with the image count drawn on top of it
+		this.crlBackground.setStroke(Color.DARKGREY);
+		this.crlBackground.setStrokeWidth(2);
+		this.lblImageCount.setMouseTransparent(true);
+		this.mapNode.getChildren().add(new StackPane(this.crlBackground, this.lblImageCount));
+
 		// Set the default color
 		this.crlBackground.setFill(REGULAR_COLOR);
 
@@ -132,6 +131,14 @@ public class MapCircleController
 		return this.selected;
 	}
 
+	/**
+	 * @return The map node that positions the circle on the map
+	 */
+	public AlignedMapNode getMapNode()
+	{
+		return this.mapNode;
+	}
+
 	/**
 	 * Getter for geo-bucket for a given circle
 	 *
@@ -0,0 +1,177 @@
+package controller.mapView;
+
+import javafx.scene.Node;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * A recycled pool of map nodes of one kind, such as the image count circles or site pins. Showing a new list of data
+ * rebinds the nodes already on the map to the new data, either by position or by key, only attaching or detaching nodes
+ * when needed, and detached nodes are kept for the next time instead of being thrown away. Callers only pass in the data that is inside
+ * of the viewport, so the number of nodes attached to the scene graph stays proportional to what can be seen
+ *
+ * @param <T> The type of item pooled, either the node itself or an object that owns the node
+ */
+public class MapNodePool<T>
+{
+	// The map the nodes are attached to
+	private final LayeredMap map;
+	// The layer the nodes are attached to
+	private final MapLayers layer;
+	// Creates a new item when the pool runs out
+	private final Supplier<T> itemFactory;
+	// Returns the node of an item
+	private final Function<T, Node> nodeOf;
+
+	// Items that are currently attached to the map, in the same order as the data they are bound to when shown by position
+	private final List<T> attachedItems = new ArrayList<>();
+	// A map of data key -> attached item, only filled when the items were shown by key
+	private final Map<Object, T> attachedItemsByKey = new HashMap<>();
+	// Items that are not attached and are ready to be reused
+	private final Deque<T> freeItems = new ArrayDeque<>();
+
+	/**
+	 * Constructor creates the preallocated items, none of them are attached yet
+	 *
+	 * @param map The map the nodes are attached to
+	 * @param layer The layer the nodes are attached to
+	 * @param preallocatedCount The number of items to create up front
+	 * @param itemFactory Creates a new item when the pool runs out
+	 * @param nodeOf Returns the node of an item
+	 */
+	public MapNodePool(LayeredMap map, MapLayers layer, Integer preallocatedCount, Supplier<T> itemFactory, Function<T, Node> nodeOf)
+	{
+		this.map = map;
+		this.layer = layer;
+		this.itemFactory = itemFactory;
+		this.nodeOf = nodeOf;
+		for (Integer i = 0; i < preallocatedCount; i++)
+			this.freeItems.push(itemFactory.get());
+	}
+
+	/**
+	 * Shows one node per data entry. Extra nodes are detached and returned to the pool, missing nodes are taken from the pool
+	 * and attached, and then every attached node is bound to its data entry. Must be called on the FX thread
+	 *
+	 * @param data The data to show, one node per entry
+	 * @param binder Binds an item to a data entry, called for every attached item
+	 * @param <D> The type of data shown
+	 */
+	public <D> void show(List<D> data, BiConsumer<T, D> binder)
+	{
+		// Items are bound by position, so none of them belong to a key anymore
+		this.attachedItemsByKey.clear();
+
+		// Detach any items we no longer need all at once and keep them for later
+		if (this.attachedItems.size() > data.size())
+		{
+			List<T> toDetach = this.attachedItems.subList(data.size(), this.attachedItems.size());
+			this.detach(new ArrayList<>(toDetach));
+			toDetach.clear();
+		}
+
+		// Grab any items we're missing from the pool, only creating new ones if the pool is empty
+		List<Node> nodesToAttach = new ArrayList<>();
+		while (this.attachedItems.size() < data.size())
+		{
+			T item = this.freeItems.isEmpty() ? this.itemFactory.get() : this.freeItems.pop();
+			this.attachedItems.add(item);
+			nodesToAttach.add(this.nodeOf.apply(item));
+		}
+
+		// Bind before attaching so new nodes never show up with old data
+		for (Integer i = 0; i < data.size(); i++)
+			binder.accept(this.attachedItems.get(i), data.get(i));
+		if (!nodesToAttach.isEmpty())
+			this.map.addChildren(nodesToAttach, this.layer);
+	}
+
+	/**
+	 * Shows one node per data entry like show(), but items are matched to data by key. An item whose key is still shown keeps
+	 * its node without being bound again, so only data that newly came into view is bound. Use this when binding is expensive,
+	 * such as reshaping a polygon. Must be called on the FX thread
+	 *
+	 * @param data The data to show, one node per entry, each with a unique key
+	 * @param keyOf Returns the key of a data entry
+	 * @param binder Binds an item to a data entry, only called for items bound to a new key
+	 * @param <D> The type of data shown
+	 * @param <K> The type of key
+	 */
+	public <D, K> void showKeyed(List<D> data, Function<D, K> keyOf, BiConsumer<T, D> binder)
+	{
+		// Keep the items whose key is still shown, everything else gets a new item
+		Map<Object, T> keptItemsByKey = new HashMap<>();
+		List<D> newData = new ArrayList<>();
+		Set<K> seenKeys = new HashSet<>();
+		for (D entry : data)
+		{
+			// Only the first entry of a key is shown
+			K key = keyOf.apply(entry);
+			if (!seenKeys.add(key))
+				continue;
+			T item = this.attachedItemsByKey.remove(key);
+			if (item != null)
+				keptItemsByKey.put(key, item);
+			else
+				newData.add(entry);
+		}
+
+		// Detach every item that was not kept all at once and keep them for later
+		Set<T> keptItems = new HashSet<>(keptItemsByKey.values());
+		List<T> toDetach = this.attachedItems.stream().filter(item -> !keptItems.contains(item)).collect(Collectors.toList());
+		if (!toDetach.isEmpty())
+			this.detach(toDetach);
+		this.attachedItems.clear();
+		this.attachedItems.addAll(keptItems);
+
+		// Bind an item to each new entry before attaching so new nodes never show up with old data
+		List<Node> nodesToAttach = new ArrayList<>();
+		for (D entry : newData)
+		{
+			T item = this.freeItems.isEmpty() ? this.itemFactory.get() : this.freeItems.pop();
+			binder.accept(item, entry);
+			keptItemsByKey.put(keyOf.apply(entry), item);
+			this.attachedItems.add(item);
+			nodesToAttach.add(this.nodeOf.apply(item));
+		}
+		if (!nodesToAttach.isEmpty())
+			this.map.addChildren(nodesToAttach, this.layer);
+
+		this.attachedItemsByKey.clear();
+		this.attachedItemsByKey.putAll(keptItemsByKey);
+	}
+
+	/**
+	 * Detaches a list of items all at once and returns them to the pool
+	 *
+	 * @param toDetach The attached items to detach
+	 */
+	private void detach(List<T> toDetach)
+	{
+		List<Node> nodesToDetach = new ArrayList<>(toDetach.size());
+		toDetach.forEach(item -> nodesToDetach.add(this.nodeOf.apply(item)));
+		this.map.removeChildren(nodesToDetach);
+		toDetach.forEach(this.freeItems::push);
+	}
+
+	/**
+	 * Detaches every node and returns it to the pool
+	 */
+	public void clear()
+	{
+		this.show(new ArrayList<>(), (item, data) -> {});
+	}
+
+	///
+	/// Getters
+	///
+
+	public List<T> getAttachedItems()
+	{
+		return this.attachedItems;
+	}
+}
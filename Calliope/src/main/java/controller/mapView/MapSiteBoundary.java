@@ -0,0 +1,52 @@
+package controller.mapView;
+
+import fxmapcontrol.Location;
+import fxmapcontrol.MapPolygon;
+import javafx.scene.CacheHint;
+import model.site.Site;
+
+import java.util.List;
+
+/**
+ * A polygon drawn around a site's boundary when the map is zoomed in. Boundaries are pooled, so the site a boundary shows can
+ * be swapped out at any time
+ */
+public class MapSiteBoundary extends MapPolygon
+{
+	// The site this boundary currently shows
+	private Site site;
+
+	/**
+	 * Constructor sets up the boundary's style
+	 */
+	public MapSiteBoundary()
+	{
+		super();
+		// Add a CSS attribute to all polygons so that we can style them later
+		this.getStyleClass().add("site-boundary");
+		// Performance Tweaks
+		this.setCache(true);
+		this.setCacheHint(CacheHint.SPEED);
+	}
+
+	/**
+	 * Reshapes the boundary to outline a site
+	 *
+	 * @param site The site to show
+	 * @param boundary The locations making up the site's outer boundary
+	 */
+	public void setSite(Site site, List<Location> boundary)
+	{
+		this.site = site;
+		this.getLocations().setAll(boundary);
+		this.setLocation(new Location(site.getCenter().getLat(), site.getCenter().getLon()));
+	}
+
+	/**
+	 * @return The site this boundary currently shows
+	 */
+	public Site getSite()
+	{
+		return this.site;
+	}
+}
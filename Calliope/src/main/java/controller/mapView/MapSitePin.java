@@ -0,0 +1,56 @@
+package controller.mapView;
+
+import fxmapcontrol.Location;
+import javafx.beans.binding.Bindings;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.geometry.Pos;
+import javafx.scene.CacheHint;
+import javafx.scene.image.ImageView;
+import library.AlignedMapNode;
+import model.site.Site;
+
+/**
+ * A pin drawn at the center of a site when the map is zoomed out. Pins are pooled, so the site a pin shows can be swapped out
+ * at any time
+ */
+public class MapSitePin extends AlignedMapNode
+{
+	// The site this pin currently shows
+	private final ObjectProperty<Site> site = new SimpleObjectProperty<>();
+
+	/**
+	 * Constructor builds the pin's image which follows the site and if the pin is hovered
+	 */
+	public MapSitePin()
+	{
+		super(Pos.CENTER);
+		// Add a new imageview to the pin, make sure the image represents the current site and if the pin is hovered or not
+		ImageView pinImageView = new ImageView();
+		pinImageView.imageProperty().bind(Bindings.createObjectBinding(() -> this.getSite() != null ? this.getSite().getIcon(this.isHover()) : null, this.site, this.hoverProperty()));
+		this.getChildren().add(pinImageView);
+
+		// Performance Tweaks
+		this.setCache(true);
+		this.setCacheHint(CacheHint.SPEED);
+	}
+
+	/**
+	 * Moves the pin to a site's center and shows that site's icon
+	 *
+	 * @param site The site to show
+	 */
+	public void setSite(Site site)
+	{
+		this.site.setValue(site);
+		this.setLocation(new Location(site.getCenter().getLat(), site.getCenter().getLon()));
+	}
+
+	/**
+	 * @return The site this pin currently shows
+	 */
+	public Site getSite()
+	{
+		return this.site.getValue();
+	}
+}
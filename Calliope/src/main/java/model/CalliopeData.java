@@ -19,6 +19,7 @@ import model.elasticsearch.ElasticSearchConnectionManager;
 import model.elasticsearch.query.QueryEngine;
 import model.elevationAPI.ElevationData;
 import model.image.DataDirectory;
+import model.image.MetadataCache;
 import model.image.MetadataManager;
 import model.settings.SensitiveConfigurationManager;
 import model.settings.SettingsData;
@@ -98,6 +99,9 @@ public class CalliopeData
 	// Class to handle metadata management
 	private MetadataManager metadataManager;
 
+	// Cache of metadata already read from files on disk
+	private MetadataCache metadataCache;
+
 	// A list of data sources that we can import images from
 	private ObservableList<IDataSource> dataSources;
 
@@ -151,8 +155,11 @@ public class CalliopeData
 		// Setup our metadata management class
 		this.metadataManager = new MetadataManager(this.errorDisplay);
 
+		// Open our metadata cache
+		this.metadataCache = new MetadataCache(this.sensitiveConfigurationManager.getMetadataCacheFile(), this.sensitiveConfigurationManager.getMetadataCacheMaxMegabytes() * 1024 * 1024, this.errorDisplay);
+
 		// Setup our elevation data
-		this.elevationData = new ElevationData();
+		this.elevationData = new ElevationData(this.sensitiveConfigurationManager, this.errorDisplay);
 
 		// Create the image collection list
 		this.collectionList = FXCollections.synchronizedObservableList(FXCollections.observableArrayList(collection -> new Observable[]{collection.nameProperty(), collection.getPermissions(), collection.organizationProperty(), collection.contactInfoProperty(), collection.descriptionProperty(), collection.idProperty() }));
@@ -324,6 +331,11 @@ public class CalliopeData
 		return this.metadataManager;
 	}
 
+	public MetadataCache getMetadataCache()
+	{
+		return this.metadataCache;
+	}
+
 	public ObservableList<IDataSource> getDataSources()
 	{
 		return dataSources;
@@ -10,11 +10,12 @@ import model.dataSources.UploadedEntry;
 import model.dataSources.cyverseDataStore.CyVerseDSDataDirectory;
 import model.dataSources.cyverseDataStore.CyVerseDSImageEntry;
 import model.dataSources.cyverseDataStore.CyVerseDSVideoEntry;
+import model.image.DataContainer;
 import model.image.DataDirectory;
 import model.image.ImageEntry;
 import model.image.VideoEntry;
 import model.util.AnalysisUtils;
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.collections4.IteratorUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.text.StringEscapeUtils;
@@ -42,11 +43,20 @@ import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.text.SimpleDateFormat;
-import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 
 /**
@@ -64,6 +74,12 @@ public class CyVerseConnectionManager
 	private static final String DAVRODS_URL = "https://data.cyverse.org/dav";
 	// Each user is part of the iPlant zone
 	private static final String ZONE = "iplant";
+	// The maximum number of images and videos put into a single uploaded TAR
+	private static final Integer MAX_IMAGES_PER_TAR = 50;
+	// The number of times to try uploading a TAR before giving up
+	private static final Integer MAX_UPLOAD_ATTEMPTS = 3;
+	// The delay before the first upload retry, doubled for each retry after
+	private static final Long INITIAL_UPLOAD_RETRY_DELAY_MS = 2000L;
 	private static final SimpleDateFormat FOLDER_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH-mm-ss") ;
 
 	// Cache the authenticated iRODS account
@@ -333,10 +349,10 @@ public class CyVerseConnectionManager
 	 *
 	 * @param collection The collection to upload to
 	 * @param directoryToWrite The directory to write
-	 * @param transferCallback The callback that will receive callbacks if the transfer is in progress
+	 * @param progressCallback Optional progress callback that is updated as bytes are uploaded
 	 * @param messageCallback Optional message callback that will show what is currently going on
 	 */
-	public void uploadAndIndexImages(ImageCollection collection, DataDirectory directoryToWrite, TransferStatusCallbackListener transferCallback, StringProperty messageCallback)
+	public void uploadAndIndexImages(ImageCollection collection, DataDirectory directoryToWrite, DoubleProperty progressCallback, StringProperty messageCallback)
 	{
 		if (this.sessionManager.openSession())
 		{
@@ -349,22 +365,31 @@ public class CyVerseConnectionManager
 				// If the uploads directory exists and we can write to it, upload
 				if (collectionUploadDir.exists() && collectionUploadDir.canWrite())
 				{
-					if (messageCallback != null)
-						messageCallback.setValue("Creating upload folder on CyVerse...");
+					// Split the directory into TAR parts. Don't use a single tar file because we may have > 1000 images in each
+					List<List<DataContainer>> tarParts = DirectoryManager.splitIntoTarParts(directoryToWrite, MAX_IMAGES_PER_TAR);
+					// Open the journal for this upload, if a previous attempt at this upload was interrupted we continue it
+					UploadJournal journal = UploadJournal.open(CalliopeData.getInstance().getSensitiveConfigurationManager().getUploadJournalDirectory(), collection.getID().toString(), directoryToWrite, tarParts);
+					if (journal.getUploadFolderName() == null)
+					{
+						if (messageCallback != null)
+							messageCallback.setValue("Creating upload folder on CyVerse...");
 
-					// Create a new folder for the upload, we will use the current date as the name plus our username
-					String uploadFolderName = FOLDER_FORMAT.format(new Date(this.sessionManager.getCurrentAO().getEnvironmentalInfoAO(this.authenticatedAccount).getIRODSServerCurrentTime())) + " " + CalliopeData.getInstance().getUsername();
+						// Create a new folder for the upload, we will use the current date as the name plus our username
+						journal.setUploadFolderName(FOLDER_FORMAT.format(new Date(this.sessionManager.getCurrentAO().getEnvironmentalInfoAO(this.authenticatedAccount).getIRODSServerCurrentTime())) + " " + CalliopeData.getInstance().getUsername());
+					}
+					else if (messageCallback != null)
+					{
+						messageCallback.setValue("Resuming upload, " + journal.getPartsUploaded() + " / " + tarParts.size() + " TAR file parts were already uploaded...");
+					}
+					String uploadFolderName = journal.getUploadFolderName();
 					String uploadDirName = collectionUploadDirStr + "/" + uploadFolderName;
 
-					if (messageCallback != null)
-						messageCallback.setValue("Creating TAR file out of the directory before uploading...");
-
 					// Create the JSON file representing the upload
 					Integer imageCount = Math.toIntExact(directoryToWrite.flattened().filter(imageContainer -> imageContainer instanceof ImageEntry).count());
 					Integer videoCount = Math.toIntExact(directoryToWrite.flattened().filter(imageContainer -> imageContainer instanceof VideoEntry).count());
 					UploadedEntry uploadEntry = new UploadedEntry(
 							CalliopeData.getInstance().getUsername(),
-							LocalDateTime.now(),
+							journal.getUploadStarted(),
 							imageCount,
 							videoCount,
 							uploadDirName,
@@ -373,27 +398,17 @@ public class CyVerseConnectionManager
 					// Create the meta.csv representing the metadata for all images in the tar file
 					String localDirName = directoryToWrite.getFile().getName();
 
-					// Make a set of tar files from the image files. Don't use a single tar file because we may have > 1000 images in each
-					File[] tarsToWrite = DirectoryManager.directoryToTars(directoryToWrite, 50);
-
-					// For each tar part, upload
-					for (int tarPart = 0; tarPart < tarsToWrite.length; tarPart++)
+					// Make a set of tar files from the image files and upload any that are not yet uploaded
+					if (this.uploadTarParts(directoryToWrite, tarParts, journal, collectionUploadDirStr, progressCallback, messageCallback))
 					{
-						if (messageCallback != null)
-							messageCallback.setValue("Uploading TAR file part (" + (tarPart + 1) + " / " + tarsToWrite.length + ") to CyVerse...");
-
-						File toWrite = tarsToWrite[tarPart];
-						File localToUpload = new File(FilenameUtils.getFullPath(toWrite.getAbsolutePath()) + uploadFolderName + "-" + Integer.toString(tarPart) + "." + FilenameUtils.getExtension(toWrite.getAbsolutePath()));
-						toWrite.renameTo(localToUpload);
-						// Upload the tar
-						this.sessionManager.getCurrentAO().getDataTransferOperations(this.authenticatedAccount).putOperation(localToUpload, collectionUploadDir, transferCallback, null);
-
-						localToUpload.delete();
+						// Finally we actually index the image metadata using elasticsearch
+						if (!journal.isIndexed() && CalliopeData.getInstance().getEsConnectionManager().indexImages(directoryToWrite, uploadEntry, collection.getID().toString(), container -> uploadDirName + "/" + localDirName + StringUtils.substringAfter(container.getFile().getAbsolutePath(), directoryToWrite.getFile().getAbsolutePath())))
+							journal.markIndexed();
+						// The upload is complete, so the journal is no longer needed
+						if (journal.isIndexed())
+							journal.delete();
 					}
 
-					// Finally we actually index the image metadata using elasticsearch
-					CalliopeData.getInstance().getEsConnectionManager().indexImages(directoryToWrite, uploadEntry, collection.getID().toString(), container -> uploadDirName + "/" + localDirName + StringUtils.substringAfter(container.getFile().getAbsolutePath(), directoryToWrite.getFile().getAbsolutePath()));
-
 					// Let rules do the un-tar processing!
 				}
 				else
@@ -401,7 +416,7 @@ public class CyVerseConnectionManager
 					CalliopeData.getInstance().getErrorDisplay().notify("You don't have permission to upload to this collection!");
 				}
 			}
-			catch (JargonException e)
+			catch (JargonException | IOException e)
 			{
 				CalliopeData.getInstance().getErrorDisplay().notify("Could not upload the images to CyVerse!\n" + ExceptionUtils.getStackTrace(e));
 			}
@@ -410,43 +425,320 @@ public class CyVerseConnectionManager
 	}
 
 	/**
-	 * Function used to download a list of iRODS images into a directory specified. Also takes a progress callback as an argument that that can be updated to
-	 * show task progress
+	 * Builds TAR files out of a directory and uploads them. TARs are built in the background ahead of the upload so that
+	 * building and uploading overlap, and several TARs are uploaded at once each over its own session. At most one more TAR
+	 * than there are upload workers exists on disk at once. Parts the journal lists as uploaded are skipped, and each part is
+	 * recorded in the journal as soon as it is uploaded
+	 *
+	 * @param directoryToWrite The directory to upload
+	 * @param tarParts The directory split into TAR parts
+	 * @param journal The journal of this upload
+	 * @param collectionUploadDirStr The path to the collection's uploads directory on CyVerse
+	 * @param progressCallback Optional progress callback that is updated as bytes are uploaded
+	 * @param messageCallback Optional message callback that will show what is currently going on
+	 * @return True if every TAR was uploaded, false otherwise
+	 */
+	private Boolean uploadTarParts(DataDirectory directoryToWrite, List<List<DataContainer>> tarParts, UploadJournal journal, String collectionUploadDirStr, DoubleProperty progressCallback, StringProperty messageCallback)
+	{
+		String uploadFolderName = journal.getUploadFolderName();
+		String topDirectory = directoryToWrite.getFile().getParentFile().getAbsolutePath();
+		Integer uploadThreads = Math.max(1, CalliopeData.getInstance().getSensitiveConfigurationManager().getCyVerseUploadThreads());
+
+		// Weight each part's progress by the size of the files in it
+		long[] partSizes = tarParts.stream().mapToLong(tarPart -> tarPart.stream().mapToLong(entry -> entry.getFile().length()).sum()).toArray();
+		TransferProgress transferProgress = new TransferProgress(partSizes, progressCallback);
+		// Only upload parts that didn't make it in a previous attempt
+		List<Integer> partsToUpload = new ArrayList<>();
+		for (Integer tarPart = 0; tarPart < tarParts.size(); tarPart++)
+		{
+			if (journal.isPartUploaded(tarPart) && this.isPartOnCyVerse(collectionUploadDirStr + "/" + uploadFolderName + "-" + tarPart + ".tar", journal.getPartTarSize(tarPart)))
+				transferProgress.setPartFraction(tarPart, 1.0);
+			else
+				partsToUpload.add(tarPart);
+		}
+		AtomicInteger partsUploaded = new AtomicInteger(tarParts.size() - partsToUpload.size());
+
+		// Each TAR on disk holds a slot until it is uploaded and deleted, so the builder waits if it gets too far ahead
+		Semaphore tarSlots = new Semaphore(uploadThreads + 1);
+		// Build TARs in order on a single background thread
+		ExecutorService tarBuilder = Executors.newSingleThreadExecutor();
+		List<Future<File>> tarsToWrite = new ArrayList<>();
+		for (Integer tarPart : partsToUpload)
+		{
+			tarsToWrite.add(tarBuilder.submit(() ->
+			{
+				tarSlots.acquire();
+				try
+				{
+					return DirectoryManager.writeTar(tarParts.get(tarPart), topDirectory);
+				}
+				catch (IOException e)
+				{
+					tarSlots.release();
+					throw e;
+				}
+			}));
+		}
+		tarBuilder.shutdown();
+
+		// Upload TARs in parallel as they are built
+		ExecutorService uploadWorkers = Executors.newFixedThreadPool(uploadThreads);
+		List<Future<Void>> uploads = new ArrayList<>();
+		for (Integer toUploadIndex = 0; toUploadIndex < partsToUpload.size(); toUploadIndex++)
+		{
+			Future<File> tarToWrite = tarsToWrite.get(toUploadIndex);
+			Integer tarIndex = partsToUpload.get(toUploadIndex);
+			uploads.add(uploadWorkers.submit(() ->
+			{
+				File toWrite = tarToWrite.get();
+				File localToUpload = new File(FilenameUtils.getFullPath(toWrite.getAbsolutePath()) + uploadFolderName + "-" + Integer.toString(tarIndex) + "." + FilenameUtils.getExtension(toWrite.getAbsolutePath()));
+				toWrite.renameTo(localToUpload);
+				try
+				{
+					// Upload the tar, then record that it made it
+					this.uploadTarPart(localToUpload, collectionUploadDirStr, transferProgress, tarIndex);
+					journal.markPartUploaded(tarIndex, localToUpload.length());
+				}
+				finally
+				{
+					// Delete the TAR and let the builder start on the next one
+					localToUpload.delete();
+					tarSlots.release();
+				}
+				if (messageCallback != null)
+					messageCallback.setValue("Uploaded TAR file part (" + partsUploaded.incrementAndGet() + " / " + tarParts.size() + ") to CyVerse...");
+				return null;
+			}));
+		}
+		uploadWorkers.shutdown();
+
+		try
+		{
+			if (messageCallback != null)
+				messageCallback.setValue("Uploading " + partsToUpload.size() + " TAR file parts to CyVerse...");
+			// Wait for every part to upload
+			for (Future<Void> upload : uploads)
+				upload.get();
+			return true;
+		}
+		catch (InterruptedException e)
+		{
+			// If we get interrupted the upload was cancelled
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof JargonException)
+				CalliopeData.getInstance().getErrorDisplay().notify("Could not upload the images to CyVerse!\n" + ExceptionUtils.getStackTrace(e.getCause()));
+			else
+				CalliopeData.getInstance().getErrorDisplay().notify("Could not create or record a TAR file to upload!\n" + ExceptionUtils.getStackTrace(e));
+		}
+		finally
+		{
+			// Stop building and uploading TARs if the upload did not finish, and delete any that were built but not uploaded
+			uploadWorkers.shutdownNow();
+			tarBuilder.shutdownNow();
+			for (Future<File> tarFuture : tarsToWrite)
+			{
+				try
+				{
+					if (tarFuture.isDone() && !tarFuture.isCancelled())
+						tarFuture.get().delete();
+				}
+				catch (InterruptedException | ExecutionException ignored) {}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Tests if a TAR part the journal lists as uploaded is actually on CyVerse with the size it had when it was uploaded. If a
+	 * different file is there it is deleted so the part can be uploaded again
 	 *
-	 * @param absoluteIRODSImagePaths A list of absolute iRODS paths to download
+	 * @param remoteTarPath The path the TAR part was uploaded to
+	 * @param expectedSize The size the journal recorded for the TAR, may be null for older journals
+	 * @return True if the TAR part is on CyVerse and can be skipped
+	 */
+	private Boolean isPartOnCyVerse(String remoteTarPath, Long expectedSize)
+	{
+		try
+		{
+			IRODSFile remoteTar = this.sessionManager.getCurrentAO().getIRODSFileFactory(this.authenticatedAccount).instanceIRODSFile(remoteTarPath);
+			if (!remoteTar.exists())
+				return false;
+			if (expectedSize != null && remoteTar.length() == expectedSize)
+				return true;
+			// The TAR on CyVerse is incomplete or from a different attempt, remove it so the part starts over
+			remoteTar.deleteWithForceOption();
+		}
+		catch (JargonException e)
+		{
+			CalliopeData.getInstance().getErrorDisplay().printError("Could not check if " + remoteTarPath + " was uploaded, uploading it again...\n" + ExceptionUtils.getStackTrace(e));
+		}
+		return false;
+	}
+
+	/**
+	 * Uploads a single TAR over a session owned by the current thread. If the upload fails it is retried from the start with
+	 * a fresh session, waiting longer between each attempt
+	 *
+	 * @param localToUpload The TAR to upload
+	 * @param collectionUploadDirStr The path to the collection's uploads directory on CyVerse
+	 * @param transferProgress The progress to update as the TAR is uploaded
+	 * @param tarIndex The index of this TAR in the transfer progress
+	 * @throws JargonException If every attempt to upload the TAR failed
+	 * @throws InterruptedException If the upload was cancelled while waiting to retry
+	 */
+	private void uploadTarPart(File localToUpload, String collectionUploadDirStr, TransferProgress transferProgress, Integer tarIndex) throws JargonException, InterruptedException
+	{
+		for (Integer attempt = 1; ; attempt++)
+		{
+			if (!this.sessionManager.openSession())
+				throw new JargonException("Could not open a session to upload " + localToUpload.getName() + " with");
+			try
+			{
+				IRODSFile collectionUploadDir = this.sessionManager.getCurrentAO().getIRODSFileFactory(this.authenticatedAccount).instanceIRODSFile(collectionUploadDirStr);
+				this.sessionManager.getCurrentAO().getDataTransferOperations(this.authenticatedAccount).putOperation(localToUpload, collectionUploadDir, transferProgress.listenerForPart(tarIndex), null);
+				transferProgress.setPartFraction(tarIndex, 1.0);
+				return;
+			}
+			catch (JargonException e)
+			{
+				// Give up if we're out of attempts
+				if (attempt >= MAX_UPLOAD_ATTEMPTS)
+					throw e;
+				CalliopeData.getInstance().getErrorDisplay().printError("Uploading " + localToUpload.getName() + " failed on attempt " + attempt + ", retrying...\n" + ExceptionUtils.getStackTrace(e));
+			}
+			finally
+			{
+				this.sessionManager.closeSession();
+			}
+			// The part starts over, so reset its progress and wait before retrying
+			transferProgress.setPartFraction(tarIndex, 0.0);
+			Thread.sleep(INITIAL_UPLOAD_RETRY_DELAY_MS * (1L << (attempt - 1)));
+		}
+	}
+
+	/**
+	 * Function used to download iRODS images into a directory specified. Also takes a progress callback as an argument that that can be updated to
+	 * show task progress. Images are downloaded over several connections at once, and paths are only read from the iterator as
+	 * connections free up so large queries never need every path in memory
+	 *
+	 * @param absoluteIRODSImagePaths The absolute iRODS paths to download
+	 * @param expectedCount Returns the number of images expected, used to estimate progress
 	 * @param dirToSaveTo The directory to download into
 	 * @param progressCallback A callback that can be updated to show download progress
+	 * @return A report of which images downloaded and which failed
 	 */
-	public void downloadImages(List<String> absoluteIRODSImagePaths, File dirToSaveTo, DoubleProperty progressCallback)
+	public DownloadEngine.Report downloadImages(Iterator<String> absoluteIRODSImagePaths, LongSupplier expectedCount, File dirToSaveTo, DoubleProperty progressCallback)
 	{
-		List<String> absoluteLocalFilePaths = absoluteIRODSImagePaths.stream().map(absoluteImagePath -> dirToSaveTo.getAbsolutePath() + File.separator + FilenameUtils.getName(absoluteImagePath)).collect(Collectors.toList());
-		for (int i = 0; i < absoluteIRODSImagePaths.size(); i++)
+		// Local files already picked by an earlier image in this download
+		Set<String> reservedLocalFilePaths = new HashSet<>();
+		Iterator<DownloadEngine.Download> downloads = this.toDownloads(absoluteIRODSImagePaths, absoluteIRODSImagePath ->
 		{
-			String absoluteIRODSImagePath = absoluteIRODSImagePaths.get(i);
-			String absoluteLocalFilePath = absoluteLocalFilePaths.get(i);
+			String absoluteLocalFilePath = dirToSaveTo.getAbsolutePath() + File.separator + FilenameUtils.getName(absoluteIRODSImagePath);
 			File localFile = new File(absoluteLocalFilePath);
 
 			// While the file exists, we update the path to have a new file name, and then re-create the local file
-			while (localFile.exists())
+			while (localFile.exists() || reservedLocalFilePaths.contains(absoluteLocalFilePath))
 			{
 				// Use a random alphabetic character at the end of the file name to make sure the file name is unique
 				absoluteLocalFilePath = absoluteLocalFilePath.replace(".", RandomStringUtils.randomAlphabetic(1) + ".");
 				localFile = new File(absoluteLocalFilePath);
 			}
-			// TODO: Would this benefit from being escapeHtml4?
-			String webPathToDownload = StringEscapeUtils.escapeHtml3(DAVRODS_URL + absoluteIRODSImagePath).replace(" ", "%20");
+			reservedLocalFilePaths.add(absoluteLocalFilePath);
+			return localFile;
+		});
+
+		// Download everything at once
+		DownloadEngine downloadEngine = new DownloadEngine(CalliopeData.getInstance().getSensitiveConfigurationManager().getCyVerseDownloadConnections());
+		DownloadEngine.Report report = downloadEngine.download(downloads, expectedCount, progressCallback, null);
+		if (!report.getFailures().isEmpty())
+			CalliopeData.getInstance().getErrorDisplay().printError(report.getFailures().size() + " image(s) could not be downloaded:\n" + report.getFailures().entrySet().stream().map(failure -> failure.getKey() + ": " + failure.getValue()).collect(Collectors.joining("\n")));
+		return report;
+	}
+
+	/**
+	 * Function used to download iRODS images straight into a single TAR or ZIP archive. Images are downloaded over
+	 * several connections at once and added to the archive as each one finishes, along with a manifest of the query, each
+	 * image's path, and its checksum
+	 *
+	 * @param absoluteIRODSImagePaths The absolute iRODS paths to download
+	 * @param expectedCount Returns the number of images expected, used to estimate progress
+	 * @param archiveFile The archive to download into, a .zip extension creates a ZIP and anything else creates a TAR
+	 * @param query A description of the query being downloaded, stored in the manifest
+	 * @param progressCallback A callback that can be updated to show download progress
+	 * @return A report of which images downloaded and which failed, or null if the archive could not be written
+	 */
+	public DownloadEngine.Report downloadImagesToArchive(Iterator<String> absoluteIRODSImagePaths, LongSupplier expectedCount, File archiveFile, String query, DoubleProperty progressCallback)
+	{
+		// Each image is downloaded to a temporary file and deleted once it's in the archive
+		Iterator<DownloadEngine.Download> downloads = this.toDownloads(absoluteIRODSImagePaths, absoluteIRODSImagePath -> CalliopeData.getInstance().getTempDirectoryManager().createTempFile(FilenameUtils.getName(absoluteIRODSImagePath)));
+
+		DownloadEngine downloadEngine = new DownloadEngine(CalliopeData.getInstance().getSensitiveConfigurationManager().getCyVerseDownloadConnections());
+		try (QueryArchiveWriter archiveWriter = new QueryArchiveWriter(archiveFile, query))
+		{
+			// Download everything at once, moving each image into the archive as it arrives
+			DownloadEngine.Report report = downloadEngine.download(downloads, expectedCount, progressCallback, download ->
+			{
+				try
+				{
+					archiveWriter.addFile(download.getTarget(), download.getSourcePath());
+				}
+				finally
+				{
+					download.getTarget().delete();
+				}
+			});
+			report.getFailures().forEach(archiveWriter::addFailure);
+			if (!report.getFailures().isEmpty())
+				CalliopeData.getInstance().getErrorDisplay().printError(report.getFailures().size() + " image(s) could not be downloaded:\n" + report.getFailures().entrySet().stream().map(failure -> failure.getKey() + ": " + failure.getValue()).collect(Collectors.joining("\n")));
+			return report;
+		}
+		catch (IOException e)
+		{
+			CalliopeData.getInstance().getErrorDisplay().notify("Could not write the archive " + archiveFile.getAbsolutePath() + "!\n" + ExceptionUtils.getStackTrace(e));
+		}
+		return null;
+	}
+
+	/**
+	 * Lazily turns iRODS paths into downloads, skipping any path that can't be turned into a URL. Targets are only picked
+	 * when the download engine asks for the next download
+	 *
+	 * @param absoluteIRODSImagePaths The absolute iRODS paths to download
+	 * @param targetForPath Picks the local file each path is downloaded into
+	 * @return An iterator of downloads
+	 */
+	private Iterator<DownloadEngine.Download> toDownloads(Iterator<String> absoluteIRODSImagePaths, Function<String, File> targetForPath)
+	{
+		Iterator<DownloadEngine.Download> downloads = IteratorUtils.transformedIterator(absoluteIRODSImagePaths, absoluteIRODSImagePath ->
+		{
 			try
 			{
-				FileUtils.copyURLToFile(new URL(webPathToDownload), localFile, 30000, 30000);
+				return new DownloadEngine.Download(this.toDownloadURL(absoluteIRODSImagePath), targetForPath.apply(absoluteIRODSImagePath), absoluteIRODSImagePath);
 			}
-			catch (IOException e)
+			catch (MalformedURLException e)
 			{
-				System.out.println("There was an error downloading the image file, error was:\n" + ExceptionUtils.getStackTrace(e));
+				CalliopeData.getInstance().getErrorDisplay().printError("Could not create a download URL for " + absoluteIRODSImagePath + ", skipping it: " + e.getMessage());
+				return null;
 			}
+		});
+		return IteratorUtils.filteredIterator(downloads, Objects::nonNull);
+	}
 
-			if (i % 10 == 0)
-				progressCallback.setValue((double) i / absoluteIRODSImagePaths.size());
-		}
+	/**
+	 * Creates the URL used to download an iRODS file through davrods
+	 *
+	 * @param absoluteIRODSPath The absolute iRODS path of the file
+	 * @return The URL to download the file from
+	 * @throws MalformedURLException If the path can't be made into a URL
+	 */
+	private URL toDownloadURL(String absoluteIRODSPath) throws MalformedURLException
+	{
+		// TODO: Would this benefit from being escapeHtml4?
+		String webPathToDownload = StringEscapeUtils.escapeHtml3(DAVRODS_URL + absoluteIRODSPath).replace(" ", "%20");
+		return new URL(webPathToDownload);
 	}
 
 	/**
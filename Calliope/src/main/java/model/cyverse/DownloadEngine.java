@@ -0,0 +1,403 @@
+package model.cyverse;
+
+import javafx.beans.property.DoubleProperty;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Downloads many files over HTTP at once using a bounded number of connections. Files are written to a ".part" file first
+ * so that a failed download can be resumed with an HTTP range request, and are only moved to their final name once complete
+ */
+public class DownloadEngine
+{
+	// The number of times to try downloading a file before giving up
+	private static final Integer MAX_ATTEMPTS = 4;
+	// The delay before the first retry, doubled for each retry after
+	private static final Long INITIAL_RETRY_DELAY_MS = 1000L;
+	// Connect and read timeout of each request
+	private static final Integer TIMEOUT_MS = 30000;
+	// The size of the buffer used to copy each response to disk
+	private static final Integer BUFFER_SIZE = 64 * 1024;
+	// How often the progress property is updated
+	private static final Long PROGRESS_INTERVAL_MS = 250L;
+
+	// The maximum number of files downloaded at once
+	private final Integer maxConnections;
+
+	/**
+	 * Constructor sets the number of concurrent connections. The JDK only keeps 5 idle connections per host alive by
+	 * default (the "http.maxConnections" system property), so when more than 5 connections are used Calliope should be
+	 * launched with -Dhttp.maxConnections set to at least that many, otherwise requests past the fifth open a new connection
+	 *
+	 * @param maxConnections The maximum number of files downloaded at once
+	 */
+	public DownloadEngine(Integer maxConnections)
+	{
+		this.maxConnections = Math.max(1, maxConnections);
+	}
+
+	/**
+	 * Downloads files as they are pulled from an iterator, blocking until every file is either downloaded or has failed.
+	 * Only a few downloads are pulled ahead of the ones in progress, so the iterator can produce files lazily (for example
+	 * from a paged query) without every file being held in memory at once. The listener is called on the downloading thread
+	 * as soon as each file is complete
+	 *
+	 * @param downloads The files to download
+	 * @param expectedCount Returns the number of files expected, used to estimate progress. May change as the iterator is read
+	 * @param progressCallback Optional progress callback updated with the fraction of bytes downloaded
+	 * @param downloadListener Optional listener called with each file once it is downloaded
+	 * @return A report of which files downloaded and which failed
+	 */
+	public Report download(Iterator<Download> downloads, LongSupplier expectedCount, DoubleProperty progressCallback, DownloadListener downloadListener)
+	{
+		Report report = new Report();
+		Progress progress = new Progress();
+		ExecutorService downloaders = Executors.newFixedThreadPool(this.maxConnections);
+		CompletionService<Void> completionService = new ExecutorCompletionService<>(downloaders);
+		// The number of downloads submitted but not yet finished
+		Integer inFlight = 0;
+		try
+		{
+			while (inFlight > 0 || downloads.hasNext())
+			{
+				// Keep every connection busy with a few downloads queued behind them
+				while (inFlight < this.maxConnections * 2 && downloads.hasNext())
+				{
+					Download download = downloads.next();
+					progress.filesSubmitted.incrementAndGet();
+					completionService.submit(() ->
+					{
+						this.downloadFile(download, progress, report, downloadListener);
+						return null;
+					});
+					inFlight++;
+				}
+				// Wait for a file to finish, updating progress from this thread only
+				Future<Void> finishedFile = completionService.poll(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+				if (finishedFile != null)
+				{
+					finishedFile.get();
+					inFlight--;
+				}
+				if (progressCallback != null)
+					progressCallback.setValue(progress.fractionComplete(expectedCount.getAsLong()));
+			}
+		}
+		catch (InterruptedException e)
+		{
+			// If we get interrupted the download was cancelled
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			report.addFailure(null, "Unexpected download error: " + e.getCause());
+		}
+		catch (UncheckedIOException e)
+		{
+			// The iterator could not produce the next file to download
+			report.addFailure(null, "Could not list the files to download: " + e.getCause());
+		}
+		finally
+		{
+			downloaders.shutdownNow();
+		}
+		return report;
+	}
+
+	/**
+	 * Downloads a single file, retrying with a growing delay and resuming from the partial file each time
+	 *
+	 * @param download The file to download
+	 * @param progress The shared progress to update
+	 * @param report The report to add the result to
+	 * @param downloadListener Optional listener called once the file is downloaded
+	 */
+	private void downloadFile(Download download, Progress progress, Report report, DownloadListener downloadListener)
+	{
+		URL source = download.getSource();
+		File target = download.getTarget();
+		File partFile = new File(target.getAbsolutePath() + ".part");
+		FileProgress fileProgress = new FileProgress();
+		for (Integer attempt = 1; attempt <= MAX_ATTEMPTS; attempt++)
+		{
+			try
+			{
+				this.transfer(source, partFile, progress, fileProgress);
+				// The download completed, move it into place
+				Files.move(partFile.toPath(), target.toPath());
+				break;
+			}
+			catch (IOException e)
+			{
+				// Client errors such as 404 won't be fixed by retrying
+				Boolean retryable = !(e instanceof HttpStatusException) || ((HttpStatusException) e).isRetryable();
+				if (!retryable || attempt.equals(MAX_ATTEMPTS))
+				{
+					report.addFailure(source, e instanceof HttpStatusException ? e.getMessage() : e.toString());
+					// Don't leave partial files behind for downloads that failed for good
+					partFile.delete();
+					progress.bytesDownloaded.addAndGet(-fileProgress.bytesOnDisk);
+					return;
+				}
+			}
+
+			// Wait before retrying, stop if we were cancelled
+			try
+			{
+				Thread.sleep(INITIAL_RETRY_DELAY_MS * (1L << (attempt - 1)));
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				report.addFailure(source, "Cancelled");
+				return;
+			}
+		}
+
+		// Hand the file off to the listener
+		try
+		{
+			if (downloadListener != null)
+				downloadListener.downloaded(download);
+			report.addSuccess();
+		}
+		catch (IOException e)
+		{
+			report.addFailure(source, "Downloaded but could not be stored: " + e);
+		}
+	}
+
+	/**
+	 * Performs a single request for a file, continuing from the end of the partial file if there is one
+	 *
+	 * @param source The URL to download
+	 * @param partFile The partial file to write to
+	 * @param progress The shared progress to update
+	 * @param fileProgress This file's progress
+	 * @throws IOException If the request failed
+	 */
+	private void transfer(URL source, File partFile, Progress progress, FileProgress fileProgress) throws IOException
+	{
+		long offset = partFile.exists() ? partFile.length() : 0;
+		HttpURLConnection connection = (HttpURLConnection) source.openConnection();
+		connection.setConnectTimeout(TIMEOUT_MS);
+		connection.setReadTimeout(TIMEOUT_MS);
+		if (offset > 0)
+			connection.setRequestProperty("Range", "bytes=" + offset + "-");
+
+		Integer status = connection.getResponseCode();
+		if (status >= 400)
+		{
+			// Read the error body so the connection can be reused
+			drain(connection.getErrorStream());
+			// If the range was not satisfiable our partial file is bad, so start over next time
+			if (status == 416)
+			{
+				partFile.delete();
+				progress.bytesDownloaded.addAndGet(-fileProgress.bytesOnDisk);
+				fileProgress.bytesOnDisk = 0;
+			}
+			throw new HttpStatusException(source, status);
+		}
+
+		// If the server ignored our range it sent the whole file, so start the partial file over
+		Boolean append = status == HttpURLConnection.HTTP_PARTIAL;
+		if (!append)
+		{
+			progress.bytesDownloaded.addAndGet(-fileProgress.bytesOnDisk);
+			fileProgress.bytesOnDisk = 0;
+			offset = 0;
+		}
+		// The first time we learn the size of the file, add it to the total
+		long contentLength = connection.getContentLengthLong();
+		if (!fileProgress.sizeKnown && contentLength >= 0)
+		{
+			fileProgress.sizeKnown = true;
+			progress.addKnownFile(offset + contentLength);
+		}
+
+		// Copy the response to disk
+		byte[] buffer = new byte[BUFFER_SIZE];
+		try (InputStream inputStream = connection.getInputStream(); OutputStream outputStream = new FileOutputStream(partFile, append))
+		{
+			int read;
+			while ((read = inputStream.read(buffer)) != -1)
+			{
+				if (Thread.currentThread().isInterrupted())
+					throw new InterruptedIOException("Download of " + source + " was cancelled");
+				outputStream.write(buffer, 0, read);
+				fileProgress.bytesOnDisk = fileProgress.bytesOnDisk + read;
+				progress.bytesDownloaded.addAndGet(read);
+			}
+		}
+	}
+
+	/**
+	 * Reads and closes a stream, ignoring any errors
+	 *
+	 * @param inputStream The stream to drain, may be null
+	 */
+	private static void drain(InputStream inputStream)
+	{
+		if (inputStream == null)
+			return;
+		try (InputStream toClose = inputStream)
+		{
+			byte[] buffer = new byte[4096];
+			while (toClose.read(buffer) != -1);
+		}
+		catch (IOException ignored) {}
+	}
+
+	/**
+	 * Progress shared by every download in a batch. The total size is only known once each file's response arrives, so files
+	 * that have not started yet are assumed to be the average size of the ones that have
+	 */
+	private static class Progress
+	{
+		// The number of files submitted so far
+		private final AtomicLong filesSubmitted = new AtomicLong(0);
+		// Bytes written to disk so far
+		private final AtomicLong bytesDownloaded = new AtomicLong(0);
+		// The total size of every file whose size is known
+		private final AtomicLong bytesKnown = new AtomicLong(0);
+		// The number of files whose size is known
+		private final AtomicInteger filesKnown = new AtomicInteger(0);
+
+		void addKnownFile(long size)
+		{
+			this.bytesKnown.addAndGet(size);
+			this.filesKnown.incrementAndGet();
+		}
+
+		Double fractionComplete(long expectedCount)
+		{
+			Integer filesKnown = this.filesKnown.get();
+			if (filesKnown == 0)
+				return 0.0;
+			double bytesKnown = this.bytesKnown.get();
+			long fileCount = Math.max(expectedCount, this.filesSubmitted.get());
+			double estimatedTotal = bytesKnown + (bytesKnown / filesKnown) * (fileCount - filesKnown);
+			return estimatedTotal > 0 ? Math.min(this.bytesDownloaded.get() / estimatedTotal, 1.0) : 0.0;
+		}
+	}
+
+	/**
+	 * Progress of a single file, only ever touched by the thread downloading it
+	 */
+	private static class FileProgress
+	{
+		// True once the file's size is added to the total
+		private Boolean sizeKnown = false;
+		// Bytes of this file counted in the shared progress
+		private long bytesOnDisk = 0;
+	}
+
+	/**
+	 * Thrown when the server responds with an error status
+	 */
+	private static class HttpStatusException extends IOException
+	{
+		private final Integer status;
+
+		HttpStatusException(URL source, Integer status)
+		{
+			super("HTTP " + status + " downloading " + source);
+			this.status = status;
+		}
+
+		/**
+		 * @return True if the error is likely temporary, such as a timeout, throttling, or server error
+		 */
+		Boolean isRetryable()
+		{
+			return this.status >= 500 || this.status == 408 || this.status == 429 || this.status == 416;
+		}
+	}
+
+	/**
+	 * Called with each file as soon as it finishes downloading
+	 */
+	public interface DownloadListener
+	{
+		/**
+		 * @param download The downloaded file
+		 * @throws IOException If the file could not be handled, the file is then reported as failed
+		 */
+		void downloaded(Download download) throws IOException;
+	}
+
+	/**
+	 * A single file to download
+	 */
+	public static class Download
+	{
+		// The URL to download
+		private final URL source;
+		// The local file to save to
+		private final File target;
+		// Where the file is stored remotely, used to describe the file
+		private final String sourcePath;
+
+		public Download(URL source, File target, String sourcePath)
+		{
+			this.source = source;
+			this.target = target;
+			this.sourcePath = sourcePath;
+		}
+
+		public URL getSource()
+		{
+			return this.source;
+		}
+
+		public File getTarget()
+		{
+			return this.target;
+		}
+
+		public String getSourcePath()
+		{
+			return this.sourcePath;
+		}
+	}
+
+	/**
+	 * The result of downloading a batch of files
+	 */
+	public static class Report
+	{
+		// The number of files that were downloaded, a count instead of a list so huge queries don't hold every file in memory
+		private final AtomicInteger downloadedCount = new AtomicInteger(0);
+		// A map of URL -> reason for each file that could not be downloaded
+		private final Map<String, String> failures = Collections.synchronizedMap(new LinkedHashMap<>());
+
+		void addSuccess()
+		{
+			this.downloadedCount.incrementAndGet();
+		}
+
+		void addFailure(URL source, String reason)
+		{
+			this.failures.put(source != null ? source.toString() : "", reason);
+		}
+
+		public Integer getDownloadedCount()
+		{
+			return this.downloadedCount.get();
+		}
+
+		public Map<String, String> getFailures()
+		{
+			return this.failures;
+		}
+	}
+}
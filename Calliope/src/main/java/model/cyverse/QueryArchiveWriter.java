@@ -0,0 +1,171 @@
+package model.cyverse;
+
+import model.CalliopeData;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.Zip64Mode;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes downloaded query results into a single TAR or ZIP archive as they arrive. When the archive is closed a
+ * manifest.json is added listing the query, every file's source path and SHA-256 checksum, and any files that failed
+ */
+public class QueryArchiveWriter implements Closeable
+{
+	// The name of the manifest inside of the archive
+	private static final String MANIFEST_NAME = "manifest.json";
+	// The size of the buffer used to copy each file into the archive
+	private static final Integer BUFFER_SIZE = 64 * 1024;
+
+	// The archive being written to
+	private final ArchiveOutputStream archiveOut;
+	// The buffer used to copy each file into the archive, only used while holding the lock
+	private final byte[] copyBuffer = new byte[BUFFER_SIZE];
+	// The manifest written at the end of the archive
+	private final Manifest manifest = new Manifest();
+
+	/**
+	 * Constructor opens the archive, the format is picked by the archive's extension (.zip for ZIP, anything else is TAR)
+	 *
+	 * @param archiveFile The archive to write to
+	 * @param query A description of the query whose results are being downloaded
+	 * @throws IOException If the archive could not be created
+	 */
+	public QueryArchiveWriter(File archiveFile, String query) throws IOException
+	{
+		if (StringUtils.endsWithIgnoreCase(archiveFile.getName(), ".zip"))
+		{
+			ZipArchiveOutputStream zipOut = new ZipArchiveOutputStream(archiveFile);
+			// Large queries can go past 4GB or 65535 files
+			zipOut.setUseZip64(Zip64Mode.AsNeeded);
+			this.archiveOut = zipOut;
+		}
+		else
+		{
+			TarArchiveOutputStream tarOut = new TarArchiveOutputStream(new BufferedOutputStream(new FileOutputStream(archiveFile), BUFFER_SIZE));
+			// iRODS paths can be long and videos can be over 8GB
+			tarOut.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+			tarOut.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+			this.archiveOut = tarOut;
+		}
+		this.manifest.query = query;
+		this.manifest.created = LocalDateTime.now();
+	}
+
+	/**
+	 * Adds a downloaded file to the archive. The file is stored under its source path so names never collide
+	 *
+	 * @param downloadedFile The local file to add
+	 * @param sourcePath The absolute path of the file on CyVerse
+	 * @throws IOException If the file could not be added
+	 */
+	public synchronized void addFile(File downloadedFile, String sourcePath) throws IOException
+	{
+		String archivePath = StringUtils.removeStart(sourcePath, "/");
+		ArchiveEntry archiveEntry = this.archiveOut.createArchiveEntry(downloadedFile, archivePath);
+		this.archiveOut.putArchiveEntry(archiveEntry);
+		// Checksum the file while copying it in
+		MessageDigest digest = UploadJournal.sha256();
+		try (InputStream fileIn = new DigestInputStream(Files.newInputStream(downloadedFile.toPath()), digest))
+		{
+			IOUtils.copyLarge(fileIn, this.archiveOut, this.copyBuffer);
+		}
+		this.archiveOut.closeArchiveEntry();
+		this.manifest.files.add(new ManifestFile(archivePath, sourcePath, String.format("%064x", new BigInteger(1, digest.digest())), downloadedFile.length()));
+	}
+
+	/**
+	 * Records a file that could not be downloaded in the manifest
+	 *
+	 * @param source The file that failed
+	 * @param reason Why it failed
+	 */
+	public synchronized void addFailure(String source, String reason)
+	{
+		this.manifest.failures.put(source, reason);
+	}
+
+	/**
+	 * Writes the manifest and finishes the archive
+	 *
+	 * @throws IOException If the archive could not be finished
+	 */
+	@Override
+	public synchronized void close() throws IOException
+	{
+		try
+		{
+			byte[] manifestBytes = CalliopeData.getInstance().getGson().toJson(this.manifest).getBytes(StandardCharsets.UTF_8);
+			ArchiveEntry manifestEntry;
+			if (this.archiveOut instanceof ZipArchiveOutputStream)
+			{
+				manifestEntry = new ZipArchiveEntry(MANIFEST_NAME);
+			}
+			else
+			{
+				TarArchiveEntry tarEntry = new TarArchiveEntry(MANIFEST_NAME);
+				tarEntry.setSize(manifestBytes.length);
+				manifestEntry = tarEntry;
+			}
+			this.archiveOut.putArchiveEntry(manifestEntry);
+			this.archiveOut.write(manifestBytes);
+			this.archiveOut.closeArchiveEntry();
+			this.archiveOut.finish();
+		}
+		finally
+		{
+			this.archiveOut.close();
+		}
+	}
+
+	/**
+	 * The manifest stored at the end of the archive
+	 */
+	private static class Manifest
+	{
+		private String query;
+		private LocalDateTime created;
+		private List<ManifestFile> files = new ArrayList<>();
+		private Map<String, String> failures = new LinkedHashMap<>();
+	}
+
+	/**
+	 * A single file listed in the manifest
+	 */
+	private static class ManifestFile
+	{
+		// Where the file is in the archive
+		private String path;
+		// Where the file came from on CyVerse
+		private String source;
+		// The SHA-256 checksum of the file
+		private String sha256;
+		// The size of the file in bytes
+		private Long size;
+
+		ManifestFile(String path, String source, String sha256, Long size)
+		{
+			this.path = path;
+			this.source = source;
+			this.sha256 = sha256;
+			this.size = size;
+		}
+	}
+}
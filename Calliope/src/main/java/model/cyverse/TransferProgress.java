@@ -0,0 +1,84 @@
+package model.cyverse;
+
+import javafx.beans.property.DoubleProperty;
+import org.irods.jargon.core.transfer.TransferStatus;
+import org.irods.jargon.core.transfer.TransferStatusCallbackListener;
+
+/**
+ * Combines the progress of many transfers running at the same time into a single progress value. Each part is weighted by
+ * its size so that the combined progress moves at the same rate as the bytes being sent
+ */
+class TransferProgress
+{
+	// The weight of each part, usually its size in bytes
+	private final long[] partWeights;
+	// How far along each part is from 0 to 1
+	private final double[] partFractions;
+	// The sum of every part's weight
+	private final double totalWeight;
+	// The property to write the combined progress into
+	private final DoubleProperty progressCallback;
+
+	/**
+	 * Constructor initializes every part to 0% complete
+	 *
+	 * @param partWeights The weight of each part, usually its size in bytes
+	 * @param progressCallback The property to write the combined progress into
+	 */
+	TransferProgress(long[] partWeights, DoubleProperty progressCallback)
+	{
+		this.partWeights = partWeights;
+		this.partFractions = new double[partWeights.length];
+		long totalWeight = 0;
+		for (long partWeight : partWeights)
+			totalWeight = totalWeight + partWeight;
+		this.totalWeight = Math.max(totalWeight, 1);
+		this.progressCallback = progressCallback;
+	}
+
+	/**
+	 * Creates a transfer listener that updates the progress of a single part
+	 *
+	 * @param part The index of the part
+	 * @return A listener to pass to the transfer of that part
+	 */
+	TransferStatusCallbackListener listenerForPart(Integer part)
+	{
+		return new TransferStatusCallbackListener()
+		{
+			@Override
+			public FileStatusCallbackResponse statusCallback(TransferStatus transferStatus)
+			{
+				// Update the part's progress whenever we get a callback
+				if (transferStatus.getTotalSize() > 0)
+					TransferProgress.this.setPartFraction(part, transferStatus.getBytesTransfered() / (double) transferStatus.getTotalSize());
+				return FileStatusCallbackResponse.CONTINUE;
+			}
+			// Ignore this status callback
+			@Override
+			public void overallStatusCallback(TransferStatus transferStatus) {}
+			// Always overwrite, a part may have been partially sent by a failed attempt
+			@Override
+			public CallbackResponse transferAsksWhetherToForceOperation(String irodsAbsolutePath, boolean isCollection)
+			{
+				return CallbackResponse.YES_FOR_ALL;
+			}
+		};
+	}
+
+	/**
+	 * Sets how far along a part is and updates the combined progress
+	 *
+	 * @param part The index of the part
+	 * @param fraction How far along the part is from 0 to 1
+	 */
+	synchronized void setPartFraction(Integer part, Double fraction)
+	{
+		this.partFractions[part] = Math.min(Math.max(fraction, 0), 1);
+		double completedWeight = 0;
+		for (Integer i = 0; i < this.partWeights.length; i++)
+			completedWeight = completedWeight + this.partFractions[i] * this.partWeights[i];
+		if (this.progressCallback != null)
+			this.progressCallback.setValue(completedWeight / this.totalWeight);
+	}
+}
@@ -0,0 +1,245 @@
+package model.cyverse;
+
+import com.google.gson.JsonParseException;
+import model.CalliopeData;
+import model.image.DataContainer;
+import model.image.DataDirectory;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A record on disk of how far an upload to CyVerse got. Each TAR part is marked once it reaches the collection's uploads
+ * folder and the whole upload is marked once it is indexed, so an upload that is interrupted can continue from the first
+ * part that did not finish instead of starting over
+ */
+public class UploadJournal
+{
+	// The file this journal is saved to, not serialized
+	private transient File journalFile;
+
+	// The collection being uploaded to
+	private String collectionID;
+	// The absolute path of the local directory being uploaded
+	private String localDirectory;
+	// The name of the folder on CyVerse the upload goes into, null until the upload folder is chosen
+	private String uploadFolderName;
+	// When the upload was first started
+	private LocalDateTime uploadStarted;
+	// Each TAR part of the upload
+	private List<Part> parts = new ArrayList<>();
+	// True once the upload's metadata is indexed
+	private Boolean indexed = false;
+
+	/**
+	 * Opens the journal for an upload of a directory into a collection. If a journal exists for the same directory and
+	 * collection and the directory's files have not changed, that journal is returned so the upload can continue. Otherwise
+	 * a new journal is created
+	 *
+	 * @param journalDirectory The directory journals are saved in
+	 * @param collectionID The collection being uploaded to
+	 * @param directory The directory being uploaded
+	 * @param tarParts The directory split into TAR parts
+	 * @return The journal for this upload
+	 */
+	public static UploadJournal open(File journalDirectory, String collectionID, DataDirectory directory, List<List<DataContainer>> tarParts)
+	{
+		String localDirectory = directory.getFile().getAbsolutePath();
+		File journalFile = new File(journalDirectory, sha256Hex((collectionID + "|" + localDirectory).getBytes(StandardCharsets.UTF_8)) + ".json");
+
+		// Fingerprint each part by the files in it so we know if the directory changed since the last attempt
+		List<String> partFingerprints = new ArrayList<>();
+		for (List<DataContainer> tarPart : tarParts)
+		{
+			StringBuilder partContents = new StringBuilder();
+			for (DataContainer entry : tarPart)
+				partContents.append(entry.getFile().getAbsolutePath()).append('|').append(entry.getFile().length()).append('|').append(entry.getFile().lastModified()).append('\n');
+			partFingerprints.add(sha256Hex(partContents.toString().getBytes(StandardCharsets.UTF_8)));
+		}
+
+		// Try to continue an existing journal
+		if (journalFile.exists())
+		{
+			try (Reader reader = Files.newBufferedReader(journalFile.toPath(), StandardCharsets.UTF_8))
+			{
+				UploadJournal existing = CalliopeData.getInstance().getGson().fromJson(reader, UploadJournal.class);
+				if (existing != null && existing.matches(collectionID, localDirectory, partFingerprints))
+				{
+					existing.journalFile = journalFile;
+					return existing;
+				}
+			}
+			catch (IOException | JsonParseException e)
+			{
+				CalliopeData.getInstance().getErrorDisplay().printError("Could not read upload journal " + journalFile.getAbsolutePath() + ", starting the upload over: " + e.getMessage());
+			}
+		}
+
+		// Start a new journal
+		UploadJournal journal = new UploadJournal();
+		journal.journalFile = journalFile;
+		journal.collectionID = collectionID;
+		journal.localDirectory = localDirectory;
+		journal.uploadStarted = LocalDateTime.now();
+		for (String partFingerprint : partFingerprints)
+			journal.parts.add(new Part(partFingerprint));
+		return journal;
+	}
+
+	/**
+	 * Tests if this journal was written for the same upload
+	 *
+	 * @param collectionID The collection being uploaded to
+	 * @param localDirectory The absolute path of the local directory being uploaded
+	 * @param partFingerprints The fingerprint of each part of the upload
+	 * @return True if the journal is for the same collection, directory, and files
+	 */
+	private Boolean matches(String collectionID, String localDirectory, List<String> partFingerprints)
+	{
+		if (!collectionID.equals(this.collectionID) || !localDirectory.equals(this.localDirectory) || this.uploadFolderName == null || this.parts == null || this.parts.size() != partFingerprints.size())
+			return false;
+		for (Integer i = 0; i < partFingerprints.size(); i++)
+			if (!partFingerprints.get(i).equals(this.parts.get(i).fingerprint))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Sets the name of the folder on CyVerse the upload goes into and saves the journal
+	 *
+	 * @param uploadFolderName The name of the upload folder
+	 */
+	public synchronized void setUploadFolderName(String uploadFolderName) throws IOException
+	{
+		this.uploadFolderName = uploadFolderName;
+		this.save();
+	}
+
+	/**
+	 * Marks a TAR part as uploaded and saves the journal
+	 *
+	 * @param part The index of the part
+	 * @param tarSize The size of the uploaded TAR in bytes, checked against CyVerse before the part is skipped on resume
+	 */
+	public synchronized void markPartUploaded(Integer part, Long tarSize) throws IOException
+	{
+		this.parts.get(part).uploaded = true;
+		this.parts.get(part).tarSize = tarSize;
+		this.save();
+	}
+
+	/**
+	 * Marks the upload as indexed and saves the journal
+	 */
+	public synchronized void markIndexed() throws IOException
+	{
+		this.indexed = true;
+		this.save();
+	}
+
+	/**
+	 * Deletes the journal once the upload is complete
+	 */
+	public synchronized void delete()
+	{
+		this.journalFile.delete();
+	}
+
+	/**
+	 * Writes the journal to disk. The journal is written to a temporary file first so that a crash mid-write never leaves a
+	 * corrupt journal behind
+	 */
+	private void save() throws IOException
+	{
+		this.journalFile.getParentFile().mkdirs();
+		File tempFile = new File(this.journalFile.getAbsolutePath() + ".tmp");
+		try (Writer writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8))
+		{
+			CalliopeData.getInstance().getGson().toJson(this, writer);
+		}
+		Files.move(tempFile.toPath(), this.journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * @return The SHA-256 checksum of the bytes as a hex string
+	 */
+	private static String sha256Hex(byte[] bytes)
+	{
+		return String.format("%064x", new BigInteger(1, sha256().digest(bytes)));
+	}
+
+	/**
+	 * @return A SHA-256 message digest, which every JVM is required to support
+	 */
+	static MessageDigest sha256()
+	{
+		try
+		{
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	///
+	/// Getters
+	///
+
+	public String getUploadFolderName()
+	{
+		return this.uploadFolderName;
+	}
+
+	public LocalDateTime getUploadStarted()
+	{
+		return this.uploadStarted;
+	}
+
+	public synchronized Boolean isPartUploaded(Integer part)
+	{
+		return this.parts.get(part).uploaded;
+	}
+
+	public synchronized Long getPartTarSize(Integer part)
+	{
+		return this.parts.get(part).tarSize;
+	}
+
+	public synchronized Integer getPartsUploaded()
+	{
+		return Math.toIntExact(this.parts.stream().filter(part -> part.uploaded).count());
+	}
+
+	public synchronized Boolean isIndexed()
+	{
+		return this.indexed;
+	}
+
+	/**
+	 * A single TAR part of an upload
+	 */
+	private static class Part
+	{
+		// Fingerprint of the files in this part
+		private String fingerprint;
+		// True once the part reached CyVerse
+		private Boolean uploaded = false;
+		// The size of the TAR that was uploaded, null for journals written before sizes were recorded
+		private Long tarSize;
+
+		Part(String fingerprint)
+		{
+			this.fingerprint = fingerprint;
+		}
+	}
+}
@@ -1,21 +1,29 @@
 package model.dataSources;
 
+import com.thebuzzmedia.exiftool.Tag;
 import javafx.beans.property.DoubleProperty;
 import model.CalliopeData;
 import model.image.DataContainer;
 import model.image.DataDirectory;
 import model.image.ImageEntry;
+import model.image.MetadataCache;
+import model.image.MetadataManager;
 import model.image.VideoEntry;
 import model.util.AnalysisUtils;
+import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.util.List;
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -52,30 +60,287 @@ public class DirectoryManager
 		}
 	}
 
+	// The number of threads used to read image metadata in parallel, one per core
+	private static final Integer METADATA_READER_THREADS = Runtime.getRuntime().availableProcessors();
+	// The fewest files read per exiftool process, starting exiftool costs about as much as reading this many files so a
+	// smaller batch would spend more time starting processes than reading
+	private static final Integer MIN_METADATA_BATCH_SIZE = 50;
+	// How often the progress property is updated while reading metadata
+	private static final Long PROGRESS_INTERVAL_MS = 250L;
+	// The number of TAR files built in parallel
+	private static final Integer TAR_BUILDER_THREADS = Runtime.getRuntime().availableProcessors();
+	// The size of the buffer used to stream files into a TAR
+	private static final Integer TAR_COPY_BUFFER_SIZE = 64 * 1024;
+
 	/**
-	 * Initializes all images in a directory, we do this so we can get a progress bar
+	 * Initializes all images in a directory, we do this so we can get a progress bar. Metadata is read in parallel
+	 * batches but the progress property is only ever written from the calling thread
 	 *
 	 * @param dataDirectory The directory containing images that need initializing
 	 * @param progressProperty How many images we've parsed so far
 	 */
 	public static void initImages(DataDirectory dataDirectory, DoubleProperty progressProperty)
+	{
+		DirectoryManager.initImages(dataDirectory, progressProperty, Runnable::run);
+	}
+
+	/**
+	 * Initializes all images in a directory, we do this so we can get a progress bar. Metadata is read in parallel
+	 * batches, but the results are stored into the images through the entry updater and each batch waits for its results
+	 * to be stored. A directory that is already shown can pass Platform::runLater so that its images only change on the FX
+	 * thread. The progress property is only ever written from the calling thread
+	 *
+	 * @param dataDirectory The directory containing images that need initializing
+	 * @param progressProperty How many images we've parsed so far
+	 * @param entryUpdater Runs the code that stores metadata into images
+	 */
+	public static void initImages(DataDirectory dataDirectory, DoubleProperty progressProperty, Executor entryUpdater)
 	{
 		// List of images to init
 		List<DataContainer> imageEntries = dataDirectory.flattened().filter(imageContainer -> imageContainer instanceof ImageEntry || imageContainer instanceof VideoEntry).collect(Collectors.toList());
 		// The total number of images in the list
 		Integer imageCount = imageEntries.size();
-		for (Integer i = 0; i < imageCount; i++)
-		{
-			// Every 20 images we update progress
-			if (i % 20 == 0)
-				progressProperty.setValue(i.doubleValue() / imageCount.doubleValue());
-			// Read the metadata into each image
-			if (imageEntries.get(i) instanceof ImageEntry) {
-				((ImageEntry)imageEntries.get(i)).readFileMetadataFromImage();
-			} else {
-				((VideoEntry)imageEntries.get(i)).readFileMetadataFromVideo();
+		if (imageCount == 0)
+			return;
+
+		// Split the images into batches so that each exiftool call reads many files. Spread mid-sized directories over every
+		// thread, but never make batches so small that starting exiftool costs more than the reading it does
+		Integer batchSize = Math.max(MIN_METADATA_BATCH_SIZE, Math.min(MetadataManager.BATCH_SIZE, (int) Math.ceil(imageCount.doubleValue() / METADATA_READER_THREADS.doubleValue())));
+		List<List<DataContainer>> batches = ListUtils.partition(imageEntries, batchSize);
+		// The number of images read so far across all threads
+		AtomicInteger imagesRead = new AtomicInteger(0);
+		// Images whose altitude is computed in a single stage once all metadata is read, mapped to the metadata read so it can be cached afterwards
+		Map<DataContainer, Map<Tag, String>> needsAltitude = new ConcurrentHashMap<>();
+
+		// Create a bounded pool of workers to read metadata with
+		Integer threadCount = Math.min(METADATA_READER_THREADS, batches.size());
+		ExecutorService metadataReaders = Executors.newFixedThreadPool(threadCount);
+		CompletionService<List<DataContainer>> completionService = new ExecutorCompletionService<>(metadataReaders);
+		long startTime = System.nanoTime();
+		try
+		{
+			// Submit each batch to the pool
+			for (List<DataContainer> batch : batches)
+			{
+				completionService.submit(() ->
+				{
+					DirectoryManager.readMetadataBatch(batch, imagesRead, needsAltitude, entryUpdater);
+					return batch;
+				});
+			}
+			// Wait for each batch to finish, updating progress from this thread only
+			Integer batchesLeft = batches.size();
+			while (batchesLeft > 0)
+			{
+				Future<List<DataContainer>> finishedBatch = completionService.poll(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+				if (finishedBatch != null)
+				{
+					finishedBatch.get();
+					batchesLeft--;
+				}
+				progressProperty.setValue(imagesRead.doubleValue() / imageCount.doubleValue());
+			}
+		}
+		catch (InterruptedException e)
+		{
+			// If we get interrupted the task was cancelled, so stop reading metadata
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			CalliopeData.getInstance().getErrorDisplay().printError("Error reading image metadata!\n" + ExceptionUtils.getStackTrace(e));
+		}
+		finally
+		{
+			metadataReaders.shutdownNow();
+		}
+
+		// Report how fast the metadata read stage was
+		double elapsedSeconds = (System.nanoTime() - startTime) / 1E9;
+		CalliopeData.getInstance().getErrorDisplay().printDebug(String.format("Metadata stage: read %d files in %.2fs (%.1f files/s) using %d threads", imageCount, elapsedSeconds, imageCount / Math.max(elapsedSeconds, 1E-9), threadCount));
+
+		// Now that every position is known, resolve the ground elevation under each image at once
+		if (!Thread.currentThread().isInterrupted())
+			DirectoryManager.resolveAltitudes(needsAltitude, entryUpdater);
+	}
+
+	/**
+	 * Computes the altitude above ground of a list of images by looking up all of their ground elevations in one batch. Once
+	 * the altitude is known each image's metadata is stored in the metadata cache
+	 *
+	 * @param entryToMetadata The images and videos whose position is read but altitude is not yet computed, mapped to their metadata
+	 * @param entryUpdater Runs the code that stores the altitudes into images
+	 */
+	private static void resolveAltitudes(Map<DataContainer, Map<Tag, String>> entryToMetadata, Executor entryUpdater)
+	{
+		if (entryToMetadata.isEmpty())
+			return;
+
+		List<DataContainer> entries = new ArrayList<>(entryToMetadata.keySet());
+		MetadataCache metadataCache = CalliopeData.getInstance().getMetadataCache();
+		long startTime = System.nanoTime();
+		// Grab the position of every image
+		double[] latitudes = new double[entries.size()];
+		double[] longitudes = new double[entries.size()];
+		for (Integer i = 0; i < entries.size(); i++)
+		{
+			latitudes[i] = entries.get(i).getPositionTaken().getLatitude();
+			longitudes[i] = entries.get(i).getPositionTaken().getLongitude();
+		}
+
+		try
+		{
+			// Look up the ground elevations and set each image's altitude
+			double[] groundElevations = CalliopeData.getInstance().getElevationData().getGroundElevations(latitudes, longitudes).get();
+			DirectoryManager.runAndWait(entryUpdater, () ->
+			{
+				for (Integer i = 0; i < entries.size(); i++)
+					entries.get(i).computeAltitude(groundElevations[i]);
+			});
+			for (Integer i = 0; i < entries.size(); i++)
+			{
+				// Only cache the metadata if the ground elevation lookup worked so that it gets retried next time
+				if (Double.isFinite(groundElevations[i]))
+					metadataCache.put(entries.get(i).getFile(), entryToMetadata.get(entries.get(i)), groundElevations[i]);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			// If we get interrupted the task was cancelled, so stop looking up elevations
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			CalliopeData.getInstance().getErrorDisplay().printError("Error retrieving ground elevations!\n" + ExceptionUtils.getStackTrace(e));
+		}
+
+		// Report how fast the elevation stage was
+		double elapsedSeconds = (System.nanoTime() - startTime) / 1E9;
+		CalliopeData.getInstance().getErrorDisplay().printDebug(String.format("Elevation stage: resolved %d positions in %.2fs (%.1f positions/s)", entries.size(), elapsedSeconds, entries.size() / Math.max(elapsedSeconds, 1E-9)));
+	}
+
+	/**
+	 * Reads the metadata of a batch of images with a single exiftool call. Images that have not changed since they were last
+	 * read are pulled from the metadata cache instead. Any image that could not be read in the batch is read on its own
+	 * afterwards so that the user is shown the error. Results are stored into the images through the entry updater
+	 *
+	 * @param batch The images and videos to read
+	 * @param imagesRead Counter incremented for each image read
+	 * @param needsAltitude Images read in the batch are added to this map because their altitude is not yet computed
+	 * @param entryUpdater Runs the code that stores metadata into images
+	 */
+	private static void readMetadataBatch(List<DataContainer> batch, AtomicInteger imagesRead, Map<DataContainer, Map<Tag, String>> needsAltitude, Executor entryUpdater)
+	{
+		MetadataCache metadataCache = CalliopeData.getInstance().getMetadataCache();
+		// Split the batch into images that are cached, and images that need to be read which are mapped from file back to entry
+		Map<DataContainer, MetadataCache.CachedMetadata> cachedEntries = new HashMap<>();
+		Map<File, DataContainer> fileToEntry = new HashMap<>();
+		for (DataContainer entry : batch)
+		{
+			MetadataCache.CachedMetadata cachedMetadata = metadataCache.get(entry.getFile());
+			if (cachedMetadata != null)
+				cachedEntries.put(entry, cachedMetadata);
+			else
+				fileToEntry.put(entry.getFile(), entry);
+		}
+
+		// Store the cached metadata and altitude of each cached file, remembering any whose cached metadata can't be parsed
+		List<DataContainer> unparsableEntries = new ArrayList<>();
+		if (!cachedEntries.isEmpty())
+			DirectoryManager.runAndWait(entryUpdater, () ->
+			{
+				for (Map.Entry<DataContainer, MetadataCache.CachedMetadata> cachedEntry : cachedEntries.entrySet())
+				{
+					try
+					{
+						DirectoryManager.storeMetadata(cachedEntry.getKey(), cachedEntry.getValue().getMetadata());
+						cachedEntry.getKey().computeAltitude(cachedEntry.getValue().getGroundElevation());
+					}
+					catch (Exception e)
+					{
+						unparsableEntries.add(cachedEntry.getKey());
+					}
+				}
+			});
+		imagesRead.addAndGet(cachedEntries.size() - unparsableEntries.size());
+		// If the cached metadata can't be parsed, drop it and read the file again
+		for (DataContainer entry : unparsableEntries)
+		{
+			metadataCache.invalidate(entry.getFile());
+			fileToEntry.put(entry.getFile(), entry);
+		}
+		if (fileToEntry.isEmpty())
+			return;
+
+		// Read the rest of the batch with a single exiftool call
+		Map<DataContainer, Map<Tag, String>> entryToMetadata = new HashMap<>();
+		try
+		{
+			CalliopeData.getInstance().getMetadataManager().readImageMetadata(new ArrayList<>(fileToEntry.keySet()), (file, metadata) -> entryToMetadata.put(fileToEntry.remove(file), metadata));
+		}
+		catch (IOException e)
+		{
+			CalliopeData.getInstance().getErrorDisplay().printError("Error reading a batch of image metadata, reading images one by one instead!\n" + ExceptionUtils.getStackTrace(e));
+		}
+
+		// Anything left over was not returned by the batch, so read it by itself
+		for (DataContainer entry : fileToEntry.values())
+		{
+			try
+			{
+				entryToMetadata.put(entry, CalliopeData.getInstance().getMetadataManager().readImageMetadata(entry.getFile()));
+			}
+			catch (Exception e)
+			{
+				// If reading the metadata fails in any way, print an error
+				CalliopeData.getInstance().getErrorDisplay().notify("Error reading image metadata for file " + entry.getFile().getName() + "!\n" + ExceptionUtils.getStackTrace(e));
+				imagesRead.incrementAndGet();
 			}
 		}
+
+		// Store the metadata into each image, the altitude is computed later for all images at once
+		DirectoryManager.runAndWait(entryUpdater, () ->
+		{
+			for (Map.Entry<DataContainer, Map<Tag, String>> entryAndMetadata : entryToMetadata.entrySet())
+			{
+				try
+				{
+					DirectoryManager.storeMetadata(entryAndMetadata.getKey(), entryAndMetadata.getValue());
+					needsAltitude.put(entryAndMetadata.getKey(), entryAndMetadata.getValue());
+				}
+				catch (Exception e)
+				{
+					// If parsing the metadata fails in any way, print an error
+					CalliopeData.getInstance().getErrorDisplay().notify("Error reading image metadata for file " + entryAndMetadata.getKey().getFile().getName() + "!\n" + ExceptionUtils.getStackTrace(e));
+				}
+			}
+		});
+		imagesRead.addAndGet(entryToMetadata.size());
+	}
+
+	/**
+	 * Stores metadata into an image or video without computing its altitude
+	 *
+	 * @param entry The image or video
+	 * @param metadata The metadata to store
+	 */
+	private static void storeMetadata(DataContainer entry, Map<Tag, String> metadata)
+	{
+		if (entry instanceof ImageEntry)
+			((ImageEntry) entry).readFileMetadataFromMap(metadata, false);
+		else
+			((VideoEntry) entry).readFileMetadataFromMap(metadata, false);
+	}
+
+	/**
+	 * Runs code with an executor and waits for it to finish
+	 *
+	 * @param executor The executor to run the code with, such as Platform::runLater
+	 * @param runnable The code to run
+	 */
+	private static void runAndWait(Executor executor, Runnable runnable)
+	{
+		CompletableFuture.runAsync(runnable, executor).join();
 	}
 
 	/**
@@ -114,6 +379,9 @@ public class DirectoryManager
 		return new DataDirectory(null);
 	}
 
+	// The number of threads used to scan directories, directory listing is mostly waiting on the disk so we use more than the core count
+	private static final Integer SCANNER_THREADS = Math.max(8, Runtime.getRuntime().availableProcessors());
+
 	/**
 	 * Reads a directory recursively and returns it in a usable format
 	 * 
@@ -121,6 +389,20 @@ public class DirectoryManager
 	 *            The file to make into a directory
 	 */
 	public static DataDirectory loadDirectory(File imageOrLocation)
+	{
+		return DirectoryManager.loadDirectory(imageOrLocation, entry -> {});
+	}
+
+	/**
+	 * Reads a directory recursively and returns it in a usable format. Sub-directories are scanned in parallel and each
+	 * image or video is handed to the callback as soon as it is discovered
+	 *
+	 * @param imageOrLocation
+	 *            The file to make into a directory
+	 * @param onEntryFound
+	 *            Called with each image or video as it is found, may be called from multiple threads at once
+	 */
+	public static DataDirectory loadDirectory(File imageOrLocation, Consumer<DataContainer> onEntryFound)
 	{
 		// If it is not a valid file or directory, returns null
 		DataDirectory toReturn = null;
@@ -128,120 +410,287 @@ public class DirectoryManager
 		{
 			// If it is a directory, recursively create it
 			toReturn = new DataDirectory(imageOrLocation);
-			DirectoryManager.createDirectoryAndImageTree(toReturn);
+			DirectoryManager.scanDirectory(toReturn, onEntryFound, null);
 		}
 		else if (AnalysisUtils.fileIsImage(imageOrLocation)) {
 			// If it's not a directory, test if it's an image
 			toReturn = new DataDirectory(imageOrLocation.getParentFile());
 			ImageEntry imageEntry = new ImageEntry(imageOrLocation);
 			toReturn.addChild(imageEntry);
+			onEntryFound.accept(imageEntry);
 		}
 		else if (AnalysisUtils.fileIsMedia(imageOrLocation)) {
 			// If it's not a directory or an image, test if it's a video
 			toReturn = new DataDirectory(imageOrLocation.getParentFile());
 			VideoEntry videoEntry = new VideoEntry(imageOrLocation);
 			toReturn.addChild(videoEntry);
+			onEntryFound.accept(videoEntry);
 		}
 		return toReturn;
 	}
 
 	/**
-	 * Recursively create the directory structure
-	 * 
-	 * @param current
-	 *            The current directory to work on
+	 * Reads a directory that is already shown recursively, filling it in while the scan continues. Sub-directories are scanned
+	 * in parallel, and each directory's images, videos, and sub-directories are added through the tree updater as soon as the
+	 * directory is listed, so the tree is only ever changed by the updater's thread. Once the scan is complete empty
+	 * directories are removed and this waits until every change has been applied
+	 *
+	 * @param directory
+	 *            The empty directory to fill, usually already attached to the image tree
+	 * @param onEntryFound
+	 *            Called with each image or video as it is found, may be called from multiple threads at once
+	 * @param treeUpdater
+	 *            Applies each change to the tree in the order given, Platform::runLater if the directory is shown
+	 */
+	public static void loadDirectoryIncrementally(DataDirectory directory, Consumer<DataContainer> onEntryFound, Executor treeUpdater)
+	{
+		DirectoryManager.scanDirectory(directory, onEntryFound, treeUpdater);
+		// Remove any directories that are empty and contain no images
+		DirectoryManager.runAndWait(treeUpdater, () -> DirectoryManager.removeEmptyDirectories(directory));
+	}
+
+	/**
+	 * Scans a directory recursively on a pool of scanner threads
+	 *
+	 * @param directory The directory to fill
+	 * @param onEntryFound Called with each image or video as it is found
+	 * @param treeUpdater Applies each change to the tree, or null to build the tree on the scanner threads
+	 */
+	private static void scanDirectory(DataDirectory directory, Consumer<DataContainer> onEntryFound, Executor treeUpdater)
+	{
+		ForkJoinPool scannerPool = new ForkJoinPool(SCANNER_THREADS);
+		try
+		{
+			scannerPool.invoke(new DirectoryScanTask(directory, onEntryFound, treeUpdater));
+		}
+		finally
+		{
+			scannerPool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Fork join task that creates the directory structure of one directory and forks a sub-task for each sub-directory
 	 */
-	private static void createDirectoryAndImageTree(DataDirectory current)
+	private static class DirectoryScanTask extends RecursiveAction
 	{
-		File[] subFiles = current.getFile().listFiles();
+		// The current directory to work on
+		private final DataDirectory current;
+		// Called with each image or video as it is found
+		private final Consumer<DataContainer> onEntryFound;
+		// Applies each change to the tree when it is already shown, null to build the tree on the scanner threads
+		private final Executor treeUpdater;
+
+		/**
+		 * Constructor just initializes fields
+		 *
+		 * @param current The current directory to work on
+		 * @param onEntryFound Called with each image or video as it is found
+		 * @param treeUpdater Applies each change to the tree when it is already shown, null to build the tree on the scanner threads
+		 */
+		DirectoryScanTask(DataDirectory current, Consumer<DataContainer> onEntryFound, Executor treeUpdater)
+		{
+			this.current = current;
+			this.onEntryFound = onEntryFound;
+			this.treeUpdater = treeUpdater;
+		}
 
-		if (subFiles != null)
+		/**
+		 * Lists the directory once, reading each file's attributes from the listing instead of asking the file system about
+		 * every file separately
+		 */
+		@Override
+		protected void compute()
 		{
-			// Get all files in the directory
-			for (File file : subFiles)
+			List<DataDirectory> subDirectories = new ArrayList<>();
+			List<DataContainer> entries = new ArrayList<>();
+			try
 			{
-				// Add all image files to the directory
-				if (AnalysisUtils.fileIsImage(file))
+				// A max depth of 1 visits every file in this directory, including sub-directories, without descending into them.
+				// Links are followed so linked images and directories are imported just like File.listFiles() did
+				Files.walkFileTree(this.current.getFile().toPath(), EnumSet.of(FileVisitOption.FOLLOW_LINKS), 1, new SimpleFileVisitor<Path>()
 				{
-					ImageEntry imageEntry = new ImageEntry(file);
-					current.addChild(imageEntry);
-				}
-				// Add all video files to the directory
-				else if (AnalysisUtils.fileIsMedia(file))
-				{
-					VideoEntry videoEntry = new VideoEntry(file);
-					current.addChild(videoEntry);
-				}
-				// Add all subdirectories to the directory
-				else if (file.isDirectory())
+					@Override
+					public FileVisitResult visitFile(Path path, BasicFileAttributes attributes)
+					{
+						File file = path.toFile();
+						// Add all subdirectories to the directory
+						if (attributes.isDirectory())
+							subDirectories.add(new DataDirectory(file));
+						// Add all image files to the directory
+						else if (AnalysisUtils.fileIsImage(file))
+							DirectoryScanTask.this.addEntry(entries, new ImageEntry(file));
+						// Add all video files to the directory
+						else if (AnalysisUtils.fileIsMedia(file))
+							DirectoryScanTask.this.addEntry(entries, new VideoEntry(file));
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult visitFileFailed(Path path, IOException exception)
+					{
+						// Skip any files we can't read
+						return FileVisitResult.CONTINUE;
+					}
+				});
+			}
+			catch (IOException e)
+			{
+				CalliopeData.getInstance().getErrorDisplay().printError("Error scanning directory " + this.current.getFile().getAbsolutePath() + "!\n" + ExceptionUtils.getStackTrace(e));
+			}
+
+			List<DirectoryScanTask> subDirectoryTasks = subDirectories.stream().map(subDirectory -> new DirectoryScanTask(subDirectory, this.onEntryFound, this.treeUpdater)).collect(Collectors.toList());
+			if (this.treeUpdater == null)
+			{
+				// Scan each sub-directory in parallel. Sub-directories are only added to this directory once they are complete so
+				// that each directory's child list is only ever modified by one thread
+				this.current.getChildren().addAll(entries);
+				ForkJoinTask.invokeAll(subDirectoryTasks);
+				this.current.getChildren().addAll(subDirectories);
+			}
+			else
+			{
+				// The tree is already shown, so show what this directory contains right away. The sub-directories are added
+				// empty and fill in as they are scanned, which is always after this update since updates are run in order
+				this.treeUpdater.execute(() ->
 				{
-					DataDirectory subDirectory = new DataDirectory(file);
-					current.addChild(subDirectory);
-					DirectoryManager.createDirectoryAndImageTree(subDirectory);
-				}
+					this.current.getChildren().addAll(entries);
+					this.current.getChildren().addAll(subDirectories);
+				});
+				ForkJoinTask.invokeAll(subDirectoryTasks);
 			}
 		}
+
+		/**
+		 * Adds an image or video to the list of entries in the current directory and passes it to the callback
+		 *
+		 * @param entries The entries found in the current directory
+		 * @param entry The entry to add
+		 */
+		private void addEntry(List<DataContainer> entries, DataContainer entry)
+		{
+			entries.add(entry);
+			this.onEntryFound.accept(entry);
+		}
 	}
 
 	/**
-	 * Given an image directory, this will create a TAR file out of the directory
+	 * Given an image directory, this will create TAR files out of the directory. Each TAR is built on its own thread
 	 *
 	 * @param directory The image directory to TAR
-	 * @return The TAR file
+	 * @param maxImagesPerTar The maximum number of images to put into a single TAR file
+	 * @return The TAR files
 	 */
 	public static File[] directoryToTars(DataDirectory directory, Integer maxImagesPerTar)
 	{
-		maxImagesPerTar = maxImagesPerTar - 1;
+		// Split the directory into parts, one per TAR
+		List<List<DataContainer>> tarParts = DirectoryManager.splitIntoTarParts(directory, maxImagesPerTar);
+		if (tarParts.isEmpty())
+			return new File[0];
+		// Get the path to the top level directory
+		String topDirectory = directory.getFile().getParentFile().getAbsolutePath();
+
+		// Build each TAR in parallel
+		ExecutorService tarBuilders = Executors.newFixedThreadPool(Math.min(TAR_BUILDER_THREADS, tarParts.size()));
+		List<Future<File>> tarFutures = new ArrayList<>();
 		try
 		{
-			// List of files to be uploaded
-			List<DataContainer> entries = directory.flattened().filter(imageContainer -> imageContainer instanceof ImageEntry || imageContainer instanceof VideoEntry).collect(Collectors.toList());
+			for (List<DataContainer> tarPart : tarParts)
+				tarFutures.add(tarBuilders.submit(() -> DirectoryManager.writeTar(tarPart, topDirectory)));
 
-			// Take the number of images and videos / maximum number of files per tar to get the number of tar files we need
-			Integer numberOfTars = (int) Math.ceil((double) entries.size() / (double) maxImagesPerTar);
-			Integer imagesPerTar = (int) Math.ceil((double) entries.size() / (double) numberOfTars);
-			// Create an array of tars
-			File[] tars = new File[numberOfTars];
-
-			// Get the path to the top level directory
-			String topDirectory = directory.getFile().getParentFile().getAbsolutePath();
+			// Create an array of tars, in the same order as the parts
+			File[] tars = new File[tarParts.size()];
+			for (Integer tarIndex = 0; tarIndex < tars.length; tarIndex++)
+				tars[tarIndex] = tarFutures.get(tarIndex).get();
+			return tars;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			CalliopeData.getInstance().getErrorDisplay().printError("Error creating TAR files!\n" + ExceptionUtils.getStackTrace(e));
+		}
+		finally
+		{
+			tarBuilders.shutdownNow();
+		}
 
-			for (Integer tarIndex = 0; tarIndex < numberOfTars; tarIndex++)
+		// If something goes wrong, delete any TARs that were finished and return a blank array
+		for (Future<File> tarFuture : tarFutures)
+		{
+			try
 			{
-				// Create a temporarily TAR file to write to
-				File tempTar = CalliopeData.getInstance().getTempDirectoryManager().createTempFile("tarToUpload.tar");
-				// Create a TAR output stream to write to
-				TarArchiveOutputStream tarOut = new TarArchiveOutputStream(new FileOutputStream(tempTar));
+				if (tarFuture.isDone() && !tarFuture.isCancelled())
+					tarFuture.get().delete();
+			}
+			catch (InterruptedException | ExecutionException ignored) {}
+		}
+		return new File[0];
+	}
 
-				for (Integer entryIndex = tarIndex * imagesPerTar; entryIndex < (tarIndex + 1) * imagesPerTar && entryIndex < entries.size(); entryIndex++)
-				{
-					DataContainer entry = entries.get(entryIndex);
-					// Create an archive entry for the image
-					String tarPath = StringUtils.substringAfter(entry.getFile().getAbsolutePath(), topDirectory).replace('\\', '/');
-					ArchiveEntry archiveEntry = tarOut.createArchiveEntry(entry.getFile(), tarPath);
-					// Put the archive entry into the TAR file
-					tarOut.putArchiveEntry(archiveEntry);
-					// Write all the bytes in the file into the TAR file
-					tarOut.write(Files.readAllBytes(entry.getFile().toPath()));
-					// Finish writing the TAR entry
-					tarOut.closeArchiveEntry();
-				}
+	/**
+	 * Splits the images and videos in a directory into evenly sized parts, each of which will become a single TAR file
+	 *
+	 * @param directory The image directory to split
+	 * @param maxImagesPerTar The maximum number of images to put into a single TAR file
+	 * @return A list of parts, each part is a list of images and videos
+	 */
+	public static List<List<DataContainer>> splitIntoTarParts(DataDirectory directory, Integer maxImagesPerTar)
+	{
+		maxImagesPerTar = maxImagesPerTar - 1;
+		// List of files to be uploaded
+		List<DataContainer> entries = directory.flattened().filter(imageContainer -> imageContainer instanceof ImageEntry || imageContainer instanceof VideoEntry).collect(Collectors.toList());
+		if (entries.isEmpty())
+			return Collections.emptyList();
 
-				// Flush the file and close it. We delete the TAR after the program closes
-				tarOut.flush();
-				tarOut.close();
+		// Take the number of images and videos / maximum number of files per tar to get the number of tar files we need
+		Integer numberOfTars = (int) Math.ceil((double) entries.size() / (double) maxImagesPerTar);
+		Integer imagesPerTar = (int) Math.ceil((double) entries.size() / (double) numberOfTars);
+		return ListUtils.partition(entries, imagesPerTar);
+	}
 
-				// Store the tar path
-				tars[tarIndex] = tempTar;
+	/**
+	 * Writes a list of images and videos into a temporary TAR file. Files are streamed into the TAR through a fixed size
+	 * buffer so memory use does not depend on the size of the files
+	 *
+	 * @param entries The images and videos to write
+	 * @param topDirectory The path that TAR entry paths are relative to
+	 * @return The TAR file, deleted when the program exits
+	 * @throws IOException If a file could not be read or the TAR could not be written
+	 */
+	public static File writeTar(List<DataContainer> entries, String topDirectory) throws IOException
+	{
+		// Create a temporarily TAR file to write to
+		File tempTar = CalliopeData.getInstance().getTempDirectoryManager().createTempFile("tarToUpload.tar");
+		// The buffer used to copy every file in this TAR
+		byte[] copyBuffer = new byte[TAR_COPY_BUFFER_SIZE];
+		// Create a TAR output stream to write to
+		try (TarArchiveOutputStream tarOut = new TarArchiveOutputStream(new BufferedOutputStream(new FileOutputStream(tempTar), TAR_COPY_BUFFER_SIZE)))
+		{
+			for (DataContainer entry : entries)
+			{
+				// Create an archive entry for the image
+				String tarPath = StringUtils.substringAfter(entry.getFile().getAbsolutePath(), topDirectory).replace('\\', '/');
+				ArchiveEntry archiveEntry = tarOut.createArchiveEntry(entry.getFile(), tarPath);
+				// Put the archive entry into the TAR file
+				tarOut.putArchiveEntry(archiveEntry);
+				// Stream the file into the TAR file
+				try (InputStream fileIn = Files.newInputStream(entry.getFile().toPath()))
+				{
+					IOUtils.copyLarge(fileIn, tarOut, copyBuffer);
+				}
+				// Finish writing the TAR entry
+				tarOut.closeArchiveEntry();
 			}
-
-			return tars;
 		}
 		catch (IOException e)
 		{
-			e.printStackTrace();
+			// Don't leave partial TARs lying around
+			tempTar.delete();
+			throw e;
 		}
-		// If something goes wrong, return a blank array
-		return new File[0];
+		return tempTar;
 	}
 }
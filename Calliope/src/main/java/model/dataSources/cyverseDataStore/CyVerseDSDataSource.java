@@ -1,22 +1,31 @@
 package model.dataSources.cyverseDataStore;
 
+import javafx.application.Platform;
 import javafx.beans.property.*;
 import javafx.concurrent.Task;
 import javafx.scene.control.TextInputDialog;
 import javafx.scene.image.Image;
 import javafx.stage.Window;
+import javafx.util.Pair;
 import model.CalliopeData;
 import model.cyverse.ImageCollection;
 import model.dataSources.DirectoryManager;
 import model.dataSources.IDataSource;
 import model.dataSources.UploadedEntry;
+import model.image.DataContainer;
 import model.image.DataDirectory;
 import model.image.ImageEntry;
+import model.image.MetadataManager;
 import model.image.VideoEntry;
 import model.threading.ErrorTask;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.irods.jargon.core.pub.io.IRODSFile;
 
+import java.io.File;
+import java.io.IOException;
 import java.time.LocalDateTime;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 /**
@@ -24,6 +33,9 @@ import java.util.stream.Collectors;
  */
 public class CyVerseDSDataSource implements IDataSource
 {
+	// The number of remote files downloaded at once while pulling metadata
+	private static final Integer METADATA_DOWNLOAD_THREADS = 8;
+
 	// The name of the data source
 	private ReadOnlyStringWrapper name = new ReadOnlyStringWrapper("CyVerse Data Store");
 	// The description of the data source
@@ -73,17 +85,6 @@ public class CyVerseDSDataSource implements IDataSource
 						{
 							// Remove any empty directories
 							DirectoryManager.removeEmptyDirectories(imageDirectory);
-							// Update progress based on init progress
-							this.updateMessage("Reading image metadata...");
-							DoubleProperty progressProperty = new SimpleDoubleProperty();
-							progressProperty.addListener((observable, oldValue, newValue) -> this.updateProgress(newValue.doubleValue(), 1.0));
-							DirectoryManager.initImages(imageDirectory, progressProperty);
-							// Go over each image entry and queue its download
-							imageDirectory.flattened().filter(imageContainer -> imageContainer instanceof CyVerseDSImageEntry).forEach(imageContainer ->
-							{
-								CyVerseDSImageEntry cyVerseDSImageEntry = (CyVerseDSImageEntry) imageContainer;
-								cyVerseDSImageEntry.pullMetadataFromCyVerse();
-							});
 							imageDirectory.setDataSource(CyVerseDSDataSource.this);
 						}
 						return imageDirectory;
@@ -93,7 +94,11 @@ public class CyVerseDSDataSource implements IDataSource
 				{
 					// After the task completes, we check if the return value is null and if it isn't we add it to our image tree
 					if (indexExistingTask.getValue() != null)
+					{
 						CalliopeData.getInstance().getImageTree().addChild(indexExistingTask.getValue());
+						// Now that the directory is shown, pull the metadata of each of its images in the background
+						CalliopeData.getInstance().getExecutor().getImmediateExecutor().addTask(this.makeMetadataPullTask(indexExistingTask.getValue()), true);
+					}
 					else
 						CalliopeData.getInstance().getErrorDisplay().notify("Could not find the directory specified");
 				});
@@ -108,6 +113,154 @@ public class CyVerseDSDataSource implements IDataSource
 		return null;
 	}
 
+	/**
+	 * Creates a task that pulls the metadata of every image and video in a directory that was just added to the image tree
+	 *
+	 * @param imageDirectory The directory of CyVerse entries to read metadata for
+	 * @return A task that when executed pulls the metadata of each entry
+	 */
+	private Task<Void> makeMetadataPullTask(DataDirectory imageDirectory)
+	{
+		return new ErrorTask<Void>()
+		{
+			@Override
+			protected Void call()
+			{
+				// Update progress based on download and metadata progress
+				this.updateMessage("Reading image metadata for " + imageDirectory.getFile().getName() + "...");
+				DoubleProperty progressProperty = new SimpleDoubleProperty();
+				progressProperty.addListener((observable, oldValue, newValue) -> this.updateProgress(newValue.doubleValue(), 1.0));
+				CyVerseDSDataSource.this.pullMetadataInBatches(imageDirectory, progressProperty);
+				return null;
+			}
+		};
+	}
+
+	/**
+	 * Downloads local copies of the images and videos in a directory in parallel, and as soon as a batch of files has finished
+	 * downloading its metadata is read with a single exiftool call while the remaining downloads continue. Metadata is stored
+	 * on the FX thread since the directory is already shown. Any entry whose metadata could not be read in a batch falls back
+	 * to pulling its metadata on its own
+	 *
+	 * @param imageDirectory The directory of CyVerse entries to read metadata for
+	 * @param progressProperty How far along we are, downloading and reading metadata each count for half
+	 */
+	private void pullMetadataInBatches(DataDirectory imageDirectory, DoubleProperty progressProperty)
+	{
+		// List of images and videos to pull metadata for
+		List<DataContainer> entries = imageDirectory.flattened().filter(imageContainer -> imageContainer instanceof CyVerseDSImageEntry || imageContainer instanceof CyVerseDSVideoEntry).collect(Collectors.toList());
+		Integer entryCount = entries.size();
+		if (entryCount == 0)
+			return;
+
+		// Entries whose metadata was read by a batch, only touched by this thread
+		Set<DataContainer> entriesRead = new HashSet<>();
+		// Files that finished downloading but have not been sent to exiftool yet
+		Map<File, DataContainer> pendingBatch = new HashMap<>();
+		// The number of download and metadata steps completed, each entry has one of each
+		Integer stepsDone = 0;
+		Integer stepCount = entryCount * 2;
+
+		// Download files with a bounded pool of workers, handing them back in the order they finish
+		ExecutorService downloaders = Executors.newFixedThreadPool(Math.min(METADATA_DOWNLOAD_THREADS, entryCount));
+		CompletionService<Pair<DataContainer, File>> completionService = new ExecutorCompletionService<>(downloaders);
+		try
+		{
+			for (DataContainer entry : entries)
+				completionService.submit(() -> new Pair<>(entry, CalliopeData.getInstance().getCyConnectionManager().remoteToLocalImageFile((IRODSFile) entry.getFile())));
+
+			for (Integer downloadsLeft = entryCount; downloadsLeft > 0; downloadsLeft--)
+			{
+				// Wait for the next download to finish
+				try
+				{
+					Pair<DataContainer, File> downloaded = completionService.take().get();
+					if (downloaded.getValue() != null)
+						pendingBatch.put(downloaded.getValue(), downloaded.getKey());
+					// A failed download has nothing to read, so its metadata step is done too
+					else
+						stepsDone++;
+				}
+				catch (ExecutionException e)
+				{
+					CalliopeData.getInstance().getErrorDisplay().printError("Error downloading a CyVerse image!\n" + ExceptionUtils.getStackTrace(e));
+					stepsDone++;
+				}
+				stepsDone++;
+				progressProperty.setValue(stepsDone.doubleValue() / stepCount.doubleValue());
+
+				// Once a batch is full, or there is nothing left to download, read its metadata
+				if (pendingBatch.size() >= MetadataManager.BATCH_SIZE || downloadsLeft == 1)
+				{
+					stepsDone = stepsDone + pendingBatch.size();
+					this.readMetadataBatch(pendingBatch, entriesRead);
+					progressProperty.setValue(stepsDone.doubleValue() / stepCount.doubleValue());
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			// If we get interrupted the task was cancelled, so stop pulling metadata
+			Thread.currentThread().interrupt();
+			return;
+		}
+		finally
+		{
+			downloaders.shutdownNow();
+			// Delete any files we did not get to read
+			pendingBatch.keySet().forEach(File::delete);
+		}
+
+		// Go over each entry that the batches missed and queue its download on its own
+		for (DataContainer entry : entries)
+		{
+			if (!entriesRead.contains(entry))
+			{
+				if (entry instanceof CyVerseDSImageEntry)
+					((CyVerseDSImageEntry) entry).pullMetadataFromCyVerse();
+				else
+					((CyVerseDSVideoEntry) entry).pullMetadataFromCyVerse();
+			}
+		}
+	}
+
+	/**
+	 * Reads the metadata of a batch of downloaded files with a single exiftool call, stores each result into its entry on the
+	 * FX thread, and then deletes the local files
+	 *
+	 * @param localFileToEntry A map of downloaded file -> entry, cleared once the batch is read
+	 * @param entriesRead Each entry whose metadata was read is added to this set
+	 */
+	private void readMetadataBatch(Map<File, DataContainer> localFileToEntry, Set<DataContainer> entriesRead)
+	{
+		try
+		{
+			// Read the whole batch at once and store each result into its entry
+			CalliopeData.getInstance().getMetadataManager().readImageMetadata(new ArrayList<>(localFileToEntry.keySet()), (localFile, metadata) ->
+			{
+				DataContainer entry = localFileToEntry.get(localFile);
+				entriesRead.add(entry);
+				Platform.runLater(() ->
+				{
+					if (entry instanceof CyVerseDSImageEntry)
+						((CyVerseDSImageEntry) entry).storeMetadataFromCyVerse(metadata);
+					else
+						((CyVerseDSVideoEntry) entry).storeMetadataFromCyVerse(metadata);
+				});
+			});
+		}
+		catch (IOException e)
+		{
+			CalliopeData.getInstance().getErrorDisplay().printError("Error reading a batch of CyVerse image metadata!\n" + ExceptionUtils.getStackTrace(e));
+		}
+		finally
+		{
+			// Delete our local files now that we've read the metadata
+			localFileToEntry.keySet().forEach(File::delete);
+			localFileToEntry.clear();
+		}
+	}
+
 	/**
 	 * Very important method in the interface. It accepts a directory as a parameter and
 	 * returns a task which when executed will upload the directory to the data source and index it
@@ -93,23 +93,29 @@ public class CyVerseDSVideoEntry extends VideoEntry
 				return metadata;
 			}
 		};
-		// When the task succeeds...
-		metadataPullTask.setOnSucceeded(event ->
-		{
-			// Read the metadata map returned from the task and store it
-			this.readFileMetadataFromMap(metadataPullTask.getValue());
-			// Update our flags
-			this.wasMetadataRetrieved.setValue(true);
-			metadataRetrievalInProgress = false;
-			this.treeIconProperty().setValue(DEFAULT_CLOUD_IMAGE_ICON);
-			this.buildAndStoreIcon();
-		});
+		// When the task succeeds, read the metadata map returned from the task and store it
+		metadataPullTask.setOnSucceeded(event -> this.storeMetadataFromCyVerse(metadataPullTask.getValue()));
 		// If the task fails, we set our flag to false so we can attempt the metadata retrieval again
 		metadataPullTask.setOnFailed(event -> metadataRetrievalInProgress = false);
 		// Perform immediate execution of this task
 		CalliopeData.getInstance().getExecutor().getImmediateExecutor().addTask(metadataPullTask);
 	}
 
+	/**
+	 * Stores metadata that was read off of a local copy of this video's file and marks the metadata as retrieved
+	 *
+	 * @param metadata The metadata read from the local copy of the file
+	 */
+	void storeMetadataFromCyVerse(Map<Tag, String> metadata)
+	{
+		this.readFileMetadataFromMap(metadata);
+		// Update our flags
+		this.wasMetadataRetrieved.setValue(true);
+		metadataRetrievalInProgress = false;
+		this.treeIconProperty().setValue(DEFAULT_CLOUD_IMAGE_ICON);
+		this.buildAndStoreIcon();
+	}
+
 	///
 	/// Getters/Setters
 	///
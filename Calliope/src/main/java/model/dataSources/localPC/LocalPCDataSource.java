@@ -10,8 +10,6 @@ import model.dataSources.IDataSource;
 import model.image.DataDirectory;
 import model.image.ImageEntry;
 import model.threading.ErrorTask;
-import org.irods.jargon.core.transfer.TransferStatus;
-import org.irods.jargon.core.transfer.TransferStatusCallbackListener;
 
 import java.util.stream.Collectors;
 
@@ -80,28 +78,17 @@ public abstract class LocalPCDataSource implements IDataSource
 					StringProperty messageCallback = new SimpleStringProperty("");
 					this.updateMessage("Uploading image directory " + directoryToIndex.getFile().getName() + " to CyVerse.");
 					messageCallback.addListener((observable, oldValue, newValue) -> this.updateMessage(newValue));
-					// Upload images to CyVerse, we give it a transfer status callback so that we can show the progress
-					CalliopeData.getInstance().getCyConnectionManager().uploadAndIndexImages(imageCollection, directoryToIndex, new TransferStatusCallbackListener()
+					// Create a progress property used as a callback
+					DoubleProperty progressCallback = new SimpleDoubleProperty(0);
+					progressCallback.addListener((observable, oldValue, newValue) ->
 					{
-						@Override
-						public FileStatusCallbackResponse statusCallback(TransferStatus transferStatus)
-						{
-							// Set the upload progress in the directory we get a callback
-							Platform.runLater(() -> directoryToIndex.setUploadProgress(transferStatus.getBytesTransfered() / (double) transferStatus.getTotalSize()));
-							// Set the upload progress whenever we get a callback
-							updateProgress((double) transferStatus.getBytesTransfered(), (double) transferStatus.getTotalSize());
-							return FileStatusCallbackResponse.CONTINUE;
-						}
-						// Ignore this status callback
-						@Override
-						public void overallStatusCallback(TransferStatus transferStatus) {}
-						// Ignore this as well
-						@Override
-						public CallbackResponse transferAsksWhetherToForceOperation(String irodsAbsolutePath, boolean isCollection)
-						{
-							return CallbackResponse.YES_FOR_ALL;
-						}
-					}, messageCallback);
+						// Set the upload progress in the directory we get a callback
+						Platform.runLater(() -> directoryToIndex.setUploadProgress(newValue.doubleValue()));
+						// Set the upload progress whenever we get a callback
+						this.updateProgress(newValue.doubleValue(), 1.0);
+					});
+					// Upload images to CyVerse, we give it a progress callback so that we can show the progress
+					CalliopeData.getInstance().getCyConnectionManager().uploadAndIndexImages(imageCollection, directoryToIndex, progressCallback, messageCallback);
 					return null;
 				}
 			};
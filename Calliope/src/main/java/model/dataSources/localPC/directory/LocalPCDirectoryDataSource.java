@@ -1,8 +1,10 @@
 package model.dataSources.localPC.directory;
 
+import javafx.application.Platform;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.concurrent.Task;
+import javafx.concurrent.WorkerStateEvent;
 import javafx.scene.image.Image;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.Window;
@@ -15,6 +17,7 @@ import model.threading.ErrorTask;
 
 import javax.swing.filechooser.FileSystemView;
 import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Data source used for reading a directory of images off of the local PC
@@ -57,6 +60,9 @@ public class LocalPCDirectoryDataSource extends LocalPCDataSource
 		// If the file chosen is a file and a directory process it
 		if (file != null && file.isDirectory())
 		{
+			// Create the directory up front so that it can be shown while it is still being scanned
+			DataDirectory directory = new DataDirectory(file);
+			directory.setDataSource(this);
 			Task<DataDirectory> importTask = new ErrorTask<DataDirectory>()
 			{
 				@Override
@@ -65,30 +71,34 @@ public class LocalPCDirectoryDataSource extends LocalPCDataSource
 					this.updateProgress(0.05, 1.0);
 					this.updateMessage("Loading directory...");
 
-					// Convert the file to a recursive image directory data structure
-					DataDirectory directory = DirectoryManager.loadDirectory(file);
-					directory.setDataSource(LocalPCDirectoryDataSource.this);
+					// Show the directory right away, the tree fills in as sub-directories are scanned
+					Platform.runLater(() -> CalliopeData.getInstance().getImageTree().addChild(directory));
 
-					this.updateProgress(0.1, 1.0);
-					this.updateMessage("Removing empty directories...");
+					// Convert the file to a recursive image directory data structure, showing how many files we've found while scanning.
+					// Empty directories are removed once the scan is complete
+					AtomicInteger filesFound = new AtomicInteger(0);
+					DirectoryManager.loadDirectoryIncrementally(directory, entry ->
+					{
+						Integer found = filesFound.incrementAndGet();
+						if (found % 100 == 0)
+							this.updateMessage("Loading directory... found " + found + " files");
+					}, Platform::runLater);
 
-					// Remove any directories that are empty and contain no images
-					DirectoryManager.removeEmptyDirectories(directory);
+					this.updateProgress(0.1, 1.0);
 
 					// Update progress based on init progress
 					this.updateMessage("Reading image metadata...");
 					DoubleProperty progressProperty = new SimpleDoubleProperty();
 					progressProperty.addListener((observable, oldValue, newValue) -> this.updateProgress(newValue.doubleValue() * 0.9 + 0.1, 1.0));
-					DirectoryManager.initImages(directory, progressProperty);
+					// The directory is already shown, so metadata is stored into its images on the FX thread
+					DirectoryManager.initImages(directory, progressProperty, Platform::runLater);
 
 					return directory;
 				}
 			};
-			importTask.setOnSucceeded(event ->
-			{
-				// Add the directory to the image tree
-				CalliopeData.getInstance().getImageTree().addChild(importTask.getValue());
-			});
+			// If the import does not finish, take the partially loaded directory back out of the tree
+			importTask.addEventHandler(WorkerStateEvent.WORKER_STATE_FAILED, event -> CalliopeData.getInstance().getImageTree().removeChildRecursive(directory));
+			importTask.addEventHandler(WorkerStateEvent.WORKER_STATE_CANCELLED, event -> CalliopeData.getInstance().getImageTree().removeChildRecursive(directory));
 
 			return importTask;
 		}
@@ -0,0 +1,225 @@
+package model.elasticsearch;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.*;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Sends a large number of index requests to elastic search in chunks instead of one huge bulk request. A chunk is sent once
+ * it reaches a number of actions or a number of bytes, only a few chunks are ever in flight at once (adding more blocks until
+ * one finishes), and items rejected because the cluster is overloaded are retried with an exponential backoff. Any item
+ * that still fails is recorded along with the reason. Documents can also be streamed in as NDJSON, they are written into a
+ * reusable page buffer which is handed to the processor whenever it fills up, so no per document objects are kept around
+ */
+class BulkIndexer implements Closeable
+{
+	// The maximum number of actions sent in a single bulk request
+	private static final Integer MAX_ACTIONS_PER_BULK = 1000;
+	// The maximum size of a single bulk request in megabytes
+	private static final Long MAX_MEGABYTES_PER_BULK = 5L;
+	// The number of bulk requests that may be in flight while more are being built
+	private static final Integer CONCURRENT_BULK_REQUESTS = 2;
+	// The delay before the first retry of rejected items, the backoff policy grows it on each retry
+	private static final Long INITIAL_RETRY_DELAY_MS = 500L;
+	// The number of times rejected items are retried
+	private static final Integer MAX_RETRIES = 5;
+	// The longest we wait for in flight requests when closing
+	private static final Long CLOSE_TIMEOUT_MINUTES = 15L;
+	// The maximum number of item failures we keep the reason for
+	private static final Integer MAX_FAILURES_KEPT = 100;
+	// The size a page of streamed documents reaches before it is handed to the processor
+	private static final Integer DOCUMENT_PAGE_BYTES = 1024 * 1024;
+	// The bulk action line written before each streamed document, the index comes from the page so it never changes
+	private static final byte[] INDEX_ACTION_LINE = "{\"index\":{}}\n".getBytes(StandardCharsets.UTF_8);
+
+	// The processor that chunks and sends our requests
+	private final BulkProcessor bulkProcessor;
+	// The index streamed documents are added to
+	private final String documentIndex;
+	// The NDJSON page that documents are streamed into, reset and reused after every page. Only used by the adding thread
+	private final ByteArrayOutputStream documentPage = new ByteArrayOutputStream(DOCUMENT_PAGE_BYTES);
+	// The number of items that were indexed successfully
+	private final AtomicInteger succeededCount = new AtomicInteger(0);
+	// The number of items that failed for good
+	private final AtomicInteger failedCount = new AtomicInteger(0);
+	// A map of document ID -> failure reason for the first few failed items
+	private final Map<String, String> failures = Collections.synchronizedMap(new LinkedHashMap<>());
+
+	/**
+	 * Constructor creates the bulk processor, nothing is sent until requests are added
+	 *
+	 * @param bulkSender Sends each bulk request and calls the listener with the response
+	 * @param documentIndex The index streamed documents are added to
+	 */
+	BulkIndexer(BiConsumer<BulkRequest, ActionListener<BulkResponse>> bulkSender, String documentIndex)
+	{
+		this.documentIndex = documentIndex;
+		this.bulkProcessor = BulkProcessor.builder(bulkSender, new BulkProcessor.Listener()
+		{
+			// Nothing to do before a bulk is sent
+			@Override
+			public void beforeBulk(long executionId, BulkRequest request) {}
+
+			@Override
+			public void afterBulk(long executionId, BulkRequest request, BulkResponse response)
+			{
+				// Count each item in the response, the processor has already retried any rejected items
+				for (BulkItemResponse itemResponse : response.getItems())
+				{
+					if (itemResponse.isFailed())
+						BulkIndexer.this.addFailure(itemResponse.getId(), itemResponse.getFailureMessage());
+					else
+						BulkIndexer.this.succeededCount.incrementAndGet();
+				}
+			}
+
+			@Override
+			public void afterBulk(long executionId, BulkRequest request, Throwable failure)
+			{
+				// The whole request failed, so every item in it failed
+				for (DocWriteRequest<?> itemRequest : request.requests())
+					BulkIndexer.this.addFailure(itemRequest.id(), failure.toString());
+			}
+		})
+		.setBulkActions(MAX_ACTIONS_PER_BULK)
+		.setBulkSize(new ByteSizeValue(MAX_MEGABYTES_PER_BULK, ByteSizeUnit.MB))
+		.setConcurrentRequests(CONCURRENT_BULK_REQUESTS)
+		// Only rejected (429) items are retried by the processor, other failures are reported right away
+		.setBackoffPolicy(BackoffPolicy.exponentialBackoff(TimeValue.timeValueMillis(INITIAL_RETRY_DELAY_MS), MAX_RETRIES))
+		.build();
+	}
+
+	/**
+	 * Adds a request to the next bulk. If too many bulks are in flight this blocks until one of them finishes
+	 *
+	 * @param request The request to add
+	 */
+	void add(DocWriteRequest<?> request)
+	{
+		this.bulkProcessor.add(request);
+	}
+
+	/**
+	 * Streams a document into the current page, handing the page to the processor once it is full. If too many bulks are in
+	 * flight this blocks until one of them finishes
+	 *
+	 * @param documentWriter Writes the document's JSON, which must not contain any new lines
+	 * @throws IOException If the document could not be written
+	 */
+	void addDocument(DocumentWriter documentWriter) throws IOException
+	{
+		this.documentPage.write(INDEX_ACTION_LINE);
+		documentWriter.writeTo(this.documentPage);
+		this.documentPage.write('\n');
+		if (this.documentPage.size() >= DOCUMENT_PAGE_BYTES)
+			this.flushDocumentPage();
+	}
+
+	/**
+	 * Hands the current page of streamed documents to the processor. The page is copied because the parsed requests keep
+	 * pointing at its bytes until they are sent
+	 *
+	 * @throws IOException If the page could not be parsed
+	 */
+	private void flushDocumentPage() throws IOException
+	{
+		if (this.documentPage.size() == 0)
+			return;
+		try
+		{
+			this.bulkProcessor.add(new BytesArray(this.documentPage.toByteArray()), this.documentIndex, null, XContentType.JSON);
+		}
+		catch (Exception e)
+		{
+			throw new IOException("Could not queue a page of documents to index", e);
+		}
+		finally
+		{
+			this.documentPage.reset();
+		}
+	}
+
+	/**
+	 * Records an item that failed for good
+	 *
+	 * @param id The ID of the document that failed, may be null if elastic search assigns IDs
+	 * @param reason Why it failed
+	 */
+	private void addFailure(String id, String reason)
+	{
+		Integer failureNumber = this.failedCount.incrementAndGet();
+		// Keep the first few reasons, one bad mapping can fail every item with the same message
+		if (failureNumber <= MAX_FAILURES_KEPT)
+			this.failures.put(id != null ? id : "Item " + failureNumber, reason);
+	}
+
+	/**
+	 * Sends whatever is left and waits for every in flight bulk to finish
+	 *
+	 * @return True if every bulk finished in time
+	 * @throws InterruptedException If we were interrupted while waiting
+	 * @throws IOException If the last page of streamed documents could not be queued
+	 */
+	Boolean awaitClose() throws InterruptedException, IOException
+	{
+		this.flushDocumentPage();
+		return this.bulkProcessor.awaitClose(CLOSE_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * Closes the processor without waiting, used if indexing is abandoned part way through
+	 */
+	@Override
+	public void close()
+	{
+		this.bulkProcessor.close();
+	}
+
+	///
+	/// Getters
+	///
+
+	Integer getSucceededCount()
+	{
+		return this.succeededCount.get();
+	}
+
+	Integer getFailedCount()
+	{
+		return this.failedCount.get();
+	}
+
+	Map<String, String> getFailures()
+	{
+		return this.failures;
+	}
+
+	/**
+	 * Writes a single JSON document
+	 */
+	interface DocumentWriter
+	{
+		/**
+		 * @param outputStream The stream to write the document to
+		 * @throws IOException If the document could not be written
+		 */
+		void writeTo(OutputStream outputStream) throws IOException;
+	}
+}
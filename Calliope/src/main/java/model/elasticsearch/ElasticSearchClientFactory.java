@@ -0,0 +1,270 @@
+package model.elasticsearch;
+
+import model.settings.SensitiveConfigurationManager;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.protocol.HttpContext;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.*;
+import org.elasticsearch.common.xcontent.*;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLSession;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Builds the elastic search client from the settings in calliope.properties. The connection pool size, keep-alive, and IO
+ * thread count are configurable, and when compression is on responses are requested gzipped and bulk bodies are sent
+ * gzipped, which matters most on slow links out at field stations. The client is kept between logins to the same host and
+ * only the credentials are swapped
+ */
+public class ElasticSearchClientFactory
+{
+	// The scheme used to connect to the elastic search index
+	private static final String ELASTIC_SEARCH_SCHEME = "https";
+	// The socket and connect timeouts of each request
+	private static final Integer TIMEOUT_MS = 120000;
+	// The largest response we will buffer in memory, the same as the client's default
+	private static final Integer RESPONSE_BUFFER_LIMIT_BYTES = 100 * 1024 * 1024;
+	// The content type of a bulk body
+	private static final ContentType NDJSON_CONTENT_TYPE = ContentType.create("application/x-ndjson");
+
+	// The settings used to build the client
+	private final SensitiveConfigurationManager configurationManager;
+	// The credentials of the user logged in, swapped out on every login
+	private final BasicCredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+	// The client that was built, null before the first login
+	private RestHighLevelClient client = null;
+	// The host the client was built for
+	private HttpHost clientHost = null;
+
+	/**
+	 * Constructor just stores the settings, nothing is built until a client is requested
+	 *
+	 * @param configurationManager The settings used to build the client
+	 */
+	public ElasticSearchClientFactory(SensitiveConfigurationManager configurationManager)
+	{
+		this.configurationManager = configurationManager;
+	}
+
+	/**
+	 * Returns a client for the configured host logged in as the given user. If a client was already built for that host it
+	 * is reused with the new credentials, otherwise the old client is closed and a new one is built
+	 *
+	 * @param username The username to connect with
+	 * @param password The password to connect with
+	 * @return A client for the configured host
+	 * @throws IOException If the old client could not be closed
+	 */
+	public synchronized RestHighLevelClient getClient(String username, String password) throws IOException
+	{
+		// Swap in the new user's credentials, the existing connection pool picks these up on the next request
+		this.credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(username, password));
+
+		HttpHost host = new HttpHost(this.configurationManager.getElasticSearchHost(), this.configurationManager.getElasticSearchPort(), ELASTIC_SEARCH_SCHEME);
+		if (this.client != null && host.equals(this.clientHost))
+			return this.client;
+
+		// The host changed, so the old client is useless
+		if (this.client != null)
+			this.client.close();
+
+		Integer maxConnectionsPerRoute = this.configurationManager.getElasticSearchMaxConnectionsPerRoute();
+		Integer maxConnectionsTotal = this.configurationManager.getElasticSearchMaxConnectionsTotal();
+		Long keepAliveMs = TimeUnit.SECONDS.toMillis(this.configurationManager.getElasticSearchKeepAliveSeconds());
+		Integer ioThreads = this.configurationManager.getElasticSearchIOThreads();
+
+		// TODO: Should we trust all hostnames? I did it here to make sure I could connect to my test server
+		this.client = new RestHighLevelClient(RestClient
+				.builder(host)
+				.setHttpClientConfigCallback(httpClientBuilder -> httpClientBuilder
+						.setSSLHostnameVerifier(new TrustAllHostNameVerifier())
+						.setDefaultCredentialsProvider(this.credentialsProvider)
+						.setMaxConnPerRoute(maxConnectionsPerRoute)
+						.setMaxConnTotal(maxConnectionsTotal)
+						// Keep idle connections around instead of handshaking TLS again for every map movement
+						.setKeepAliveStrategy((response, context) -> keepAliveMs)
+						.setDefaultIOReactorConfig(IOReactorConfig.custom().setIoThreadCount(ioThreads).build()))
+				.setRequestConfigCallback(requestConfigBuilder -> requestConfigBuilder.setSocketTimeout(TIMEOUT_MS).setConnectTimeout(TIMEOUT_MS)));
+		this.clientHost = host;
+		return this.client;
+	}
+
+	/**
+	 * Creates the request options every request should be sent with. With compression on, these ask for gzipped responses
+	 * and decompress them as they arrive
+	 *
+	 * @return The request options to send requests with
+	 */
+	public RequestOptions createRequestOptions()
+	{
+		if (!this.configurationManager.getElasticSearchCompression())
+			return RequestOptions.DEFAULT;
+
+		return RequestOptions.DEFAULT.toBuilder()
+				.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip")
+				.setHttpAsyncResponseConsumerFactory(GzipResponseConsumer::new)
+				.build();
+	}
+
+	/**
+	 * Creates the function the bulk indexer sends each bulk request with. With compression on the bulk body is gzipped
+	 * before being sent, otherwise this is just the client's bulkAsync
+	 *
+	 * @param elasticSearchClient The client to send the bulk requests with
+	 * @return A function that sends a bulk request and calls the listener with the response
+	 */
+	BiConsumer<BulkRequest, ActionListener<BulkResponse>> createBulkSender(RestHighLevelClient elasticSearchClient)
+	{
+		if (!this.configurationManager.getElasticSearchCompression())
+			return (bulkRequest, bulkListener) -> elasticSearchClient.bulkAsync(bulkRequest, ElasticSearchConnectionManager.DefaultRequestOptions, bulkListener);
+		return (bulkRequest, bulkListener) -> this.compressedBulkAsync(elasticSearchClient, bulkRequest, bulkListener);
+	}
+
+	/**
+	 * Sends a bulk request with a gzipped body through the low level client. The high level client in this version can't
+	 * compress request bodies, so the bulk body is written out by hand. Anything other than JSON index requests falls back
+	 * to an uncompressed bulk
+	 *
+	 * @param elasticSearchClient The client to send the bulk request with
+	 * @param bulkRequest The bulk request to send
+	 * @param bulkListener The listener to call with the response
+	 */
+	private void compressedBulkAsync(RestHighLevelClient elasticSearchClient, BulkRequest bulkRequest, ActionListener<BulkResponse> bulkListener)
+	{
+		// Write the bulk body straight into a gzip stream
+		ByteArrayOutputStream compressedBody = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzipOut = new GZIPOutputStream(compressedBody))
+		{
+			for (DocWriteRequest<?> docWriteRequest : bulkRequest.requests())
+				if (!this.writeBulkItem(docWriteRequest, gzipOut))
+				{
+					elasticSearchClient.bulkAsync(bulkRequest, ElasticSearchConnectionManager.DefaultRequestOptions, bulkListener);
+					return;
+				}
+		}
+		catch (IOException e)
+		{
+			bulkListener.onFailure(e);
+			return;
+		}
+
+		Request request = new Request("POST", "/_bulk");
+		if (bulkRequest.timeout() != null)
+			request.addParameter("timeout", bulkRequest.timeout().getStringRep());
+		request.setEntity(new ByteArrayEntity(compressedBody.toByteArray(), NDJSON_CONTENT_TYPE));
+		request.setOptions(ElasticSearchConnectionManager.DefaultRequestOptions.toBuilder().addHeader(HttpHeaders.CONTENT_ENCODING, "gzip"));
+		elasticSearchClient.getLowLevelClient().performRequestAsync(request, new ResponseListener()
+		{
+			@Override
+			public void onSuccess(Response response)
+			{
+				// Parse the response the same way the high level client does
+				try (XContentParser parser = XContentType.JSON.xContent().createParser(NamedXContentRegistry.EMPTY, DeprecationHandler.THROW_UNSUPPORTED_OPERATION, response.getEntity().getContent()))
+				{
+					bulkListener.onResponse(BulkResponse.fromXContent(parser));
+				}
+				catch (IOException e)
+				{
+					bulkListener.onFailure(e);
+				}
+			}
+
+			@Override
+			public void onFailure(Exception exception)
+			{
+				bulkListener.onFailure(exception);
+			}
+		});
+	}
+
+	/**
+	 * Writes one bulk item as an action line followed by its source
+	 *
+	 * @param docWriteRequest The request to write
+	 * @param outputStream The stream to write the item to
+	 * @return False if the request is not a JSON index request and could not be written
+	 * @throws IOException If the item could not be written
+	 */
+	private Boolean writeBulkItem(DocWriteRequest<?> docWriteRequest, OutputStream outputStream) throws IOException
+	{
+		if (!(docWriteRequest instanceof IndexRequest) || ((IndexRequest) docWriteRequest).getContentType() != XContentType.JSON)
+			return false;
+
+		IndexRequest indexRequest = (IndexRequest) docWriteRequest;
+		// The close shield keeps the builder from closing the gzip stream
+		try (XContentBuilder actionLine = XContentFactory.jsonBuilder(new CloseShieldOutputStream(outputStream)))
+		{
+			actionLine.startObject().startObject("index").field("_index", indexRequest.index());
+			if (indexRequest.id() != null)
+				actionLine.field("_id", indexRequest.id());
+			if (indexRequest.routing() != null)
+				actionLine.field("routing", indexRequest.routing());
+			if (indexRequest.getPipeline() != null)
+				actionLine.field("pipeline", indexRequest.getPipeline());
+			actionLine.endObject().endObject();
+		}
+		outputStream.write('\n');
+		indexRequest.source().writeTo(outputStream);
+		outputStream.write('\n');
+		return true;
+	}
+
+	/**
+	 * Buffers a response in memory like the client's default consumer, and then decompresses it if the server gzipped it
+	 */
+	private static class GzipResponseConsumer extends HeapBufferedAsyncResponseConsumer
+	{
+		GzipResponseConsumer()
+		{
+			super(RESPONSE_BUFFER_LIMIT_BYTES);
+		}
+
+		@Override
+		protected HttpResponse buildResult(HttpContext context) throws Exception
+		{
+			HttpResponse response = super.buildResult(context);
+			HttpEntity entity = response.getEntity();
+			if (entity != null && entity.getContentEncoding() != null && "gzip".equalsIgnoreCase(entity.getContentEncoding().getValue()))
+			{
+				response.setEntity(new GzipDecompressingEntity(entity));
+				// The headers describe the compressed body, which is gone now
+				response.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+				response.removeHeaders(HttpHeaders.CONTENT_LENGTH);
+			}
+			return response;
+		}
+	}
+
+	/**
+	 * Accepts every host name, used so we can connect to test servers with self signed certificates
+	 */
+	private static class TrustAllHostNameVerifier implements HostnameVerifier
+	{
+		@Override
+		public boolean verify(String hostname, SSLSession session)
+		{
+			return true;
+		}
+	}
+}
@@ -15,16 +15,11 @@ import model.site.Site;
 import model.site.ltar.LTARSite;
 import model.site.neon.NEONSite;
 import model.site.usfs.USFSSite;
+import model.util.GeohashUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
-import org.apache.commons.lang3.math.NumberUtils;
-import org.apache.http.HttpHost;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.Credentials;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.CredentialsProvider;
-import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.ActionListener;
 // TODO: Modify other imports based on this?
 //        https://discuss.elastic.co/t/elastic-7-x-createindexrequest-deprecated/182029/4
 //import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
@@ -42,7 +37,6 @@ import org.elasticsearch.action.search.*;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.client.RequestOptions;
-import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.common.geo.GeoPoint;
 import org.elasticsearch.common.geo.builders.EnvelopeBuilder;
@@ -66,31 +60,26 @@ import org.elasticsearch.search.aggregations.bucket.geogrid.GeoGridAggregationBu
 //import org.elasticsearch.search.aggregations.bucket.geogrid.GeoHashGrid;
 import org.elasticsearch.search.aggregations.bucket.geogrid.GeoGrid;
 import org.elasticsearch.search.aggregations.bucket.geogrid.ParsedGeoHashGrid;
-import org.elasticsearch.search.aggregations.bucket.terms.IncludeExclude;
 import org.elasticsearch.search.aggregations.bucket.terms.ParsedStringTerms;
 //import org.elasticsearch.search.aggregations.metrics.avg.ParsedAvg;
-import org.elasticsearch.search.aggregations.metrics.ParsedAvg;
+import org.elasticsearch.search.aggregations.metrics.ParsedGeoCentroid;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
+import org.elasticsearch.search.sort.SortOrder;
 import org.locationtech.jts.geom.Coordinate;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
-import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
-import javax.net.ssl.HostnameVerifier;
-import javax.net.ssl.SSLSession;
 
 public class ElasticSearchConnectionManager
 {
-	// The scheme used to connect to the elastic search index
-	private static final String ELASTIC_SEARCH_SCHEME = "https";
-
 	// The name of the user's index
 	private static final String INDEX_CALLIOPE_USERS = "users";
 	// The type for the Calliope user's index
@@ -127,6 +116,15 @@ public class ElasticSearchConnectionManager
 	// The number of replicas to be created by the sites index, for development we don't need any
 	private static final Integer INDEX_CALLIOPE_SITES_REPLICA_COUNT = 0;
 
+	// The number of image paths fetched per page when walking the results of a query
+	private static final Integer IMAGE_PATH_PAGE_SIZE = 5000;
+	// The maximum number of buckets a geo-aggregation returns, the same as elastic search's default
+	static final Integer MAX_GEO_BUCKETS = 10000;
+	// The number of images fetched by the first page of a circle lookup, kept small so the first rows show up quickly
+	private static final Integer CIRCLE_LOOKUP_FIRST_PAGE_SIZE = 100;
+	// The number of images fetched by every later page of a circle lookup
+	private static final Integer CIRCLE_LOOKUP_PAGE_SIZE = 1000;
+
 	// The type used to serialize a list of cloud uploads
 	private static final Type UPLOADED_ENTRY_LIST_TYPE = new TypeToken<ArrayList<UploadedEntry>>()
 	{
@@ -134,6 +132,8 @@ public class ElasticSearchConnectionManager
 
 	// Create a new elastic search client
 	private RestHighLevelClient elasticSearchClient;
+	// The factory that builds the elastic search client from our settings, created on the first login
+	private ElasticSearchClientFactory clientFactory = null;
 
 	// Create a new elastic search schema manager
 	private ElasticSearchSchemaManager elasticSearchSchemaManager;
@@ -141,14 +141,7 @@ public class ElasticSearchConnectionManager
 	// Property that changes when ES is up and running
 	private SimpleBooleanProperty active = new SimpleBooleanProperty(false);
 
-	// A simple class that allows Calliope/Java to accept any hostname that presents a valid certificate
-	// More or less copied from https://stackoverflow.com/a/7443373
-	private class TrustAllHostNameVerifier implements HostnameVerifier {
-		public boolean verify(String hostname, SSLSession session) {
-			return true;
-		}
-	}
-
+	// The options every request is sent with, replaced on login with the options the client factory creates
 	public static RequestOptions DefaultRequestOptions = RequestOptions.DEFAULT;
 
 	/**
@@ -164,35 +157,21 @@ public class ElasticSearchConnectionManager
 		// If the configuration manager has valid settings, initialize ES connection
 		if (configurationManager.isConfigurationValid())
 		{
-			// Setup the credentials provider
-			Credentials credentials = new UsernamePasswordCredentials(username, password);
-			CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
-			credentialsProvider.setCredentials(AuthScope.ANY, credentials);
+			// Create the client factory the first time we log in
+			if (this.clientFactory == null)
+				this.clientFactory = new ElasticSearchClientFactory(configurationManager);
 
-			/*
-			// SSL
+			// Establish a connection to the elastic search server, the factory reuses the existing client if we logged in before
 			try
 			{
-				KeyStore trustStore = KeyStore.getInstance("jks");
-				try (InputStream inputStream = Files.newInputStream(new File("./test.jks").toPath()))
-				{
-					trustStore.load(inputStream, password.toCharArray());
-				}
-				SSLContextBuilder sslContextBuilder = SSLContextBuilder.create().loadTrustMaterial(trustStore, null);
-				SSLContext build = sslContextBuilder.build();
+				this.elasticSearchClient = this.clientFactory.getClient(username, password);
+				DefaultRequestOptions = this.clientFactory.createRequestOptions();
 			}
-			catch (KeyStoreException | IOException | NoSuchAlgorithmException | CertificateException | KeyManagementException e)
+			catch (IOException e)
 			{
-				e.printStackTrace();
+				CalliopeData.getInstance().getErrorDisplay().notify("Error closing the previous ElasticSearch connection, error was:\n" + ExceptionUtils.getStackTrace(e));
+				return false;
 			}
-			*/
-
-			// Establish a connection to the elastic search server
-			// TODO: Should we trust all hostnames? I did it here to make sure I could connect to my test server
-			this.elasticSearchClient = new RestHighLevelClient(RestClient
-					.builder(new HttpHost(configurationManager.getElasticSearchHost(), configurationManager.getElasticSearchPort(), ELASTIC_SEARCH_SCHEME))
-					.setHttpClientConfigCallback(httpClientBuilder -> httpClientBuilder.setSSLHostnameVerifier(new TrustAllHostNameVerifier()).setDefaultCredentialsProvider(credentialsProvider))
-					.setRequestConfigCallback(requestConfigBuilder -> requestConfigBuilder.setSocketTimeout(120000).setConnectTimeout(120000)));
 
 			// Test to see if the ElasticSearch index is up or not
 			try
@@ -1157,49 +1136,52 @@ public class ElasticSearchConnectionManager
 	 * @param uploadEntry The upload entry representing this upload, will be put into our collections index
 	 * @param collectionID The ID of the collection that these images will be uploaded to
 	 * @param absolutePathCreator A function that accepts an image file as input and returns the absolute path (on the storage medium) of the image file as output
+	 * @return True if the images and the upload were indexed successfully
 	 */
 	@SuppressWarnings("unchecked")
-	public void indexImages(DataDirectory directory, UploadedEntry uploadEntry, String collectionID, Function<DataContainer, String> absolutePathCreator)
+	public Boolean indexImages(DataDirectory directory, UploadedEntry uploadEntry, String collectionID, Function<DataContainer, String> absolutePathCreator)
 	{
-		// List of images to be uploaded
-		List<ImageEntry> imageEntries = directory.flattened().filter(imageContainer -> imageContainer instanceof ImageEntry).map(imageContainer -> (ImageEntry) imageContainer).collect(Collectors.toList());
-		List<VideoEntry> videoEntries = directory.flattened().filter(imageContainer -> imageContainer instanceof VideoEntry).map(imageContainer -> (VideoEntry) imageContainer).collect(Collectors.toList());
+		// Images and videos to be uploaded, pulled one at a time as they are streamed into the index
+		Iterator<DataContainer> entries = directory.flattened().filter(imageContainer -> imageContainer instanceof ImageEntry || imageContainer instanceof VideoEntry).iterator();
 
 		try
 		{
-			// Create a bulk index request to update all these images at once
-			BulkRequest bulkRequest = new BulkRequest();
+			// Index the images in chunks so large uploads never turn into one huge request
+			BulkIndexer bulkIndexer = new BulkIndexer(this.clientFactory.createBulkSender(this.elasticSearchClient), INDEX_CALLIOPE_METADATA);
+			try
+			{
+				while (entries.hasNext())
+				{
+					DataContainer entry = entries.next();
+					// Write the entry's JSON straight into the indexer's page buffer
+					bulkIndexer.addDocument(outputStream -> this.elasticSearchSchemaManager.metadataToJSON(entry, collectionID, absolutePathCreator.apply(entry), outputStream));
+				}
 
-			// Convert the images to a map format ready to be converted to JSON
-			for (ImageEntry imageEntry : imageEntries)
+				// Send the last chunk and wait for every chunk to finish
+				if (!bulkIndexer.awaitClose())
+				{
+					CalliopeData.getInstance().getErrorDisplay().notify("Timed out waiting for the metadata to be indexed!");
+					return false;
+				}
+			}
+			catch (InterruptedException e)
 			{
-				// Our image to JSON map will return 2 items, one is the ID of the document and one is the JSON request
-				XContentBuilder json = this.elasticSearchSchemaManager.imageToJSON(imageEntry, collectionID, absolutePathCreator.apply(imageEntry));
-				IndexRequest request = new IndexRequest()
-						.index(INDEX_CALLIOPE_METADATA)
-						//.type(INDEX_CALLIOPE_METADATA_TYPE)
-						.source(json);
-				bulkRequest.add(request);
+				// If we get interrupted the upload was cancelled
+				Thread.currentThread().interrupt();
+				return false;
 			}
-
-			// Convert the videos to a map format ready to be converted to JSON
-			for (VideoEntry videoEntry : videoEntries)
+			finally
 			{
-				// Our image to JSON map will return 2 items, one is the ID of the document and one is the JSON request
-				XContentBuilder json = this.elasticSearchSchemaManager.videoToJSON(videoEntry, collectionID, absolutePathCreator.apply(videoEntry));
-				IndexRequest request = new IndexRequest()
-						.index(INDEX_CALLIOPE_METADATA)
-						//.type(INDEX_CALLIOPE_METADATA_TYPE)
-						.source(json);
-				bulkRequest.add(request);
+				bulkIndexer.close();
 			}
 
-			// Execute the bulk insert
-			BulkResponse bulkResponse = this.elasticSearchClient.bulk(bulkRequest, DefaultRequestOptions);
-
 			// Check if everything went OK, if not return an error
-			if (bulkResponse.status() != RestStatus.OK)
-				CalliopeData.getInstance().getErrorDisplay().notify("Error bulk inserting metadata, error response was: " + bulkResponse.status());
+			if (bulkIndexer.getFailedCount() > 0)
+			{
+				CalliopeData.getInstance().getErrorDisplay().printError(bulkIndexer.getFailures().entrySet().stream().map(failure -> failure.getKey() + ": " + failure.getValue()).collect(Collectors.joining("\n")));
+				CalliopeData.getInstance().getErrorDisplay().notify("Error bulk inserting metadata, " + bulkIndexer.getFailedCount() + " of " + (bulkIndexer.getFailedCount() + bulkIndexer.getSucceededCount()) + " images could not be indexed, see the error output for details.");
+				return false;
+			}
 
 			// Now that we've updated our metadata index, update the collections uploads field
 
@@ -1231,13 +1213,18 @@ public class ElasticSearchConnectionManager
 			UpdateResponse updateResponse = this.elasticSearchClient.update(updateRequest, DefaultRequestOptions);
 			// If the response was not OK, print an error
 			if (updateResponse.status() != RestStatus.OK)
+			{
 				CalliopeData.getInstance().getErrorDisplay().notify("Could not update the Collection's index with a new upload!");
+				return false;
+			}
+			return true;
 		}
 		catch (IOException e)
 		{
 			// If the update failed for some reason, print that error
 			CalliopeData.getInstance().getErrorDisplay().notify("Could not insert the upload into the collection index!\n" + ExceptionUtils.getStackTrace(e));
 		}
+		return false;
 	}
 
 	/**
@@ -1246,12 +1233,20 @@ public class ElasticSearchConnectionManager
 	 * @param imageEntries The list of images to detect sites in
 	 * @return A list of site code lists as a parallel array to the original image list with an empty list if no site is at the location
 	 */
-	@SuppressWarnings("unchecked")
 	public List<List<String>> detectSites(List<DataContainer> imageEntries)
 	{
-		// A parallel array to return
-		List<List<String>> toReturn = new ArrayList<>();
+		return this.detectSitesAsync(imageEntries).join();
+	}
 
+	/**
+	 * Given a list of images this function asynchronously returns a parallel array of site codes of sites that each image belongs to.
+	 * No thread is blocked while elastic search is working
+	 *
+	 * @param imageEntries The list of images to detect sites in
+	 * @return A future list of site code lists as a parallel array to the original image list with an empty list if no site is at the location
+	 */
+	public CompletableFuture<List<List<String>>> detectSitesAsync(List<DataContainer> imageEntries)
+	{
 		// Create a multi search (one per image)
 		MultiSearchRequest multiSearchRequest = new MultiSearchRequest();
 		// Search once per image
@@ -1283,59 +1278,67 @@ public class ElasticSearchConnectionManager
 			}
 		}
 
-		try
+		// Execute the search
+		CompletableFuture<List<List<String>>> future = new CompletableFuture<>();
+		this.elasticSearchClient.msearchAsync(multiSearchRequest, DefaultRequestOptions, this.completing(future, multiSearchResponse -> this.parseDetectedSites(multiSearchResponse, imageEntries.size()), new ArrayList<>(), "Error performing multisearch for site codes."));
+		return future;
+	}
+
+	/**
+	 * Reads the site codes out of a multi search response with one search per image
+	 *
+	 * @param multiSearchResponse The response to read
+	 * @param imageCount The number of images searched for
+	 * @return A list of site code lists, one per image
+	 */
+	private List<List<String>> parseDetectedSites(MultiSearchResponse multiSearchResponse, Integer imageCount)
+	{
+		// A parallel array to return
+		List<List<String>> toReturn = new ArrayList<>();
+
+		// Grab all responses
+		MultiSearchResponse.Item[] responses = multiSearchResponse.getResponses();
+		// We should get one response per image
+		if (multiSearchResponse.getResponses().length == imageCount)
 		{
-			// Execute the search
-			MultiSearchResponse multiSearchResponse = this.elasticSearchClient.multiSearch(multiSearchRequest, DefaultRequestOptions);
-			// Grab all responses
-			MultiSearchResponse.Item[] responses = multiSearchResponse.getResponses();
-			// We should get one response per image
-			if (multiSearchResponse.getResponses().length == imageEntries.size())
+			// Iterate over all responses
+			for (int i = 0; i < responses.length; i++)
 			{
-				// Iterate over all responses
-				for (int i = 0; i < responses.length; i++)
-				{
-					// Create new list of sites for each image
-					List<String> temp = new ArrayList<>();
+				// Create new list of sites for each image
+				List<String> temp = new ArrayList<>();
 
-					// Grab the response, and pull the hits
-					MultiSearchResponse.Item response = responses[i];
-					SearchHit[] hits = response.getResponse().getHits().getHits();
+				// Grab the response, and pull the hits
+				MultiSearchResponse.Item response = responses[i];
+				SearchHit[] hits = response.getResponse().getHits().getHits();
 
-					// If we got any number of hits, we have the right site(s). If we do not have a hit, return an empty list for this image
-					if (hits.length > 0)
-					{
-						// Grab the raw hit maps
-						List<Map<String, Object>> siteMaps = Arrays.stream(hits).map(SearchHit::getSourceAsMap).collect(Collectors.toList());
-
-						for (Map<String, Object> siteMap : siteMaps) {
-							// Make sure our site field has a site code field
-							if (siteMap.containsKey("code")) {
-								// Grab the site code field
-								Object siteCodeObj = siteMap.get("code");
-								// Make sure the site code field is a string
-								if (siteCodeObj instanceof String) {
-									// Store the site code field
-									temp.add((String) siteCodeObj);
-								}
+				// If we got any number of hits, we have the right site(s). If we do not have a hit, return an empty list for this image
+				if (hits.length > 0)
+				{
+					// Grab the raw hit maps
+					List<Map<String, Object>> siteMaps = Arrays.stream(hits).map(SearchHit::getSourceAsMap).collect(Collectors.toList());
+
+					for (Map<String, Object> siteMap : siteMaps) {
+						// Make sure our site field has a site code field
+						if (siteMap.containsKey("code")) {
+							// Grab the site code field
+							Object siteCodeObj = siteMap.get("code");
+							// Make sure the site code field is a string
+							if (siteCodeObj instanceof String) {
+								// Store the site code field
+								temp.add((String) siteCodeObj);
 							}
 						}
 					}
-
-					// Return the list of sites
-					toReturn.add(temp);
 				}
-			}
-			else
-			{
-				// The query did not return the proper amount of responses, print an error
-				CalliopeData.getInstance().getErrorDisplay().notify("Did not get enough responses from the multisearch, this should not be possible.");
+
+				// Return the list of sites
+				toReturn.add(temp);
 			}
 		}
-		catch (IOException e)
+		else
 		{
-			// The query failed, print an error
-			CalliopeData.getInstance().getErrorDisplay().notify("Error performing multisearch for site codes.\n" + ExceptionUtils.getStackTrace(e));
+			// The query did not return the proper amount of responses, print an error
+			CalliopeData.getInstance().getErrorDisplay().notify("Did not get enough responses from the multisearch, this should not be possible.");
 		}
 
 		return toReturn;
@@ -1352,38 +1355,73 @@ public class ElasticSearchConnectionManager
 	 *                   buckets are less than a meter across, and 1 means buckets are hundreds of KM across. A larger depth
 	 *                   requires more time to receive results
 	 * @param query The actual query to filter images by before aggregating
-	 * @param numDocIDSPerBucket The number of document IDs we are supposed to retrieve per bucket. This takes time but yields better map analysis
-	 * @return A list of buckets containing a center point and a list of images inside
+	 * @return A list of buckets containing a center point and the number of images inside
 	 */
-	public List<GeoBucket> performGeoAggregation(Double topLeftLat, Double topLeftLong, Double bottomRightLat, Double bottomRightLong, Integer depth1To12, QueryBuilder query, Integer numDocIDSPerBucket)
+	public List<GeoBucket> performGeoAggregation(Double topLeftLat, Double topLeftLong, Double bottomRightLat, Double bottomRightLong, Integer depth1To12, QueryBuilder query)
 	{
-		// Create a list of buckets to return
-		List<GeoBucket> toReturn = new ArrayList<>();
+		return this.performGeoAggregationAsync(topLeftLat, topLeftLong, bottomRightLat, bottomRightLong, depth1To12, query).join();
+	}
 
+	/**
+	 * Asynchronous version of performGeoAggregation, no thread is blocked while elastic search is working. Cancelling the
+	 * returned future means the response is thrown away without being parsed
+	 *
+	 * @param topLeftLat The coordinate representing the top left latitude of the bounding box
+	 * @param topLeftLong The coordinate representing the top left longitude of the bounding box
+	 * @param bottomRightLat The coordinate representing the bottom right latitude of the bounding box
+	 * @param bottomRightLong The coordinate representing the top bottom right longitude of the bounding box
+	 * @param depth1To12 A depth value in the range of 1-12 that specifies how tightly aggregated buckets should be
+	 * @param query The actual query to filter images by before aggregating
+	 * @return A future list of buckets containing a center point and the number of images inside
+	 */
+	public CompletableFuture<List<GeoBucket>> performGeoAggregationAsync(Double topLeftLat, Double topLeftLong, Double bottomRightLat, Double bottomRightLong, Integer depth1To12, QueryBuilder query)
+	{
+		try
+		{
+			// Our area filter is on the position field which must be in the box created by the top left corner and the bottom right corner
+			QueryBuilder areaFilter = QueryBuilders.geoBoundingBoxQuery("imageMetadata.position").setCorners(new GeoPoint(topLeftLat, topLeftLong), new GeoPoint(bottomRightLat, bottomRightLong));
+			return this.performGeoAggregationAsync(areaFilter, depth1To12, query, new ArrayList<>());
+		}
+		catch (IllegalArgumentException e)
+		{
+			// The user somehow managed to pass illegal values to the aggregation by moving the map into a strange position. Print an error but recover
+			CalliopeData.getInstance().getErrorDisplay().notify("Invalid geo-aggregation, error was:\n" + ExceptionUtils.getStackTrace(e));
+			return CompletableFuture.completedFuture(new ArrayList<>());
+		}
+	}
+
+	/**
+	 * Asynchronous geo-aggregation over any area, used by the geo-aggregation cache to fetch several tiles in one request
+	 *
+	 * @param areaFilter The filter images must match to be aggregated, usually one or more bounding boxes
+	 * @param depth1To12 A depth value in the range of 1-12 that specifies how tightly aggregated buckets should be
+	 * @param query The actual query to filter images by before aggregating
+	 * @param resultOnError The result the future completes with if the request fails
+	 * @return A future list of buckets containing a center point and the number of images inside
+	 */
+	CompletableFuture<List<GeoBucket>> performGeoAggregationAsync(QueryBuilder areaFilter, Integer depth1To12, QueryBuilder query, List<GeoBucket> resultOnError)
+	{
 		try
 		{
 			// We use a sub-aggregation to take each result from the geo box query and put it into a bucket based on its proximity to other images
 			// Here we also specify precision (how close two images need to be to be in a bucket)
 			GeoGridAggregationBuilder geoHashAggregation =
 			AggregationBuilders.geohashGrid("cells").field("imageMetadata.position").precision(depth1To12)
-				// Now that images are in a bucket we average their lat and longs to create a "center" position ready to return to our user.
-				.subAggregation(AggregationBuilders.avg("center_lat").script(new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG, "doc['imageMetadata.position'].lat", Collections.emptyMap())))
-				.subAggregation(AggregationBuilders.avg("center_lon").script(new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG, "doc['imageMetadata.position'].lon", Collections.emptyMap())))
-				// This will be a list of documents that are inside of the cell bucket
-				.subAggregation(AggregationBuilders.terms("document_ids").field("_id").size(numDocIDSPerBucket));
+				// Every bucket in view is drawn, so each shard only needs to return as many buckets as we keep. By default shards return
+				// a multiple of this for ranking accuracy, which we don't need
+				.size(MAX_GEO_BUCKETS)
+				.shardSize(MAX_GEO_BUCKETS)
+				// Now that images are in a bucket we find their centroid to create a "center" position ready to return to our user.
+				// This reads the indexed points directly instead of running a script per document
+				// Document IDs are not aggregated, they are looked up by the bucket's cell once its circle is selected
+				.subAggregation(AggregationBuilders.geoCentroid("center").field("imageMetadata.position"));
 
 			// The aggregation is the hard part of this task, so build it first
 			FilterAggregationBuilder aggregationQuery =
 				// First we filter by bounding box
 				AggregationBuilders
 					// Call the filter 'filtered_cells'
-					.filter("filtered_cells",
-						// User query builders to create our filter
-						QueryBuilders
-							// Our query is on the position field which must be in the box created by:
-							.geoBoundingBoxQuery("imageMetadata.position")
-							// The top left corner and the bottom right corner, specified here
-							.setCorners(new GeoPoint(topLeftLat, topLeftLong), new GeoPoint(bottomRightLat, bottomRightLong)))
+					.filter("filtered_cells", areaFilter)
 					.subAggregation(geoHashAggregation);
 
 			// Create a search request, and populate the fields
@@ -1401,75 +1439,77 @@ public class ElasticSearchConnectionManager
 					// Add our complex aggregation now
 					.aggregation(aggregationQuery));
 
-			try
+			// Grab the search results
+			CompletableFuture<List<GeoBucket>> future = new CompletableFuture<>();
+			this.elasticSearchClient.searchAsync(searchRequest, DefaultRequestOptions, this.completing(future, this::parseGeoAggregation, resultOnError, "Error performing geo-aggregation, error was:"));
+			return future;
+		}
+		catch (IllegalArgumentException e)
+		{
+			// The user somehow managed to pass illegal values to the aggregation by moving the map into a strange position. Print an error but recover
+			CalliopeData.getInstance().getErrorDisplay().notify("Invalid geo-aggregation, error was:\n" + ExceptionUtils.getStackTrace(e));
+			return CompletableFuture.completedFuture(resultOnError);
+		}
+	}
+
+	/**
+	 * Reads the buckets out of a geo-aggregation search response
+	 *
+	 * @param searchResponse The response to read
+	 * @return A list of buckets containing a center point and a list of images inside
+	 */
+	private List<GeoBucket> parseGeoAggregation(SearchResponse searchResponse)
+	{
+		// Create a list of buckets to return
+		List<GeoBucket> toReturn = new ArrayList<>();
+
+		// Grab the aggregations from those search results
+		List<Aggregation> aggregationHits = searchResponse.getAggregations().asList();
+		// Go over the aggregations (there should be just one)
+		for (Aggregation aggregation : aggregationHits)
+		{
+			// Make sure we got the right type of aggregation
+			if (aggregation instanceof ParsedSingleBucketAggregation && aggregation.getName().equals("filtered_cells"))
 			{
-				// Grab the search results
-				SearchResponse searchResponse = this.elasticSearchClient.search(searchRequest, DefaultRequestOptions);
-				// Grab the aggregations from those search results
-				List<Aggregation> aggregationHits = searchResponse.getAggregations().asList();
-				// Go over the aggregations (there should be just one)
-				for (Aggregation aggregation : aggregationHits)
+				// Grab the sub-aggregations of the by bounding box filter
+				ParsedSingleBucketAggregation cellsInView = (ParsedSingleBucketAggregation) aggregation;
+				// Iterate over all sub-aggregations
+				for (Aggregation subAggregation : cellsInView.getAggregations())
 				{
-					// Make sure we got the right type of aggregation
-					if (aggregation instanceof ParsedSingleBucketAggregation && aggregation.getName().equals("filtered_cells"))
+					// Each of these sub-aggregations should be a geo-hash-grid with buckets
+					if (subAggregation instanceof ParsedGeoHashGrid && subAggregation.getName().equals("cells"))
 					{
-						// Grab the sub-aggregations of the by bounding box filter
-						ParsedSingleBucketAggregation cellsInView = (ParsedSingleBucketAggregation) aggregation;
-						// Iterate over all sub-aggregations
-						for (Aggregation subAggregation : cellsInView.getAggregations())
+						// Grab the hash grid
+						ParsedGeoHashGrid geoHashGrid = (ParsedGeoHashGrid) subAggregation;
+						// Iterate over all buckets inside of the hash grid
+						for (GeoGrid.Bucket bucket : geoHashGrid.getBuckets())
 						{
-							// Each of these sub-aggregations should be a geo-hash-grid with buckets
-							if (subAggregation instanceof ParsedGeoHashGrid && subAggregation.getName().equals("cells"))
+							// The bucket will include 3 pieces of info, latitude, longitude, and the number of documents in the bucket
+							Long documentsInBucket = bucket.getDocCount();
+							Double centerLat = null;
+							Double centerLong = null;
+							// Latitude and longitude are fetched as a sub-aggregation, so pull those here
+							for (Aggregation cellAggregation : bucket.getAggregations())
 							{
-								// Grab the hash grid
-								ParsedGeoHashGrid geoHashGrid = (ParsedGeoHashGrid) subAggregation;
-								// Iterate over all buckets inside of the hash grid
-								for (GeoGrid.Bucket bucket : geoHashGrid.getBuckets())
+								// If it's a ParsedGeoCentroid aggregation it's the center of the bucket, so read its lat and long
+								if (cellAggregation instanceof ParsedGeoCentroid && cellAggregation.getName().equals("center"))
 								{
-									// The bucket will include 3 pieces of info, latitude, longitude, and the number of documents in the bucket
-									Long documentsInBucket = bucket.getDocCount();
-									List<String> knownDocumentIDs = new ArrayList<>();
-									Double centerLat = null;
-									Double centerLong = null;
-									// Latitude and longitude are fetched as sub-aggregations, so pull those here
-									// We also pull off the unique IDs of all the documents which all should have their own bucket
-									for (Aggregation cellAggregation : bucket.getAggregations())
+									GeoPoint centroid = ((ParsedGeoCentroid) cellAggregation).centroid();
+									if (centroid != null)
 									{
-										// If it's a ParsedAvg aggregation it's either the lat or long aggregation, figure that out and update the corresponding value
-										if (cellAggregation instanceof ParsedAvg)
-										{
-											if (cellAggregation.getName().equals("center_lat"))
-												centerLat = ((ParsedAvg) cellAggregation).getValue();
-											else if (cellAggregation.getName().equals("center_lon"))
-												centerLong = ((ParsedAvg) cellAggregation).getValue();
-										}
-										// If it's a ParsedStringTerm aggregation we got a list of document IDs. Read the IDs and store them
-										else if (cellAggregation instanceof ParsedStringTerms && cellAggregation.getName().equals("document_ids"))
-										{
-											ParsedStringTerms docIDTerms = (ParsedStringTerms) cellAggregation;
-											docIDTerms.getBuckets().forEach(documentBucket -> knownDocumentIDs.add(documentBucket.getKeyAsString()));
-										}
+										centerLat = centroid.getLat();
+										centerLong = centroid.getLon();
 									}
-
-									// If we received sub-aggregation data, we're good so return the bucket
-									if (centerLat != null && centerLong != null)
-										toReturn.add(new GeoBucket(centerLat, centerLong, documentsInBucket, knownDocumentIDs));
 								}
 							}
+
+							// If we received sub-aggregation data, we're good so return the bucket
+							if (centerLat != null && centerLong != null)
+								toReturn.add(new GeoBucket(bucket.getKeyAsString(), centerLat, centerLong, documentsInBucket));
 						}
 					}
 				}
 			}
-			catch (IOException e)
-			{
-				// Something went wrong, so show an error
-				CalliopeData.getInstance().getErrorDisplay().notify("Error performing geo-aggregation, error was:\n" + ExceptionUtils.getStackTrace(e));
-			}
-		}
-		catch (IllegalArgumentException e)
-		{
-			// The user somehow managed to pass illegal values to the aggregation by moving the map into a strange position. Print an error but recover
-			CalliopeData.getInstance().getErrorDisplay().notify("Invalid geo-aggregation, error was:\n" + ExceptionUtils.getStackTrace(e));
 		}
 
 		return toReturn;
@@ -1486,40 +1526,71 @@ public class ElasticSearchConnectionManager
 	 */
 	public List<String> grabSiteCodesWithin(Double topLeftLat, Double topLeftLong, Double bottomRightLat, Double bottomRightLong)
 	{
-		List<String> toReturn = new ArrayList<>();
+		return this.grabSiteCodesWithinAsync(topLeftLat, topLeftLong, bottomRightLat, bottomRightLong).join();
+	}
 
-		try
-		{
-			// Because the site list could be potentially long, we use a scroll to ensure reading results in reasonable chunks
-			Scroll scroll = new Scroll(TimeValue.timeValueMinutes(1));
-			// Create a search request, and populate the fields
-			SearchRequest searchRequest = new SearchRequest();
-			searchRequest
-					.indices(INDEX_CALLIOPE_SITES)
-					//.types(INDEX_CALLIOPE_SITES_TYPE)
-					.scroll(scroll)
-					.source(new SearchSourceBuilder()
-							// Fetch results 1000 at a time, and use a query that matches everything
-							.size(1000)
-							.fetchSource(new FetchSourceContext(true, new String[] { "code" }, null))
-							// We use a geo-intersection query that tests if our viewport intersects the site's boundary
-							.query(QueryBuilders.geoIntersectionQuery("boundary", new EnvelopeBuilder(new Coordinate(topLeftLong, topLeftLat), new Coordinate(bottomRightLong, bottomRightLat)))));
+	/**
+	 * Asynchronous version of grabSiteCodesWithin, no thread is blocked while elastic search is working. Cancelling the
+	 * returned future stops the scroll after the page currently in flight
+	 *
+	 * @param topLeftLat The top left corner's latitude
+	 * @param topLeftLong The top left corner's longitude
+	 * @param bottomRightLat The bottom right corner's latitude
+	 * @param bottomRightLong The bottom right corner's longitude
+	 * @return A future list of site codes that are within this bounding box
+	 */
+	public CompletableFuture<List<String>> grabSiteCodesWithinAsync(Double topLeftLat, Double topLeftLong, Double bottomRightLat, Double bottomRightLong)
+	{
+		CompletableFuture<List<String>> future = new CompletableFuture<>();
 
+		// Because the site list could be potentially long, we use a scroll to ensure reading results in reasonable chunks
+		Scroll scroll = new Scroll(TimeValue.timeValueMinutes(1));
+		// Create a search request, and populate the fields
+		SearchRequest searchRequest = new SearchRequest();
+		searchRequest
+				.indices(INDEX_CALLIOPE_SITES)
+				//.types(INDEX_CALLIOPE_SITES_TYPE)
+				.scroll(scroll)
+				.source(new SearchSourceBuilder()
+						// Fetch results 1000 at a time, and use a query that matches everything
+						.size(1000)
+						.fetchSource(new FetchSourceContext(true, new String[] { "code" }, null))
+						// We use a geo-intersection query that tests if our viewport intersects the site's boundary
+						.query(QueryBuilders.geoIntersectionQuery("boundary", new EnvelopeBuilder(new Coordinate(topLeftLong, topLeftLat), new Coordinate(bottomRightLong, bottomRightLat)))));
 
-			// Grab the search results
-            //Long time = System.currentTimeMillis();
-			SearchResponse searchResponse = this.elasticSearchClient.search(searchRequest, DefaultRequestOptions);
-			// Store the scroll id that was returned because we specified a scroll in the search request
-			String scrollID = searchResponse.getScrollId();
-			// Get a list of sites (hits)
-			SearchHit[] searchHits = searchResponse.getHits().getHits();
-			//System.out.println("ES Time: " + (System.currentTimeMillis() - time));
+		// Grab the search results, the listener keeps scrolling until every site is read
+		this.elasticSearchClient.searchAsync(searchRequest, DefaultRequestOptions, this.siteCodeScrollListener(future, new ArrayList<>(), scroll));
+		return future;
+	}
 
-			// Iterate while there are more collections to be read
-			while (searchHits != null && searchHits.length > 0)
+	/**
+	 * Creates a listener that reads the site codes from each page of a scroll and then requests the next page, completing the
+	 * future once every page is read
+	 *
+	 * @param future The future to complete with the site codes
+	 * @param siteCodes The site codes read so far
+	 * @param scroll The scroll used to keep the search context alive
+	 * @return A listener to pass to the search and each scroll
+	 */
+	private ActionListener<SearchResponse> siteCodeScrollListener(CompletableFuture<List<String>> future, List<String> siteCodes, Scroll scroll)
+	{
+		return new ActionListener<SearchResponse>()
+		{
+			@Override
+			public void onResponse(SearchResponse searchResponse)
 			{
-				//DEBUG
-				//System.out.println(searchHits.length);
+				// Store the scroll id that was returned because we specified a scroll in the search request
+				String scrollID = searchResponse.getScrollId();
+				// Get a list of sites (hits)
+				SearchHit[] searchHits = searchResponse.getHits().getHits();
+
+				// Stop once there are no more sites to read or nobody wants the result anymore
+				if (searchHits == null || searchHits.length == 0 || future.isDone())
+				{
+					ElasticSearchConnectionManager.this.clearScrollAsync(scrollID);
+					future.complete(siteCodes);
+					return;
+				}
 
 				// Iterate over all current results
 				for (SearchHit searchHit : searchHits)
@@ -1528,39 +1599,57 @@ public class ElasticSearchConnectionManager
 					Map<String, Object> sitesMap = searchHit.getSourceAsMap();
 					// We should only get 1 map value, the code, which we can add to our list
 					if (sitesMap.containsKey("code") && sitesMap.get("code") instanceof String)
-					{
-						toReturn.add((String) sitesMap.get("code"));
-					}
+						siteCodes.add((String) sitesMap.get("code"));
 				}
 
-				// Now that we've processed this wave of results, get the next 100 results
+				// Now that we've processed this wave of results, get the next results
 				SearchScrollRequest scrollRequest = new SearchScrollRequest();
 				// Setup the scroll request
 				scrollRequest
 						.scrollId(scrollID)
 						.scroll(scroll);
-				// Perform the scroll, yielding another set of results
-				searchResponse = this.elasticSearchClient.searchScroll(scrollRequest, DefaultRequestOptions);
-				// Store the hits and the new scroll id
-				scrollID = searchResponse.getScrollId();
-				searchHits = searchResponse.getHits().getHits();
+				// Perform the scroll, this listener gets called again with the next set of results
+				ElasticSearchConnectionManager.this.elasticSearchClient.scrollAsync(scrollRequest, DefaultRequestOptions, this);
 			}
 
-			// Finish off the scroll request
-			ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
-			clearScrollRequest.addScrollId(scrollID);
-			ClearScrollResponse clearScrollResponse = this.elasticSearchClient.clearScroll(clearScrollRequest, DefaultRequestOptions);
-			// If clearing the scroll request fails, show an error
-			if (!clearScrollResponse.isSucceeded())
-				CalliopeData.getInstance().getErrorDisplay().notify("Could not clear the scroll when reading sites");
-		}
-		catch (IOException e)
+			@Override
+			public void onFailure(Exception e)
+			{
+				// Something went wrong, so show an error unless the request was already abandoned
+				if (!future.isDone())
+				{
+					CalliopeData.getInstance().getErrorDisplay().notify("Error pulling remote sites, error was:\n" + ExceptionUtils.getStackTrace(e));
+					future.complete(siteCodes);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Finishes off a scroll request without waiting for the result
+	 *
+	 * @param scrollID The ID of the scroll to clear
+	 */
+	private void clearScrollAsync(String scrollID)
+	{
+		ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+		clearScrollRequest.addScrollId(scrollID);
+		this.elasticSearchClient.clearScrollAsync(clearScrollRequest, DefaultRequestOptions, new ActionListener<ClearScrollResponse>()
 		{
-			// Something went wrong, so show an error
-			CalliopeData.getInstance().getErrorDisplay().notify("Error pulling remote sites, error was:\n" + ExceptionUtils.getStackTrace(e));
-		}
+			@Override
+			public void onResponse(ClearScrollResponse clearScrollResponse)
+			{
+				// If clearing the scroll request fails, show an error
+				if (!clearScrollResponse.isSucceeded())
+					CalliopeData.getInstance().getErrorDisplay().notify("Could not clear the scroll when reading sites");
+			}
 
-		return toReturn;
+			@Override
+			public void onFailure(Exception e)
+			{
+				CalliopeData.getInstance().getErrorDisplay().notify("Could not clear the scroll when reading sites\n" + ExceptionUtils.getStackTrace(e));
+			}
+		});
 	}
 
 	/**
@@ -1568,228 +1657,136 @@ public class ElasticSearchConnectionManager
 	 * view specifics about a "geo-aggregation" dot found on the map tab
 	 *
 	 * @param geoBucket The bucket to pull data from
+	 * @param query The query the bucket was aggregated with, only images matching it are returned
+	 * @param maxImages The maximum number of images to return
 	 * @return A list of image results that contain advanced metadata about simple lat/long points or "dots" found on the map tab
 	 */
-	@SuppressWarnings("unchecked")
-	public List<QueryImageEntry> performCircleLookup(GeoBucket geoBucket)
+	public List<QueryImageEntry> performCircleLookup(GeoBucket geoBucket, QueryBuilder query, Integer maxImages)
 	{
-		// Create a list of results to return
 		List<QueryImageEntry> toReturn = new ArrayList<>();
+		this.performCircleLookupAsync(geoBucket, query, maxImages, toReturn::addAll).join();
+		return toReturn;
+	}
 
-		// If the geo-bucket is not null and non-empty, we perform a multi-get for each document ID
-		if (geoBucket != null && !geoBucket.getKnownDocumentIDs().isEmpty())
+	/**
+	 * Asynchronous, paged version of performCircleLookup, no thread is blocked while elastic search is working. Document IDs
+	 * are never aggregated, instead the images are searched for inside of the bucket's geohash cell when the bucket is
+	 * selected. Images are fetched a page at a time using search_after and each page is handed to the consumer as soon as it
+	 * arrives, so the first rows can be shown long before a large circle finishes. Cancelling the returned future stops any
+	 * further pages from being requested
+	 *
+	 * @param geoBucket The bucket to pull data from
+	 * @param query The query the bucket was aggregated with, only images matching it are returned
+	 * @param maxImages The maximum number of images to return
+	 * @param pageConsumer Called with each page of image results in order, on an elastic search client thread
+	 * @return A future number of images that were handed to the consumer
+	 */
+	public CompletableFuture<Integer> performCircleLookupAsync(GeoBucket geoBucket, QueryBuilder query, Integer maxImages, Consumer<List<QueryImageEntry>> pageConsumer)
+	{
+		// If the geo-bucket is not null and non-empty, we search its cell for images
+		if (geoBucket != null && geoBucket.getGeohash() != null && geoBucket.getDocumentCount() > 0 && maxImages > 0)
 		{
-			// A multi-get request that gets metadata about each document
-			MultiGetRequest multiGetRequest = new MultiGetRequest();
-			// We only want specific fields which reduces the bandwidth uses, list those here
-			FetchSourceContext fieldsWeWant = new FetchSourceContext(true,
-					new String[] { "storagePath", "collectionID", "imageMetadata.altitude", "imageMetadata.cameraModel", "imageMetadata.dateTaken", "imageMetadata.droneMaker", "imageMetadata.elevation", "imageMetadata.fileType", "imageMetadata.focalLength", "imageMetadata.height", "imageMetadata.width", "imageMetadata.position", "imageMetadata.rotation", "imageMetadata.speed", "imageMetadata.siteCode" },
-					null);
-			// Iterate over all document IDs and add one get request for each one
-			geoBucket.getKnownDocumentIDs().forEach(documentID ->
-					//multiGetRequest.add(new MultiGetRequest.Item(INDEX_CALLIOPE_METADATA, INDEX_CALLIOPE_METADATA_TYPE, documentID).fetchSourceContext(fieldsWeWant)));
-					multiGetRequest.add(new MultiGetRequest.Item(INDEX_CALLIOPE_METADATA, documentID).fetchSourceContext(fieldsWeWant)));
-
-			// Perform the get
 			try
 			{
-				// May want multiGetAsync instead
-				MultiGetResponse multiGetItemResponse = this.elasticSearchClient.multiGet(multiGetRequest, DefaultRequestOptions);
-				// Iterate over all results
-				for (MultiGetItemResponse itemResponse : multiGetItemResponse.getResponses())
-				{
-					// Make sure the result was successful
-					if (!itemResponse.isFailed())
-					{
-						// Grab the JSON response as a hash map
-						Map<String, Object> sourceAsMap = itemResponse.getResponse().getSourceAsMap();
-						// Ensure the JSON contains 3 keys
-						if (sourceAsMap.containsKey("collectionID") &&
-							sourceAsMap.containsKey("storagePath") &&
-							sourceAsMap.containsKey("imageMetadata"))
-						{
-							// The imageMetadata object should be a map
-							Object metadataMapObj = sourceAsMap.get("imageMetadata");
-							// Double check if it's a map
-							if (metadataMapObj instanceof Map<?, ?>)
-							{
-								// Cast the object to a map
-								Map<String, Object> metadataMap = (Map<String, Object>) metadataMapObj;
-								// This new map should have specific fields, test that
-								if (metadataMap.containsKey("altitude") &&
-									metadataMap.containsKey("cameraModel") &&
-									metadataMap.containsKey("dateTaken") &&
-									metadataMap.containsKey("droneMaker") &&
-									metadataMap.containsKey("elevation") &&
-									metadataMap.containsKey("fileType") &&
-									metadataMap.containsKey("focalLength") &&
-									metadataMap.containsKey("height") &&
-									metadataMap.containsKey("width") &&
-									metadataMap.containsKey("position") &&
-									metadataMap.containsKey("rotation") &&
-									metadataMap.containsKey("speed") &&
-									metadataMap.containsKey("siteCode"))
-								{
-									Object speedMapObj = metadataMap.get("speed");
-									Object rotationMapObj = metadataMap.get("rotation");
-									if (speedMapObj instanceof Map<?, ?> && rotationMapObj instanceof Map<?, ?>)
-									{
-										Map<String, Double> speedMap = (Map<String, Double>) speedMapObj;
-										Map<String, Double> rotationMap = (Map<String, Double>) rotationMapObj;
-
-										// Grab the collection ID
-										String collectionID = sourceAsMap.get("collectionID").toString();
-										// Add a new GeoImageResult to return. Convert relevant fields to a usable format
-										QueryImageEntry imageEntry = new QueryImageEntry();
-
-										// Default string for unspecified
-										String UNSPECIFIED = "unspecified";
-
-										// For each data pieces we want, test if it's null, if not, store it
-										if (sourceAsMap.get("storagePath") != null)
-											imageEntry.setIrodsAbsolutePath(sourceAsMap.get("storagePath").toString());
-										else
-											imageEntry.setIrodsAbsolutePath(UNSPECIFIED);
-										imageEntry.setImageCollection(CalliopeData.getInstance().getCollectionList().stream().filter(collection -> collection.getID().toString().equals(collectionID)).findFirst().orElse(null));
-										if (metadataMap.get("altitude") != null)
-											imageEntry.setAltitude(NumberUtils.toDouble(metadataMap.get("altitude").toString(), Double.NaN));
-										else
-											imageEntry.setAltitude(Double.NaN);
-										if (metadataMap.get("cameraModel") != null)
-											imageEntry.setCameraModel(metadataMap.get("cameraModel").toString());
-										else
-											imageEntry.setCameraModel(UNSPECIFIED);
-										if (metadataMap.get("dateTaken") != null)
-											imageEntry.setDateTaken(ZonedDateTime.parse(metadataMap.get("dateTaken").toString(), CalliopeMetadataFields.INDEX_DATE_TIME_FORMAT).toLocalDateTime());
-										else
-											imageEntry.setDateTaken(LocalDateTime.MIN);
-										if (metadataMap.get("droneMaker") != null)
-											imageEntry.setDroneMaker(metadataMap.get("droneMaker").toString());
-										else
-											imageEntry.setDroneMaker(UNSPECIFIED);
-										if (metadataMap.get("position") != null)
-										{
-											String[] longAndLat = metadataMap.get("position").toString().split(", ");
-											if (longAndLat.length == 2)
-												imageEntry.setPositionTaken(new Position(NumberUtils.toDouble(longAndLat[1], Double.NaN), NumberUtils.toDouble(longAndLat[0], Double.NaN), NumberUtils.toDouble(metadataMap.get("elevation").toString(), Double.NaN)));
-										}
-										else
-											imageEntry.setPositionTaken(new Position());
-										if (metadataMap.get("fileType") != null)
-											imageEntry.setFileType(metadataMap.get("fileType").toString());
-										else
-											imageEntry.setFileType(UNSPECIFIED);
-										if (metadataMap.get("focalLength") != null)
-											imageEntry.setFocalLength(NumberUtils.toDouble(metadataMap.get("focalLength").toString(), Double.NaN));
-										else
-											imageEntry.setFocalLength(Double.NaN);
-										if (metadataMap.get("width") != null)
-											imageEntry.setWidth(NumberUtils.toDouble(metadataMap.get("width").toString(), Double.NaN));
-										else
-											imageEntry.setWidth(Double.NaN);
-										if (metadataMap.get("height") != null)
-											imageEntry.setHeight(NumberUtils.toDouble(metadataMap.get("height").toString(), Double.NaN));
-										else
-											imageEntry.setHeight(Double.NaN);
-										if (metadataMap.get("siteCode") != null) {
-											for (String code : ((List<String>)metadataMap.get("siteCode")))
-												imageEntry.getSiteTaken().add(CalliopeData.getInstance().getSiteManager().getSiteByCode(code));
-										} else
-											imageEntry.setSiteTaken(null);
-										if (speedMap.get("x") != null && speedMap.get("y") != null && speedMap.get("z") != null)
-											imageEntry.setSpeed(new Vector3(
-													NumberUtils.toDouble(speedMap.get("x").toString(), Double.NaN),
-													NumberUtils.toDouble(speedMap.get("y").toString(), Double.NaN),
-													NumberUtils.toDouble(speedMap.get("z").toString(), Double.NaN)));
-										if (rotationMap.get("roll") != null && rotationMap.get("pitch") != null && rotationMap.get("yaw") != null)
-											imageEntry.setRotation(new Vector3(
-													NumberUtils.toDouble(rotationMap.get("roll").toString(), Double.NaN),
-													NumberUtils.toDouble(rotationMap.get("pitch").toString(), Double.NaN),
-													NumberUtils.toDouble(rotationMap.get("yaw").toString(), Double.NaN)));
-										toReturn.add(imageEntry);
-									}
-								}
-							}
-						}
-					}
-				}
+				// Our query will match all documents if no query was provided, and the images must be inside of the bucket's cell.
+				// Scores are meaningless here, so everything is a filter
+				QueryBuilder cellQuery = QueryBuilders.boolQuery()
+					.filter(query == null ? QueryBuilders.matchAllQuery() : query)
+					.filter(QueryBuilders.geoBoundingBoxQuery("imageMetadata.position").setCorners(GeohashUtils.topLeftOf(geoBucket.getGeohash()), GeohashUtils.bottomRightOf(geoBucket.getGeohash())));
+				// Index the collections once up front instead of searching the collection list for every hit
+				ImageHitDecoder hitDecoder = new ImageHitDecoder(CalliopeData.getInstance().getCollectionList(), CalliopeData.getInstance().getSiteManager());
+
+				CompletableFuture<Integer> future = new CompletableFuture<>();
+				this.fetchCircleLookupPage(cellQuery, null, 0, maxImages, hitDecoder, pageConsumer, future);
+				return future;
 			}
-			catch (IOException e)
+			catch (IllegalArgumentException e)
 			{
-				// Something went wrong, so show an error
-				CalliopeData.getInstance().getErrorDisplay().notify("Error performing multi-get document get, error was:\n" + ExceptionUtils.getStackTrace(e));
+				CalliopeData.getInstance().getErrorDisplay().notify("Invalid circle lookup, error was:\n" + ExceptionUtils.getStackTrace(e));
 			}
 		}
 
-		return toReturn;
+		return CompletableFuture.completedFuture(0);
 	}
 
 	/**
-	 * Given a query this method returns a list of image file paths that match the query
+	 * Fetches one page of a circle lookup, hands it to the consumer, and then requests the next page if there is one
 	 *
-	 * @param currentQuery The query to apply and get metadata from
-	 * @return A list of absolute iRODS paths to pull from the ES index
+	 * @param cellQuery The query matching images in the circle's cell
+	 * @param searchAfter The sort values of the last hit of the previous page, or null for the first page
+	 * @param imagesFetched The number of images fetched by previous pages
+	 * @param maxImages The maximum number of images to fetch
+	 * @param hitDecoder Used to decode each hit into an image result
+	 * @param pageConsumer Called with the page of image results
+	 * @param future Completed with the total number of images once the last page is handed over
 	 */
-	public List<String> getImagePathsMatching(QueryBuilder currentQuery)
+	private void fetchCircleLookupPage(QueryBuilder cellQuery, Object[] searchAfter, Integer imagesFetched, Integer maxImages, ImageHitDecoder hitDecoder, Consumer<List<QueryImageEntry>> pageConsumer, CompletableFuture<Integer> future)
 	{
-		List<String> toReturn = new ArrayList<>();
-
-		try
+		// The first page is small so rows show up right away, later pages are larger to cut down on round trips
+		Integer pageSize = Math.min(maxImages - imagesFetched, searchAfter == null ? CIRCLE_LOOKUP_FIRST_PAGE_SIZE : CIRCLE_LOOKUP_PAGE_SIZE);
+		SearchSourceBuilder searchSource = new SearchSourceBuilder()
+			// We only want specific fields which reduces the bandwidth uses, list those here
+			.fetchSource(new String[] { "storagePath", "collectionID", "imageMetadata.altitude", "imageMetadata.cameraModel", "imageMetadata.dateTaken", "imageMetadata.droneMaker", "imageMetadata.elevation", "imageMetadata.fileType", "imageMetadata.focalLength", "imageMetadata.height", "imageMetadata.width", "imageMetadata.position", "imageMetadata.rotation", "imageMetadata.speed", "imageMetadata.siteCode" }, null)
+			.query(cellQuery)
+			.size(pageSize)
+			// Sort by path so each page can continue where the last one left off
+			.sort("storagePath", SortOrder.ASC)
+			// The bucket already told us how many images there are
+			.trackTotalHits(false);
+		if (searchAfter != null)
+			searchSource.searchAfter(searchAfter);
+
+		CompletableFuture<SearchResponse> pageFuture = new CompletableFuture<>();
+		this.elasticSearchClient.searchAsync(new SearchRequest().indices(INDEX_CALLIOPE_METADATA).source(searchSource), DefaultRequestOptions, this.completing(pageFuture, Function.identity(), null, "Error looking up the images in a circle, error was:"));
+		pageFuture.thenAccept(searchResponse ->
 		{
-			// Perform a search request to count the number of results
-			SearchRequest countSearchRequest = new SearchRequest();
-			countSearchRequest
-					.indices(INDEX_CALLIOPE_METADATA)
-					//.types(INDEX_CALLIOPE_METADATA_TYPE)
-					.source(new SearchSourceBuilder()
-						// Use size==0 to count the number of documents matching the query
-						.size(0)
-						.query(currentQuery));
-
-			// Perform the count search
-			SearchResponse countSearchResponse = this.elasticSearchClient.search(countSearchRequest, DefaultRequestOptions);
-			// Store the number of hits
-			Long totalHits = countSearchResponse.getHits().getTotalHits().value;
-			// Every aggregation we fire off will have a max of 1000 results
-			final int MAX_AGGS_PER_SEARCH = 1000;
-			// Compute how many queries we need to perform to get all results
-			Integer partitionsRequired = Math.toIntExact(totalHits / MAX_AGGS_PER_SEARCH + 1);
-
-			// Iterate once partition
-			for (Integer partitionNumber = 0; partitionNumber < partitionsRequired; partitionNumber++)
+			// If the lookup was cancelled don't bother with the page or the rest of the lookup
+			if (future.isDone())
+				return;
+			// The page failed and the error was already shown, so finish with what we have
+			if (searchResponse == null)
 			{
-				// Create a search request, and populate the fields
-				SearchRequest searchRequest = new SearchRequest();
-				searchRequest
-					.indices(INDEX_CALLIOPE_METADATA)
-					//.types(INDEX_CALLIOPE_METADATA_TYPE)
-					.source(new SearchSourceBuilder()
-						.fetchSource(false)
-						.query(currentQuery)
-						// Aggregate on the storage path list so we get all unique paths. We do it in partitions to ensure we don't get more than 1000 results at once
-						.aggregation(AggregationBuilders.terms("paths").field("storagePath").includeExclude(new IncludeExclude(partitionNumber, partitionsRequired)).size(MAX_AGGS_PER_SEARCH)));
-
-				// Grab the search results
-				SearchResponse searchResponse = this.elasticSearchClient.search(searchRequest, DefaultRequestOptions);
-				// Get a list of paths (hits)
-				Aggregations aggregations = searchResponse.getAggregations();
-
-				// Iterate over all aggregations, there should only be 1
-				for (Aggregation aggregation : aggregations.asList())
-					// The one aggregation should be a parsed string terms aggregation
-					if (aggregation instanceof ParsedStringTerms)
-						// There should be #buckets == #images. Grab each bucket's key (which is the path) and add it to be returned
-						((ParsedStringTerms) aggregation).getBuckets().forEach(bucket ->  toReturn.add(bucket.getKeyAsString()));
+				future.complete(imagesFetched);
+				return;
 			}
-		}
-		catch (IOException e)
-		{
-			// Something went wrong, so show an error
-			CalliopeData.getInstance().getErrorDisplay().notify("Error pulling remote image file paths, error was:\n" + ExceptionUtils.getStackTrace(e));
-		}
 
+			try
+			{
+				SearchHit[] hits = searchResponse.getHits().getHits();
+				List<QueryImageEntry> page = new ArrayList<>(hits.length);
+				for (SearchHit hit : hits)
+				{
+					QueryImageEntry imageEntry = hitDecoder.decode(hit);
+					if (imageEntry != null)
+						page.add(imageEntry);
+				}
+				pageConsumer.accept(page);
 
-		return toReturn;
+				// Keep going until we run out of hits or reach the limit
+				Integer totalFetched = imagesFetched + hits.length;
+				if (hits.length < pageSize || totalFetched >= maxImages)
+					future.complete(totalFetched);
+				else
+					this.fetchCircleLookupPage(cellQuery, hits[hits.length - 1].getSortValues(), totalFetched, maxImages, hitDecoder, pageConsumer, future);
+			}
+			catch (RuntimeException e)
+			{
+				future.completeExceptionally(e);
+			}
+		});
+	}
+
+	/**
+	 * Given a query this method returns an iterator over the unique image file paths that match the query. Paths are pulled
+	 * one page at a time as the iterator is read, so queries with any number of results can be walked without holding every
+	 * path in memory. Errors fetching a page are thrown from the iterator as an UncheckedIOException
+	 *
+	 * @param currentQuery The query to apply and get metadata from
+	 * @return An iterator of absolute iRODS paths to pull from the ES index
+	 */
+	public ImagePathIterator getImagePathsMatching(QueryBuilder currentQuery)
+	{
+		return new ImagePathIterator(this.elasticSearchClient, INDEX_CALLIOPE_METADATA, currentQuery, IMAGE_PATH_PAGE_SIZE);
 	}
 
 	/**
@@ -1799,8 +1796,16 @@ public class ElasticSearchConnectionManager
 	 */
 	public List<String> downloadFileTypeList()
 	{
-		List<String> toReturn = new ArrayList<>();
+		return this.downloadFileTypeListAsync().join();
+	}
 
+	/**
+	 * Asynchronous version of downloadFileTypeList, no thread is blocked while elastic search is working
+	 *
+	 * @return A future list of unique file types
+	 */
+	public CompletableFuture<List<String>> downloadFileTypeListAsync()
+	{
 		// Create a search request, and populate the fields
 		SearchRequest searchRequest = new SearchRequest();
 		searchRequest
@@ -1816,15 +1821,13 @@ public class ElasticSearchConnectionManager
 					// Add our aggregation now
 					.aggregation(AggregationBuilders.terms("fileTypes").field("imageMetadata.fileType")));
 
-		// Execute the search in a try catch
-		try
+		// Perform the search
+		CompletableFuture<List<String>> future = new CompletableFuture<>();
+		this.elasticSearchClient.searchAsync(searchRequest, DefaultRequestOptions, this.completing(future, searchResponse ->
 		{
-			// Perform the search
-			SearchResponse searchResponse = this.elasticSearchClient.search(searchRequest, DefaultRequestOptions);
-			// Return the aggregations
-			Aggregations aggregations = searchResponse.getAggregations();
+			List<String> toReturn = new ArrayList<>();
 			// Get the file types aggregation
-			Aggregation fileTypesAggregation = aggregations.asMap().get("fileTypes");
+			Aggregation fileTypesAggregation = searchResponse.getAggregations().asMap().get("fileTypes");
 			// Convert the aggregation into a usable format
 			if (fileTypesAggregation instanceof ParsedStringTerms)
 			{
@@ -1833,14 +1836,55 @@ public class ElasticSearchConnectionManager
 				// For each bucket, add the key of the bucket
 				fileTypes.getBuckets().forEach(bucket -> toReturn.add(bucket.getKeyAsString()));
 			}
-		}
-		// If an error occurs then show an error
-		catch (IOException e)
+			return toReturn;
+		}, new ArrayList<>(), "There was an error retrieving the current list of file types."));
+		return future;
+	}
+
+	/**
+	 * Creates a listener that completes a future with the parsed response of an asynchronous request. If the request fails
+	 * an error is shown and the future is completed with a fallback result, the same way the synchronous calls recover. If
+	 * the future was cancelled before the response arrives the response is ignored
+	 *
+	 * @param future The future to complete
+	 * @param responseParser Converts the response into the result
+	 * @param resultOnError The result to complete with if the request fails
+	 * @param errorMessage The message shown if the request fails
+	 * @param <R> The type of response
+	 * @param <T> The type of result
+	 * @return A listener to pass to an asynchronous request
+	 */
+	private <R, T> ActionListener<R> completing(CompletableFuture<T> future, Function<R, T> responseParser, T resultOnError, String errorMessage)
+	{
+		return new ActionListener<R>()
 		{
-			CalliopeData.getInstance().getErrorDisplay().notify("There was an error retrieving the current list of file types.\n" + ExceptionUtils.getStackTrace(e));
-		}
+			@Override
+			public void onResponse(R response)
+			{
+				// Don't bother parsing a response nobody is waiting on
+				if (future.isDone())
+					return;
+				try
+				{
+					future.complete(responseParser.apply(response));
+				}
+				catch (RuntimeException e)
+				{
+					this.onFailure(e);
+				}
+			}
 
-		return toReturn;
+			@Override
+			public void onFailure(Exception e)
+			{
+				// Something went wrong, so show an error unless the request was already abandoned
+				if (!future.isDone())
+				{
+					CalliopeData.getInstance().getErrorDisplay().notify(errorMessage + "\n" + ExceptionUtils.getStackTrace(e));
+					future.complete(resultOnError);
+				}
+			}
+		};
 	}
 
 	// Getter for the 'active' property
@@ -4,11 +4,11 @@ import javafx.util.Pair;
 import model.CalliopeData;
 import model.constant.CalliopeMetadataFields;
 import model.cyverse.ImageCollection;
-import model.image.ImageEntry;
-import model.image.VideoEntry;
+import model.image.DataContainer;
 import model.settings.SettingsData;
 import model.site.Site;
 import model.util.LocUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.elasticsearch.common.geo.builders.LineStringBuilder;
 import org.elasticsearch.common.geo.builders.PolygonBuilder;
@@ -19,6 +19,7 @@ import org.locationtech.jts.geom.Coordinate;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.time.ZoneId;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -607,114 +608,59 @@ public class ElasticSearchSchemaManager
 	}
 
 	/**
-	 * Utility function used to convert a video entry to its JSON representation
+	 * Utility function used to write an image or video entry's JSON representation straight to an output stream. Nothing is
+	 * kept once the document is written, so many documents can be streamed into one reusable buffer
 	 *
-	 * @param videoEntry The video to convert to its JSON representation
-	 * @param collectionID The ID of the collection that the image belongs to
+	 * @param entry The image or video to convert to its JSON representation
+	 * @param collectionID The ID of the collection that the entry belongs to
 	 * @param fileAbsolutePath The absolute path of the file on CyVerse
-	 * @return A map of key->value pairs used later in creating JSON
+	 * @param outputStream The stream to write the JSON document to, it is not closed
 	 */
-	XContentBuilder videoToJSON(VideoEntry videoEntry, String collectionID, String fileAbsolutePath) throws IOException
+	void metadataToJSON(DataContainer entry, String collectionID, String fileAbsolutePath, OutputStream outputStream) throws IOException
 	{
 		// On windows paths have \ as a path separator vs unix /. Make sure that we always use /
 		String fixedAbsolutePath = fileAbsolutePath.replace('\\', '/');
 
-		// Build the JSON representing the video metadata
-		XContentBuilder builder = XContentFactory.jsonBuilder()
-				.startObject()
+		// Build the JSON directly into the stream, the close shield keeps the builder from closing the stream when it's done
+		try (XContentBuilder builder = XContentFactory.jsonBuilder(new CloseShieldOutputStream(outputStream)))
+		{
+			builder
+			.startObject()
 				.field("storagePath", fixedAbsolutePath)
 				.field("collectionID", collectionID)
 				.startObject("imageMetadata")
-				.field("dateTaken", videoEntry.getDateTaken().atZone(ZoneId.systemDefault()).format(CalliopeMetadataFields.INDEX_DATE_TIME_FORMAT))
-				.field("yearTaken", videoEntry.getDateTaken().getYear())
-				.field("monthTaken", videoEntry.getDateTaken().getMonthValue())
-				.field("hourTaken", videoEntry.getDateTaken().getHour())
-				.field("dayOfYearTaken", videoEntry.getDateTaken().getDayOfYear())
-				.field("dayOfWeekTaken", videoEntry.getDateTaken().getDayOfWeek().getValue())
-				.startArray("siteCode");
-		for(Site site : videoEntry.getSiteTaken()) {
-			builder.field(site.getCode());
-		}
-				builder.endArray()
-				.field("position", videoEntry.getPositionTaken().getLatitude() + ", " + videoEntry.getPositionTaken().getLongitude())
-				.field("elevation", videoEntry.getPositionTaken().getElevation())
-				.field("droneMaker", videoEntry.getDroneMaker())
-				.field("cameraModel", videoEntry.getCameraModel())
-				.startObject("speed")
-				.field("x", videoEntry.getSpeed().getX())
-				.field("y", videoEntry.getSpeed().getY())
-				.field("z", videoEntry.getSpeed().getZ())
+					.field("dateTaken", entry.getDateTaken().atZone(ZoneId.systemDefault()).format(CalliopeMetadataFields.INDEX_DATE_TIME_FORMAT))
+					.field("yearTaken", entry.getDateTaken().getYear())
+					.field("monthTaken", entry.getDateTaken().getMonthValue())
+					.field("hourTaken", entry.getDateTaken().getHour())
+					.field("dayOfYearTaken", entry.getDateTaken().getDayOfYear())
+					.field("dayOfWeekTaken", entry.getDateTaken().getDayOfWeek().getValue())
+					.startArray("siteCode");
+			for (Site site : entry.getSiteTaken())
+				builder.value(site.getCode());
+			builder.endArray()
+					.field("position", entry.getPositionTaken().getLatitude() + ", " + entry.getPositionTaken().getLongitude())
+					.field("elevation", entry.getPositionTaken().getElevation())
+					.field("droneMaker", entry.getDroneMaker())
+					.field("cameraModel", entry.getCameraModel())
+					.startObject("speed")
+						.field("x", entry.getSpeed().getX())
+						.field("y", entry.getSpeed().getY())
+						.field("z", entry.getSpeed().getZ())
+					.endObject()
+					.startObject("rotation")
+						.field("roll", entry.getRotation().getX())
+						.field("pitch", entry.getRotation().getY())
+						.field("yaw", entry.getRotation().getZ())
+					.endObject()
+					.field("altitude", entry.getAltitude())
+					.field("fileType", entry.getFileType())
+					.field("focalLength", entry.getFocalLength())
+					.field("width", entry.getWidth())
+					.field("height", entry.getHeight())
 				.endObject()
-				.startObject("rotation")
-				.field("roll", videoEntry.getRotation().getX())
-				.field("pitch", videoEntry.getRotation().getY())
-				.field("yaw", videoEntry.getRotation().getZ())
-				.endObject()
-				.field("altitude", videoEntry.getAltitude())
-				.field("fileType", videoEntry.getFileType())
-				.field("focalLength", videoEntry.getFocalLength())
-				.field("width", videoEntry.getWidth())
-				.field("height", videoEntry.getHeight())
-				.endObject()
-				.endObject();
-
-		// We return the JSON
-		return builder;
-	}
-	
-	/**
-	 * Utility function used to convert an image entry to its JSON representation
-	 *
-	 * @param imageEntry The image to convert to its JSON representation
-	 * @param collectionID The ID of the collection that the image belongs to
-	 * @param fileAbsolutePath The absolute path of the file on CyVerse
-	 * @return A map of key->value pairs used later in creating JSON
-	 */
-	XContentBuilder imageToJSON(ImageEntry imageEntry, String collectionID, String fileAbsolutePath) throws IOException
-	{
-		// On windows paths have \ as a path separator vs unix /. Make sure that we always use /
-		String fixedAbsolutePath = fileAbsolutePath.replace('\\', '/');
-
-		// Build the JSON
-		XContentBuilder builder = XContentFactory.jsonBuilder()
-		.startObject()
-			.field("storagePath", fixedAbsolutePath)
-			.field("collectionID", collectionID)
-			.startObject("imageMetadata")
-				.field("dateTaken", imageEntry.getDateTaken().atZone(ZoneId.systemDefault()).format(CalliopeMetadataFields.INDEX_DATE_TIME_FORMAT))
-				.field("yearTaken", imageEntry.getDateTaken().getYear())
-				.field("monthTaken", imageEntry.getDateTaken().getMonthValue())
-				.field("hourTaken", imageEntry.getDateTaken().getHour())
-				.field("dayOfYearTaken", imageEntry.getDateTaken().getDayOfYear())
-				.field("dayOfWeekTaken", imageEntry.getDateTaken().getDayOfWeek().getValue())
-				.startArray("siteCode");
-		for(Site site : imageEntry.getSiteTaken()) {
-			builder.value(site.getCode());
+			.endObject();
 		}
-		builder.endArray()
-				.field("position", imageEntry.getPositionTaken().getLatitude() + ", " + imageEntry.getPositionTaken().getLongitude())
-				.field("elevation", imageEntry.getPositionTaken().getElevation())
-				.field("droneMaker", imageEntry.getDroneMaker())
-				.field("cameraModel", imageEntry.getCameraModel())
-				.startObject("speed")
-					.field("x", imageEntry.getSpeed().getX())
-					.field("y", imageEntry.getSpeed().getY())
-					.field("z", imageEntry.getSpeed().getZ())
-				.endObject()
-				.startObject("rotation")
-					.field("roll", imageEntry.getRotation().getX())
-					.field("pitch", imageEntry.getRotation().getY())
-					.field("yaw", imageEntry.getRotation().getZ())
-				.endObject()
-				.field("altitude", imageEntry.getAltitude())
-				.field("fileType", imageEntry.getFileType())
-				.field("focalLength", imageEntry.getFocalLength())
-				.field("width", imageEntry.getWidth())
-				.field("height", imageEntry.getHeight())
-			.endObject()
-		.endObject();
-
-		return builder;
 	}
 
 	/**
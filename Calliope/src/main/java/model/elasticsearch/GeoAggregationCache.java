@@ -0,0 +1,214 @@
+package model.elasticsearch;
+
+import model.util.GeohashUtils;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A bounded least recently used cache of geo-aggregation buckets used by the map. The map view is split into geohash tiles
+ * a little coarser than the aggregation precision, and the buckets of each tile are cached by query, precision, and tile.
+ * When the map moves only the tiles that are not cached yet are fetched, all in a single request, so panning back and forth
+ * over the same area does not hit elastic search again. The cache must be invalidated whenever the query changes
+ */
+public class GeoAggregationCache
+{
+	// The maximum number of tiles a single view is split into, past this coarser tiles are used
+	private static final Integer MAX_TILES_PER_VIEW = 64;
+	// Rough number of bytes used by a cached tile and a bucket
+	private static final Long TILE_BYTES = 128L;
+	private static final Long BUCKET_BYTES = 128L;
+
+	// The connection manager used to fetch tiles that are not cached
+	private final ElasticSearchConnectionManager esConnectionManager;
+	// The maximum estimated size of the cache in bytes before the least recently used tiles are evicted
+	private final Long maxBytes;
+	// The cached buckets, keyed by query, precision, and tile. Access ordered so that iteration order is least -> most recently used
+	private final LinkedHashMap<TileKey, List<GeoBucket>> tiles = new LinkedHashMap<>(16, 0.75f, true);
+	// The estimated size of every cached tile in bytes
+	private Long currentBytes = 0L;
+
+	/**
+	 * Constructor initializes the cache without any tiles
+	 *
+	 * @param esConnectionManager The connection manager used to fetch tiles that are not cached
+	 * @param maxBytes The maximum estimated size of the cache in bytes
+	 */
+	public GeoAggregationCache(ElasticSearchConnectionManager esConnectionManager, Long maxBytes)
+	{
+		this.esConnectionManager = esConnectionManager;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Returns the geo-aggregation buckets covering a bounding box. Cached tiles are used as is, and the missing tiles are
+	 * fetched in one request and cached once it finishes, even if the returned future was cancelled in the meantime. The
+	 * result may include buckets slightly outside of the box because whole tiles are returned
+	 *
+	 * @param topLeftLat The coordinate representing the top left latitude of the bounding box
+	 * @param topLeftLong The coordinate representing the top left longitude of the bounding box
+	 * @param bottomRightLat The coordinate representing the bottom right latitude of the bounding box
+	 * @param bottomRightLong The coordinate representing the top bottom right longitude of the bounding box
+	 * @param depth1To12 A depth value in the range of 1-12 that specifies how tightly aggregated buckets should be
+	 * @param query The actual query to filter images by before aggregating
+	 * @return A future list of buckets containing a center point and a list of images inside
+	 */
+	public CompletableFuture<List<GeoBucket>> getBucketsAsync(Double topLeftLat, Double topLeftLong, Double bottomRightLat, Double bottomRightLong, Integer depth1To12, QueryBuilder query)
+	{
+		// A box crossing the date line can't be split into tiles by index, so just ask elastic search directly
+		if (topLeftLong > bottomRightLong || bottomRightLat > topLeftLat)
+			return this.esConnectionManager.performGeoAggregationAsync(topLeftLat, topLeftLong, bottomRightLat, bottomRightLong, depth1To12, query);
+
+		// Use tiles one level coarser than the buckets, unless that would split the view into too many tiles
+		Integer tilePrecision = Math.max(1, depth1To12 - 1);
+		while (tilePrecision > 1 && GeohashUtils.countCellsCovering(topLeftLat, topLeftLong, bottomRightLat, bottomRightLong, tilePrecision) > MAX_TILES_PER_VIEW)
+			tilePrecision--;
+		List<String> tilesInView = GeohashUtils.cellsCovering(topLeftLat, topLeftLong, bottomRightLat, bottomRightLong, tilePrecision);
+
+		// Grab every tile we already have, and remember the ones we don't. Tiles are keyed by the query's full JSON since two
+		// different queries can share a hash code, and every tile of this request shares the one copy of it
+		String queryJSON = String.valueOf(query);
+		List<GeoBucket> cachedBuckets = new ArrayList<>();
+		Set<String> missingTiles = new HashSet<>();
+		synchronized (this.tiles)
+		{
+			for (String tileGeohash : tilesInView)
+			{
+				List<GeoBucket> tileBuckets = this.tiles.get(new TileKey(queryJSON, depth1To12, tileGeohash));
+				if (tileBuckets != null)
+					cachedBuckets.addAll(tileBuckets);
+				else
+					missingTiles.add(tileGeohash);
+			}
+		}
+
+		if (missingTiles.isEmpty())
+			return CompletableFuture.completedFuture(cachedBuckets);
+
+		// Fetch every missing tile at once by aggregating over the union of their boxes
+		BoolQueryBuilder missingArea = QueryBuilders.boolQuery().minimumShouldMatch(1);
+		for (String tileGeohash : missingTiles)
+			missingArea.should(QueryBuilders.geoBoundingBoxQuery("imageMetadata.position").setCorners(GeohashUtils.topLeftOf(tileGeohash), GeohashUtils.bottomRightOf(tileGeohash)));
+
+		Integer finalTilePrecision = tilePrecision;
+		return this.esConnectionManager.performGeoAggregationAsync(missingArea, depth1To12, query, null).thenApply(fetchedBuckets ->
+		{
+			// The request failed, so just show what we had without caching anything
+			if (fetchedBuckets == null)
+				return cachedBuckets;
+
+			// Sort the buckets into the tile their geohash starts with. A box on the edge of a cached tile can also match
+			// images in that tile's buckets, we already have those so they are thrown out
+			Map<String, List<GeoBucket>> fetchedTiles = new HashMap<>();
+			missingTiles.forEach(tileGeohash -> fetchedTiles.put(tileGeohash, new ArrayList<>()));
+			for (GeoBucket geoBucket : fetchedBuckets)
+			{
+				List<GeoBucket> tileBuckets = geoBucket.getGeohash() != null && geoBucket.getGeohash().length() >= finalTilePrecision ? fetchedTiles.get(geoBucket.getGeohash().substring(0, finalTilePrecision)) : null;
+				if (tileBuckets != null)
+					tileBuckets.add(geoBucket);
+			}
+
+			List<GeoBucket> toReturn = new ArrayList<>(cachedBuckets);
+			fetchedTiles.values().forEach(toReturn::addAll);
+
+			// If the request hit the bucket limit, the smallest buckets were cut off and any tile could be missing some of its
+			// buckets. Show what we got, but don't cache it so the tiles are fetched again once fewer are in view
+			if (fetchedBuckets.size() >= ElasticSearchConnectionManager.MAX_GEO_BUCKETS)
+				return toReturn;
+
+			// Cache each tile, including the empty ones so they aren't fetched again
+			synchronized (this.tiles)
+			{
+				for (Map.Entry<String, List<GeoBucket>> fetchedTile : fetchedTiles.entrySet())
+					this.putTile(new TileKey(queryJSON, depth1To12, fetchedTile.getKey()), fetchedTile.getValue());
+			}
+			return toReturn;
+		});
+	}
+
+	/**
+	 * Throws away every cached tile, called whenever the query changes
+	 */
+	public void invalidate()
+	{
+		synchronized (this.tiles)
+		{
+			this.tiles.clear();
+			this.currentBytes = 0L;
+		}
+	}
+
+	/**
+	 * Caches a tile and evicts the least recently used tiles until the cache fits in its memory bound again. Must be called
+	 * while holding the tiles lock
+	 *
+	 * @param key The key of the tile
+	 * @param tileBuckets The buckets inside of the tile
+	 */
+	private void putTile(TileKey key, List<GeoBucket> tileBuckets)
+	{
+		List<GeoBucket> replaced = this.tiles.put(key, tileBuckets);
+		if (replaced != null)
+			this.currentBytes = this.currentBytes - this.estimateBytes(replaced);
+		this.currentBytes = this.currentBytes + this.estimateBytes(tileBuckets);
+
+		// Evict the oldest tiles, but always keep the one we just added
+		Iterator<List<GeoBucket>> leastRecentlyUsed = this.tiles.values().iterator();
+		while (this.currentBytes > this.maxBytes && this.tiles.size() > 1 && leastRecentlyUsed.hasNext())
+		{
+			this.currentBytes = this.currentBytes - this.estimateBytes(leastRecentlyUsed.next());
+			leastRecentlyUsed.remove();
+		}
+	}
+
+	/**
+	 * Estimates the number of bytes a cached tile uses
+	 *
+	 * @param tileBuckets The buckets inside of the tile
+	 * @return The estimated size of the tile in bytes
+	 */
+	private Long estimateBytes(List<GeoBucket> tileBuckets)
+	{
+		return TILE_BYTES + BUCKET_BYTES * tileBuckets.size();
+	}
+
+	/**
+	 * Identifies a cached tile by the query it was aggregated with, the aggregation precision, and the tile's geohash
+	 */
+	private static class TileKey
+	{
+		// The JSON of the query the tile was filtered by, "null" if there was no query
+		private final String queryJSON;
+		// The precision the tile's buckets were aggregated at
+		private final Integer depth1To12;
+		// The geohash of the tile
+		private final String tileGeohash;
+
+		TileKey(String queryJSON, Integer depth1To12, String tileGeohash)
+		{
+			this.queryJSON = queryJSON;
+			this.depth1To12 = depth1To12;
+			this.tileGeohash = tileGeohash;
+		}
+
+		@Override
+		public boolean equals(Object other)
+		{
+			if (this == other)
+				return true;
+			if (!(other instanceof TileKey))
+				return false;
+			TileKey otherKey = (TileKey) other;
+			return this.queryJSON.equals(otherKey.queryJSON) && this.depth1To12.equals(otherKey.depth1To12) && this.tileGeohash.equals(otherKey.tileGeohash);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(this.queryJSON, this.depth1To12, this.tileGeohash);
+		}
+	}
+}
@@ -1,40 +1,44 @@
 package model.elasticsearch;
 
-import java.util.List;
-
 /**
  * Class that represents a set of images aggregated into a bucket ready to be displayed on a map
  */
 public class GeoBucket
 {
+	// The geohash of the grid cell this bucket was aggregated from
+	private final String geohash;
 	// The latitude coordinate at the center of the bucket
 	private final Double centerLatitude;
 	// The longitude coordinate at the center of the bucket
 	private final Double centerLongitude;
 	// The number of images aggregated into this bucket
 	private final Long documentCount;
-	// The IDs of known documents in this bucket
-	private final List<String> knownDocumentIDs;
 
 	/**
 	 * Constructor just initializes fields
-	 *  @param centerLatitude latitude coordinate at the center of the bucket (made up of lat averages)
+	 *
+	 * @param geohash The geohash of the grid cell this bucket was aggregated from
+	 * @param centerLatitude latitude coordinate at the center of the bucket (made up of lat averages)
 	 * @param centerLongitude longitude coordinate at the center of the bucket (made up of long averages)
 	 * @param documentCount The number of images aggregated into this bucket
-	 * @param knownDocumentIDs The IDs of know documents in this bucket
 	 */
-	public GeoBucket(Double centerLatitude, Double centerLongitude, Long documentCount, List<String> knownDocumentIDs)
+	public GeoBucket(String geohash, Double centerLatitude, Double centerLongitude, Long documentCount)
 	{
+		this.geohash = geohash;
 		this.centerLatitude = centerLatitude;
 		this.centerLongitude = centerLongitude;
 		this.documentCount = documentCount;
-		this.knownDocumentIDs = knownDocumentIDs;
 	}
 
 	///
 	/// Getters only, there's no need to set any of these fields
 	///
 
+	public String getGeohash()
+	{
+		return geohash;
+	}
+
 	public Double getCenterLatitude()
 	{
 		return centerLatitude;
@@ -49,9 +53,4 @@ public class GeoBucket
 	{
 		return documentCount;
 	}
-
-	public List<String> getKnownDocumentIDs()
-	{
-		return knownDocumentIDs;
-	}
 }
@@ -0,0 +1,205 @@
+package model.elasticsearch;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import model.constant.CalliopeMetadataFields;
+import model.cyverse.ImageCollection;
+import model.image.Position;
+import model.image.Vector3;
+import model.site.Site;
+import model.site.SiteManager;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.elasticsearch.search.SearchHit;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes metadata index hits into query image entries. Each hit's source is read straight into a typed document instead
+ * of a map of objects, and collections are resolved through a hash index built once when the decoder is created
+ */
+class ImageHitDecoder
+{
+	// Value used for any text field that is missing
+	private static final String UNSPECIFIED = "unspecified";
+	// Gson has no state so a single instance is shared between decoders
+	private static final Gson HIT_GSON = new Gson();
+
+	// A map of collection ID -> collection, built from the collection list when the decoder is created
+	private final Map<String, ImageCollection> collectionsByID = new HashMap<>();
+	// Used to resolve site codes to sites
+	private final SiteManager siteManager;
+
+	/**
+	 * Constructor indexes the collections by ID
+	 *
+	 * @param collections The list of collections hits may belong to
+	 * @param siteManager Used to resolve site codes to sites
+	 */
+	ImageHitDecoder(List<ImageCollection> collections, SiteManager siteManager)
+	{
+		// The collection list is a synchronized list, so hold its lock while we walk it
+		synchronized (collections)
+		{
+			for (ImageCollection collection : collections)
+				this.collectionsByID.put(collection.getID().toString(), collection);
+		}
+		this.siteManager = siteManager;
+	}
+
+	/**
+	 * Decodes a single hit
+	 *
+	 * @param searchHit The hit to decode, its source must include storagePath, collectionID, and imageMetadata
+	 * @return The decoded image entry, or null if the hit does not describe an image
+	 */
+	QueryImageEntry decode(SearchHit searchHit)
+	{
+		if (!searchHit.hasSource())
+			return null;
+
+		// Read the source bytes directly into our document without building a map first
+		ImageDocument document;
+		try (Reader sourceReader = new InputStreamReader(searchHit.getSourceRef().streamInput(), StandardCharsets.UTF_8))
+		{
+			document = HIT_GSON.fromJson(sourceReader, ImageDocument.class);
+		}
+		catch (IOException | JsonParseException e)
+		{
+			return null;
+		}
+
+		if (document == null || document.collectionID == null || document.imageMetadata == null)
+			return null;
+
+		ImageMetadata metadata = document.imageMetadata;
+		QueryImageEntry imageEntry = new QueryImageEntry();
+		imageEntry.setIrodsAbsolutePath(document.storagePath != null ? document.storagePath : UNSPECIFIED);
+		imageEntry.setImageCollection(this.collectionsByID.get(document.collectionID));
+		imageEntry.setAltitude(valueOrNaN(metadata.altitude));
+		imageEntry.setCameraModel(metadata.cameraModel != null ? metadata.cameraModel : UNSPECIFIED);
+		imageEntry.setDateTaken(parseDateTaken(metadata.dateTaken));
+		imageEntry.setDroneMaker(metadata.droneMaker != null ? metadata.droneMaker : UNSPECIFIED);
+		imageEntry.setPositionTaken(parsePosition(metadata.position, metadata.elevation));
+		imageEntry.setFileType(metadata.fileType != null ? metadata.fileType : UNSPECIFIED);
+		imageEntry.setFocalLength(valueOrNaN(metadata.focalLength));
+		imageEntry.setWidth(valueOrNaN(metadata.width));
+		imageEntry.setHeight(valueOrNaN(metadata.height));
+		if (metadata.siteCode != null)
+			for (String code : metadata.siteCode)
+			{
+				Site site = this.siteManager.getSiteByCode(code);
+				if (site != null)
+					imageEntry.getSiteTaken().add(site);
+			}
+		if (metadata.speed != null && metadata.speed.x != null && metadata.speed.y != null && metadata.speed.z != null)
+			imageEntry.setSpeed(new Vector3(metadata.speed.x, metadata.speed.y, metadata.speed.z));
+		if (metadata.rotation != null && metadata.rotation.roll != null && metadata.rotation.pitch != null && metadata.rotation.yaw != null)
+			imageEntry.setRotation(new Vector3(metadata.rotation.roll, metadata.rotation.pitch, metadata.rotation.yaw));
+		return imageEntry;
+	}
+
+	/**
+	 * @param value The value which may be missing
+	 * @return The value, or NaN if it is missing
+	 */
+	private static Double valueOrNaN(Double value)
+	{
+		return value != null ? value : Double.NaN;
+	}
+
+	/**
+	 * Parses the date an image was taken in the index's date format
+	 *
+	 * @param dateTaken The date string from the index
+	 * @return The date taken, or LocalDateTime.MIN if it is missing or invalid
+	 */
+	private static LocalDateTime parseDateTaken(String dateTaken)
+	{
+		if (dateTaken == null)
+			return LocalDateTime.MIN;
+		try
+		{
+			return ZonedDateTime.parse(dateTaken, CalliopeMetadataFields.INDEX_DATE_TIME_FORMAT).toLocalDateTime();
+		}
+		catch (DateTimeParseException e)
+		{
+			return LocalDateTime.MIN;
+		}
+	}
+
+	/**
+	 * Parses the position an image was taken at, the index stores positions as "latitude, longitude"
+	 *
+	 * @param position The position string from the index
+	 * @param elevation The elevation of the position
+	 * @return The position, or an invalid position if it is missing
+	 */
+	private static Position parsePosition(String position, Double elevation)
+	{
+		if (position == null)
+			return new Position();
+		String[] latAndLong = position.split(",");
+		if (latAndLong.length != 2)
+			return new Position();
+		return new Position(NumberUtils.toDouble(latAndLong[0].trim(), Double.NaN), NumberUtils.toDouble(latAndLong[1].trim(), Double.NaN), valueOrNaN(elevation));
+	}
+
+	/**
+	 * The fields of a metadata index document that we read, filled in by Gson
+	 */
+	private static class ImageDocument
+	{
+		private String storagePath;
+		private String collectionID;
+		private ImageMetadata imageMetadata;
+	}
+
+	/**
+	 * The imageMetadata object of a metadata index document, filled in by Gson
+	 */
+	private static class ImageMetadata
+	{
+		private Double altitude;
+		private String cameraModel;
+		private String dateTaken;
+		private String droneMaker;
+		private Double elevation;
+		private String fileType;
+		private Double focalLength;
+		private Double height;
+		private Double width;
+		private String position;
+		private Speed speed;
+		private Rotation rotation;
+		private List<String> siteCode;
+	}
+
+	/**
+	 * The speed object of a metadata index document, filled in by Gson
+	 */
+	private static class Speed
+	{
+		private Double x;
+		private Double y;
+		private Double z;
+	}
+
+	/**
+	 * The rotation object of a metadata index document, filled in by Gson
+	 */
+	private static class Rotation
+	{
+		private Double roll;
+		private Double pitch;
+		private Double yaw;
+	}
+}
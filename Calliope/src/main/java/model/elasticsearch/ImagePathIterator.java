@@ -0,0 +1,143 @@
+package model.elasticsearch;
+
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the unique storage paths of every image matching a query, one page at a time. Hits are sorted by storage
+ * path and each page continues from the last path of the previous page using search_after, so only one page of paths is
+ * ever held in memory and duplicate paths end up next to each other where they are easy to skip
+ */
+public class ImagePathIterator implements Iterator<String>
+{
+	// The field the paths are read from and sorted on
+	private static final String STORAGE_PATH_FIELD = "storagePath";
+
+	// The client used to run each page's search
+	private final RestHighLevelClient elasticSearchClient;
+	// The index to search
+	private final String index;
+	// The query to match images with
+	private final QueryBuilder query;
+	// The number of hits to fetch per page
+	private final Integer pageSize;
+
+	// Paths from the current page that have not been returned yet
+	private final Deque<String> pagePaths = new ArrayDeque<>();
+	// The sort values of the last hit seen, null before the first page
+	private Object[] searchAfter = null;
+	// The last path returned, used to skip duplicates
+	private String lastPath = null;
+	// True once a page comes back with fewer hits than requested
+	private Boolean lastPageFetched = false;
+	// The total number of hits matching the query, known once the first page is fetched
+	private Long totalHits = null;
+
+	/**
+	 * Constructor does not run any searches, the first page is fetched when it is needed
+	 *
+	 * @param elasticSearchClient The client used to run each page's search
+	 * @param index The index to search
+	 * @param query The query to match images with
+	 * @param pageSize The number of hits to fetch per page
+	 */
+	ImagePathIterator(RestHighLevelClient elasticSearchClient, String index, QueryBuilder query, Integer pageSize)
+	{
+		this.elasticSearchClient = elasticSearchClient;
+		this.index = index;
+		this.query = query;
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * @return True if there is another unique path
+	 * @throws UncheckedIOException If a page could not be fetched
+	 */
+	@Override
+	public boolean hasNext()
+	{
+		while (this.pagePaths.isEmpty() && !this.lastPageFetched)
+			this.fetchNextPage();
+		return !this.pagePaths.isEmpty();
+	}
+
+	/**
+	 * @return The next unique path
+	 * @throws UncheckedIOException If a page could not be fetched
+	 */
+	@Override
+	public String next()
+	{
+		if (!this.hasNext())
+			throw new NoSuchElementException();
+		return this.pagePaths.poll();
+	}
+
+	/**
+	 * Fetches the page of hits after the last hit we saw and queues up any paths we haven't returned yet
+	 */
+	private void fetchNextPage()
+	{
+		SearchSourceBuilder searchSource = new SearchSourceBuilder()
+				// The sort value is the path, so we don't need the source at all
+				.fetchSource(false)
+				.query(this.query)
+				.size(this.pageSize)
+				.sort(STORAGE_PATH_FIELD, SortOrder.ASC)
+				// Only count the hits on the first page, counting is expensive and it won't change
+				.trackTotalHits(this.totalHits == null);
+		if (this.searchAfter != null)
+			searchSource.searchAfter(this.searchAfter);
+
+		try
+		{
+			SearchResponse searchResponse = this.elasticSearchClient.search(new SearchRequest().indices(this.index).source(searchSource), ElasticSearchConnectionManager.DefaultRequestOptions);
+			if (this.totalHits == null)
+				this.totalHits = searchResponse.getHits().getTotalHits() != null ? searchResponse.getHits().getTotalHits().value : 0L;
+
+			SearchHit[] hits = searchResponse.getHits().getHits();
+			for (SearchHit hit : hits)
+			{
+				String path = hit.getSortValues()[0].toString();
+				// Paths are sorted so duplicates are always next to each other
+				if (!path.equals(this.lastPath))
+				{
+					this.pagePaths.add(path);
+					this.lastPath = path;
+				}
+			}
+			if (hits.length > 0)
+				this.searchAfter = hits[hits.length - 1].getSortValues();
+			this.lastPageFetched = hits.length < this.pageSize;
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	///
+	/// Getters
+	///
+
+	/**
+	 * @return The number of hits matching the query, or null if the first page hasn't been fetched yet. Images that share a
+	 * path are counted more than once
+	 */
+	public Long getTotalHits()
+	{
+		return this.totalHits;
+	}
+}
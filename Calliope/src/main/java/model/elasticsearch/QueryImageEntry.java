@@ -39,7 +39,12 @@ public class QueryImageEntry extends ImageEntry
 		throw new UnsupportedOperationException("You can't read metadata from a query image entry result");
 	}
 	@Override
-	protected void readFileMetadataFromMap(Map<Tag, String> imageMetadataMap)
+	public void readFileMetadataFromMap(Map<Tag, String> imageMetadataMap)
+	{
+		throw new UnsupportedOperationException("You can't read metadata from a query image entry result");
+	}
+	@Override
+	public void readFileMetadataFromMap(Map<Tag, String> imageMetadataMap, Boolean computeAltitude)
 	{
 		throw new UnsupportedOperationException("You can't read metadata from a query image entry result");
 	}
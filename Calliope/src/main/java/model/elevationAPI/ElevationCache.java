@@ -0,0 +1,182 @@
+package model.elevationAPI;
+
+import model.util.ErrorDisplay;
+
+import java.io.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded least recently used cache of ground elevations. Coordinates are snapped to a grid so that nearby lookups (such
+ * as consecutive drone images) share a single entry. The cache can be saved to and loaded from disk so that it survives
+ * restarts
+ */
+public class ElevationCache
+{
+	// Version of the on disk snapshot format, bump this if the format changes
+	private static final Integer SNAPSHOT_VERSION = 1;
+
+	// The size of a grid cell in degrees
+	private final Double resolutionDegrees;
+	// The maximum number of cells stored before the least recently used one is evicted
+	private final Integer maxEntries;
+	// The cached elevations, keyed by grid cell. Access ordered so that iteration order is least -> most recently used
+	private final LinkedHashMap<Long, Double> elevations;
+
+	// Counters used to tune the cache
+	private final AtomicLong hits = new AtomicLong(0);
+	private final AtomicLong misses = new AtomicLong(0);
+
+	/**
+	 * Constructor initializes the cache without any entries
+	 *
+	 * @param resolutionArcSeconds The size of a grid cell in arc-seconds
+	 * @param maxEntries The maximum number of cells to store
+	 */
+	public ElevationCache(Double resolutionArcSeconds, Integer maxEntries)
+	{
+		this.resolutionDegrees = resolutionArcSeconds / 3600.0;
+		this.maxEntries = maxEntries;
+		this.elevations = new LinkedHashMap<Long, Double>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Double> eldest)
+			{
+				return this.size() > ElevationCache.this.maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached elevation for the grid cell containing the location
+	 *
+	 * @param latitude The latitude to test
+	 * @param longitude The longitude to test
+	 * @return The cached elevation or null if the cell is not cached
+	 */
+	public Double get(double latitude, double longitude)
+	{
+		Double elevation;
+		synchronized (this.elevations)
+		{
+			elevation = this.elevations.get(this.cellKey(latitude, longitude));
+		}
+		if (elevation != null)
+			this.hits.incrementAndGet();
+		else
+			this.misses.incrementAndGet();
+		return elevation;
+	}
+
+	/**
+	 * Stores the elevation for the grid cell containing the location
+	 *
+	 * @param latitude The latitude of the location
+	 * @param longitude The longitude of the location
+	 * @param elevation The ground elevation at the location
+	 */
+	public void put(double latitude, double longitude, Double elevation)
+	{
+		synchronized (this.elevations)
+		{
+			this.elevations.put(this.cellKey(latitude, longitude), elevation);
+		}
+	}
+
+	/**
+	 * Loads a snapshot of the cache from disk. Snapshots taken with a different grid resolution are ignored
+	 *
+	 * @param snapshotFile The file to read from
+	 * @param errorDisplay The error display to print errors to
+	 */
+	public void load(File snapshotFile, ErrorDisplay errorDisplay)
+	{
+		if (snapshotFile == null || !snapshotFile.exists())
+			return;
+
+		try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile))))
+		{
+			// Make sure the snapshot was written with the same format and grid
+			if (inputStream.readInt() != SNAPSHOT_VERSION || inputStream.readDouble() != this.resolutionDegrees)
+				return;
+			Integer entryCount = inputStream.readInt();
+			synchronized (this.elevations)
+			{
+				for (Integer i = 0; i < entryCount; i++)
+					this.elevations.put(inputStream.readLong(), inputStream.readDouble());
+			}
+		}
+		catch (IOException e)
+		{
+			errorDisplay.printError("Could not load the elevation cache from " + snapshotFile.getAbsolutePath() + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Saves a snapshot of the cache to disk, least recently used entries first so that load order is preserved
+	 *
+	 * @param snapshotFile The file to write to
+	 * @param errorDisplay The error display to print errors to
+	 */
+	public void save(File snapshotFile, ErrorDisplay errorDisplay)
+	{
+		if (snapshotFile == null)
+			return;
+
+		try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(snapshotFile))))
+		{
+			outputStream.writeInt(SNAPSHOT_VERSION);
+			outputStream.writeDouble(this.resolutionDegrees);
+			synchronized (this.elevations)
+			{
+				outputStream.writeInt(this.elevations.size());
+				for (Map.Entry<Long, Double> entry : this.elevations.entrySet())
+				{
+					outputStream.writeLong(entry.getKey());
+					outputStream.writeDouble(entry.getValue());
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			errorDisplay.printError("Could not save the elevation cache to " + snapshotFile.getAbsolutePath() + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Snaps a location to the grid and creates a unique key for that grid cell
+	 *
+	 * @param latitude The latitude of the location
+	 * @param longitude The longitude of the location
+	 * @return A key unique to the grid cell
+	 */
+	Long cellKey(double latitude, double longitude)
+	{
+		long row = (long) Math.floor(latitude / this.resolutionDegrees);
+		long column = (long) Math.floor(longitude / this.resolutionDegrees);
+		return (row << 32) | (column & 0xFFFFFFFFL);
+	}
+
+	///
+	/// Getters
+	///
+
+	public Long getHits()
+	{
+		return this.hits.get();
+	}
+
+	public Long getMisses()
+	{
+		return this.misses.get();
+	}
+
+	public Integer getSize()
+	{
+		synchronized (this.elevations)
+		{
+			return this.elevations.size();
+		}
+	}
+}
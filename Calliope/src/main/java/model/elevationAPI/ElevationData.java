@@ -2,18 +2,64 @@ package model.elevationAPI;
 
 import model.CalliopeData;
 import model.elevationAPI.jsonPOJOs.ElevationResponse;
+import model.settings.SensitiveConfigurationManager;
+import model.util.ErrorDisplay;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
+/**
+ * Class used to retrieve the ground elevation at a location, first from local elevation tiles and then from the USGS point
+ * query service if no local tile covers the location
+ */
 public class ElevationData
 {
 	private static final String BASE_URL = "https://nationalmap.gov/epqs/pqs.php?x=-110&y=32&units=Meters&output=json";
+	// The maximum number of web service requests in flight at once
+	private static final Integer MAX_CONCURRENT_REQUESTS = 8;
+	// The number of times a web service request is attempted before giving up
+	private static final Integer MAX_REQUEST_ATTEMPTS = 3;
+	// The time to wait before the first retry, doubled for each retry after
+	private static final Long INITIAL_RETRY_DELAY_MS = 500L;
+
+	// Local elevation tiles that are used before falling back to the web service
+	private final ElevationTileStore tileStore;
+	// Cache of elevations returned by the web service
+	private final ElevationCache cache;
+	// The file the cache is saved to between runs
+	private final File cacheFile;
+	// The error display used to print out errors
+	private final ErrorDisplay errorDisplay;
+	// Executor used to perform web service requests in parallel
+	private final ExecutorService requestExecutor = Executors.newFixedThreadPool(MAX_CONCURRENT_REQUESTS);
+
+	/**
+	 * Constructor loads any local elevation tiles and the cache from the last run
+	 *
+	 * @param configuration The configuration containing the tile directory and cache settings
+	 * @param errorDisplay The error display used to print out errors
+	 */
+	public ElevationData(SensitiveConfigurationManager configuration, ErrorDisplay errorDisplay)
+	{
+		this.errorDisplay = errorDisplay;
+		this.tileStore = new ElevationTileStore(configuration.getElevationTileDirectory(), errorDisplay);
+		this.cache = new ElevationCache(configuration.getElevationCacheResolutionArcSeconds(), configuration.getElevationCacheSize());
+		this.cacheFile = configuration.getElevationCacheFile();
+		this.cache.load(this.cacheFile, errorDisplay);
+	}
 
 	/**
 	 * Grabs the height of the ground at the latitude and longitude coordinates
@@ -24,14 +70,138 @@ public class ElevationData
 	 */
 	public Double getGroundElevation(Double latitude, Double longitude)
 	{
-		try
+		// Use a local tile if we have one, this works offline
+		Double localElevation = this.tileStore.getGroundElevation(latitude, longitude);
+		if (localElevation != null)
+			return localElevation;
+		// Otherwise check if we've asked the web service about this spot before
+		Double cachedElevation = this.cache.get(latitude, longitude);
+		if (cachedElevation != null)
+			return cachedElevation;
+		// Otherwise ask the web service, and remember the answer if it was valid
+		Double queriedElevation = this.queryGroundElevation(latitude, longitude);
+		if (queriedElevation != null && !queriedElevation.isInfinite())
+			this.cache.put(latitude, longitude, queriedElevation);
+		return queriedElevation;
+	}
+
+	/**
+	 * @return The cache of elevations returned by the web service
+	 */
+	public ElevationCache getCache()
+	{
+		return this.cache;
+	}
+
+	/**
+	 * Called to save the elevation cache to disk and stop any requests before exiting
+	 */
+	public void shutdown()
+	{
+		this.errorDisplay.printDebug("Elevation cache: " + this.cache.getHits() + " hits, " + this.cache.getMisses() + " misses, " + this.cache.getSize() + " entries");
+		this.cache.save(this.cacheFile, this.errorDisplay);
+		this.requestExecutor.shutdownNow();
+	}
+
+	/**
+	 * Grabs the height of the ground at many locations at once. Locations covered by local tiles or the cache are answered
+	 * immediately, and the rest are deduplicated by cache grid cell and requested from the web service in parallel
+	 *
+	 * @param latitudes The latitudes to test
+	 * @param longitudes The longitudes to test, parallel to latitudes
+	 * @return A future that completes with the height of the ground at each location, or -Infinity where there was a problem
+	 */
+	public CompletableFuture<double[]> getGroundElevations(double[] latitudes, double[] longitudes)
+	{
+		double[] elevations = new double[latitudes.length];
+		// Locations we still need to ask the web service about, grouped by cache grid cell so each cell is only requested once
+		Map<Long, List<Integer>> cellToIndices = new LinkedHashMap<>();
+		for (int i = 0; i < latitudes.length; i++)
+		{
+			Double knownElevation = this.tileStore.getGroundElevation(latitudes[i], longitudes[i]);
+			if (knownElevation == null)
+				knownElevation = this.cache.get(latitudes[i], longitudes[i]);
+			if (knownElevation != null)
+				elevations[i] = knownElevation;
+			else
+				cellToIndices.computeIfAbsent(this.cache.cellKey(latitudes[i], longitudes[i]), key -> new ArrayList<>()).add(i);
+		}
+
+		// Request one location per cell, at most MAX_CONCURRENT_REQUESTS at a time
+		List<CompletableFuture<Void>> requests = new ArrayList<>();
+		for (List<Integer> indices : cellToIndices.values())
+		{
+			Integer first = indices.get(0);
+			// A failure is kept to this cell so that one bad response never fails the elevations of every other location
+			requests.add(CompletableFuture.supplyAsync(() -> this.queryGroundElevation(latitudes[first], longitudes[first]), this.requestExecutor).exceptionally(e -> Double.NEGATIVE_INFINITY).thenAccept(elevation ->
+			{
+				if (elevation == null)
+					elevation = Double.NEGATIVE_INFINITY;
+				else if (!elevation.isInfinite())
+					this.cache.put(latitudes[first], longitudes[first], elevation);
+				for (Integer index : indices)
+					elevations[index] = elevation;
+			}));
+		}
+		return CompletableFuture.allOf(requests.toArray(new CompletableFuture[0])).thenApply(ignored -> elevations);
+	}
+
+	/**
+	 * Grabs the height of the ground at the latitude and longitude coordinates from the USGS point query service, retrying
+	 * with an exponential backoff if the request fails
+	 *
+	 * @param latitude The latitude to test
+	 * @param longitude The longitude to test
+	 * @return The height of the ground at the location or -Infinity if there's a problem
+	 */
+	private Double queryGroundElevation(Double latitude, Double longitude)
+	{
+		for (Integer attempt = 1; ; attempt++)
+		{
+			try
+			{
+				return this.requestGroundElevation(latitude, longitude);
+			}
+			// A malformed response, such as an HTML error page, fails to parse and is retried just like a failed request
+			catch (IOException | RuntimeException e)
+			{
+				// If we're out of attempts, give up and show an error
+				if (attempt >= MAX_REQUEST_ATTEMPTS)
+				{
+					CalliopeData.getInstance().getErrorDisplay().notify("Could not retrieve elevation at the coordinates [" + latitude + ", " + longitude + "]!\n" + ExceptionUtils.getStackTrace(e));
+					return Double.NEGATIVE_INFINITY;
+				}
+				// Otherwise wait a bit and try again, waiting twice as long each time
+				try
+				{
+					Thread.sleep(INITIAL_RETRY_DELAY_MS << (attempt - 1));
+				}
+				catch (InterruptedException interruptedException)
+				{
+					Thread.currentThread().interrupt();
+					return Double.NEGATIVE_INFINITY;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Performs a single request to the USGS point query service
+	 *
+	 * @param latitude The latitude to test
+	 * @param longitude The longitude to test
+	 * @return The height of the ground at the location
+	 * @throws IOException If the request failed
+	 */
+	private Double requestGroundElevation(Double latitude, Double longitude) throws IOException
+	{
+		// Setup the correct URL
+		URL elevationAPI = new URL(BASE_URL + "&x=" + longitude.toString() + "&y=" + latitude.toString());
+		// Establish a connection to the elevation site
+		URLConnection elevationAPIConnection = elevationAPI.openConnection();
+		// Read the entire response into a buffered reader
+		try (BufferedReader jsonReader = new BufferedReader(new InputStreamReader(elevationAPIConnection.getInputStream())))
 		{
-			// Setup the correct URL
-			URL elevationAPI = new URL(BASE_URL + "&x=" + longitude.toString() + "&y=" + latitude.toString());
-			// Establish a connection to the elevation site
-			URLConnection elevationAPIConnection = elevationAPI.openConnection();
-			// Read the entire response into a buffered reader
-			BufferedReader jsonReader = new BufferedReader(new InputStreamReader(elevationAPIConnection.getInputStream()));
 			// Join all the lines together into a single JSON string
 			String json = jsonReader.lines().collect(Collectors.joining());
 			// Convert the JSON string into a structured format
@@ -39,10 +209,5 @@ public class ElevationData
 			// Make sure we got at least one response and then process it
 			return elevationResponse.getResults().getElevationQuery().getElevation();
 		}
-		catch (IOException e)
-		{
-			CalliopeData.getInstance().getErrorDisplay().notify("Could not retrieve elevation at the coordinates [" + latitude + ", " + longitude + "]!\n" + ExceptionUtils.getStackTrace(e));
-			return Double.NEGATIVE_INFINITY;
-		}
 	}
 }
@@ -0,0 +1,124 @@
+package model.elevationAPI;
+
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A single memory mapped 1x1 degree SRTM style elevation tile (.hgt). These files are a square grid of big endian signed
+ * 16 bit elevations in meters, the first row being the northern edge. The file name gives the south west corner, for
+ * example N32W111.hgt covers latitude 32 to 33 and longitude -111 to -110
+ */
+public class ElevationTile
+{
+	// The value used in the grid for missing data
+	private static final short VOID_VALUE = -32768;
+	// The pattern of a tile file name, ex: N32W111
+	private static final Pattern TILE_NAME_PATTERN = Pattern.compile("([NS])(\\d{1,2})([EW])(\\d{1,3})", Pattern.CASE_INSENSITIVE);
+
+	// The south west corner of the tile
+	private final Integer southLatitude;
+	private final Integer westLongitude;
+	// The number of samples along each side of the grid
+	private final Integer samplesPerSide;
+	// The raw elevation samples, mapped straight from disk
+	private final MappedByteBuffer samples;
+
+	/**
+	 * Constructor memory maps the tile file
+	 *
+	 * @param tileFile The .hgt file to map
+	 * @throws IOException If the file could not be read or is not a valid tile
+	 */
+	public ElevationTile(File tileFile) throws IOException
+	{
+		// Parse the south west corner from the file name
+		Matcher matcher = TILE_NAME_PATTERN.matcher(FilenameUtils.getBaseName(tileFile.getName()));
+		if (!matcher.matches())
+			throw new IOException("Elevation tile name '" + tileFile.getName() + "' is not of the form N32W111.hgt");
+		this.southLatitude = Integer.parseInt(matcher.group(2)) * (matcher.group(1).equalsIgnoreCase("S") ? -1 : 1);
+		this.westLongitude = Integer.parseInt(matcher.group(4)) * (matcher.group(3).equalsIgnoreCase("W") ? -1 : 1);
+
+		// The tile is square, so the side length is the square root of the number of samples
+		long sampleCount = tileFile.length() / 2;
+		this.samplesPerSide = (int) Math.round(Math.sqrt(sampleCount));
+		if (this.samplesPerSide < 2 || (long) this.samplesPerSide * this.samplesPerSide != sampleCount)
+			throw new IOException("Elevation tile '" + tileFile.getName() + "' is not a square grid of 16 bit samples");
+
+		// Map the file into memory, the mapping stays valid after the channel is closed
+		try (FileChannel fileChannel = FileChannel.open(tileFile.toPath(), StandardOpenOption.READ))
+		{
+			this.samples = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, sampleCount * 2);
+			this.samples.order(ByteOrder.BIG_ENDIAN);
+		}
+	}
+
+	/**
+	 * Returns the ground elevation at a location by bilinearly interpolating the four surrounding samples
+	 *
+	 * @param latitude The latitude to test, must be inside of this tile
+	 * @param longitude The longitude to test, must be inside of this tile
+	 * @return The elevation in meters or null if any surrounding sample is missing
+	 */
+	public Double getElevation(double latitude, double longitude)
+	{
+		// Convert the location to a fractional row and column, row 0 is the north edge
+		double row = (this.southLatitude + 1 - latitude) * (this.samplesPerSide - 1);
+		double column = (longitude - this.westLongitude) * (this.samplesPerSide - 1);
+		int row0 = Math.min(Math.max((int) Math.floor(row), 0), this.samplesPerSide - 2);
+		int column0 = Math.min(Math.max((int) Math.floor(column), 0), this.samplesPerSide - 2);
+		double rowFraction = Math.min(Math.max(row - row0, 0), 1);
+		double columnFraction = Math.min(Math.max(column - column0, 0), 1);
+
+		// Grab the four samples around the location
+		short northWest = this.sampleAt(row0, column0);
+		short northEast = this.sampleAt(row0, column0 + 1);
+		short southWest = this.sampleAt(row0 + 1, column0);
+		short southEast = this.sampleAt(row0 + 1, column0 + 1);
+		if (northWest == VOID_VALUE || northEast == VOID_VALUE || southWest == VOID_VALUE || southEast == VOID_VALUE)
+			return null;
+
+		// Interpolate along the columns and then along the rows
+		double north = northWest + (northEast - northWest) * columnFraction;
+		double south = southWest + (southEast - southWest) * columnFraction;
+		return north + (south - north) * rowFraction;
+	}
+
+	/**
+	 * Reads a single sample out of the grid. Absolute reads do not touch the buffer position so this is thread safe
+	 *
+	 * @param row The row, 0 is north
+	 * @param column The column, 0 is west
+	 * @return The raw sample
+	 */
+	private short sampleAt(int row, int column)
+	{
+		return this.samples.getShort((row * this.samplesPerSide + column) * 2);
+	}
+
+	///
+	/// Getters
+	///
+
+	public Integer getSouthLatitude()
+	{
+		return this.southLatitude;
+	}
+
+	public Integer getWestLongitude()
+	{
+		return this.westLongitude;
+	}
+
+	public Integer getSamplesPerSide()
+	{
+		return this.samplesPerSide;
+	}
+}
@@ -0,0 +1,79 @@
+package model.elevationAPI;
+
+import model.util.ErrorDisplay;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Class used to look up ground elevation from a directory of local elevation tiles without needing a network connection
+ */
+public class ElevationTileStore
+{
+	// A map of tile key -> tile, the key is built from the tile's south west corner
+	private final Map<Long, ElevationTile> tiles = new HashMap<>();
+
+	/**
+	 * Constructor maps every .hgt tile found in the tile directory
+	 *
+	 * @param tileDirectory The directory containing tiles, may be null or missing in which case the store is empty
+	 * @param errorDisplay The error display used to print out tiles that could not be loaded
+	 */
+	public ElevationTileStore(File tileDirectory, ErrorDisplay errorDisplay)
+	{
+		if (tileDirectory == null || !tileDirectory.isDirectory())
+			return;
+
+		File[] tileFiles = tileDirectory.listFiles((directory, name) -> name.toLowerCase().endsWith(".hgt"));
+		if (tileFiles != null)
+		{
+			for (File tileFile : tileFiles)
+			{
+				try
+				{
+					ElevationTile tile = new ElevationTile(tileFile);
+					this.tiles.put(tileKey(tile.getSouthLatitude(), tile.getWestLongitude()), tile);
+				}
+				catch (IOException e)
+				{
+					errorDisplay.printError("Could not load elevation tile " + tileFile.getAbsolutePath() + ": " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Grabs the height of the ground at the latitude and longitude coordinates from the local tiles
+	 *
+	 * @param latitude The latitude to test
+	 * @param longitude The longitude to test
+	 * @return The height of the ground at the location, or null if no local tile covers the location
+	 */
+	public Double getGroundElevation(double latitude, double longitude)
+	{
+		ElevationTile tile = this.tiles.get(tileKey((int) Math.floor(latitude), (int) Math.floor(longitude)));
+		return tile != null ? tile.getElevation(latitude, longitude) : null;
+	}
+
+	/**
+	 * @return The number of tiles currently loaded
+	 */
+	public Integer getTileCount()
+	{
+		return this.tiles.size();
+	}
+
+	/**
+	 * Creates a unique key for a tile given its south west corner
+	 *
+	 * @param southLatitude The south edge of the tile
+	 * @param westLongitude The west edge of the tile
+	 * @return A key unique to that tile
+	 */
+	private static Long tileKey(int southLatitude, int westLongitude)
+	{
+		return ((long) southLatitude << 32) | (westLongitude & 0xFFFFFFFFL);
+	}
+}
@@ -193,6 +193,16 @@ public abstract class DataContainer implements HierarchyData<DataContainer>
 		return this.altitude.getValue();
 	}
 
+	/**
+	 * Sets the altitude above ground given the ground elevation below where this was taken
+	 *
+	 * @param groundElevation The height of the ground at the position this was taken
+	 */
+	public void computeAltitude(Double groundElevation)
+	{
+		this.altitude.setValue(this.positionTaken.getValue().getElevation() - groundElevation);
+	}
+
 	public DoubleProperty altitudeProperty()
 	{
 		return this.altitude;
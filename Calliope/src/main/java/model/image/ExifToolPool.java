@@ -0,0 +1,216 @@
+package model.image;
+
+import com.thebuzzmedia.exiftool.ExifTool;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Class used to manage a pool of stay_open exiftool processes so that metadata can be read from multiple threads at once.
+ * One off exiftool processes, such as batch reads, also take a slot in the pool while they run so that the total number of
+ * exiftool processes never exceeds the pool size
+ */
+public class ExifToolPool
+{
+	// Factory used to create new exiftool processes
+	private final Supplier<ExifTool> exifToolFactory;
+	// The maximum number of exiftool processes that may exist at once
+	private final Integer poolSize;
+	// Processes that are not currently checked out
+	private final BlockingQueue<ExifTool> idleProcesses = new LinkedBlockingQueue<>();
+	// The number of processes currently alive, checked out or not
+	private final AtomicInteger processCount = new AtomicInteger(0);
+	// The number of one off processes currently running outside of the pool
+	private final AtomicInteger oneOffCount = new AtomicInteger(0);
+	// One permit per slot in the pool, held by each checked out process and each running one off process
+	private final Semaphore slotPermits;
+	// The number of processes that were restarted after crashing
+	private final AtomicInteger restartCount = new AtomicInteger(0);
+	// Flag set once the pool has been shut down
+	private volatile Boolean shutdown = false;
+
+	/**
+	 * Constructor just stores the factory and the pool size, processes are started lazily
+	 *
+	 * @param exifToolFactory The factory used to create new exiftool processes
+	 * @param poolSize The maximum number of exiftool processes to run at once
+	 */
+	public ExifToolPool(Supplier<ExifTool> exifToolFactory, Integer poolSize)
+	{
+		this.exifToolFactory = exifToolFactory;
+		this.poolSize = Math.max(poolSize, 1);
+		this.slotPermits = new Semaphore(this.poolSize);
+	}
+
+	/**
+	 * Checks out an exiftool process from the pool. If no process is idle and the pool is not full a new process is created,
+	 * otherwise this waits for a process to be returned. Every process checked out must be returned with checkin()
+	 *
+	 * @return An exiftool process that only the caller may use until it is returned
+	 * @throws IOException If the calling thread was interrupted while waiting for a process
+	 */
+	public ExifTool checkout() throws IOException
+	{
+		// Wait for a free slot, once we have one there is either an idle process or room to create one
+		this.acquireSlot();
+		ExifTool exifTool;
+		synchronized (this)
+		{
+			exifTool = this.idleProcesses.poll();
+			if (exifTool == null)
+				this.processCount.incrementAndGet();
+		}
+
+		// If no process was idle, create a new one
+		if (exifTool == null)
+		{
+			try
+			{
+				exifTool = this.exifToolFactory.get();
+			}
+			catch (RuntimeException e)
+			{
+				this.processCount.decrementAndGet();
+				this.slotPermits.release();
+				throw e;
+			}
+		}
+		return exifTool;
+	}
+
+	/**
+	 * Returns an exiftool process to the pool. If the process failed or is no longer running it is closed and discarded so
+	 * that the next checkout will start a fresh process in its place
+	 *
+	 * @param exifTool The process to return
+	 * @param succeeded True if the last operation performed with the process succeeded
+	 */
+	public void checkin(ExifTool exifTool, Boolean succeeded)
+	{
+		// If the pool was shut down while this process was checked out just close it
+		if (this.shutdown)
+		{
+			this.close(exifTool);
+			this.processCount.decrementAndGet();
+		}
+		// Health check, a process that threw an error or died gets restarted
+		else if (succeeded && exifTool.isRunning())
+		{
+			synchronized (this)
+			{
+				this.idleProcesses.offer(exifTool);
+			}
+		}
+		else
+		{
+			this.close(exifTool);
+			this.restartCount.incrementAndGet();
+			this.processCount.decrementAndGet();
+		}
+		this.slotPermits.release();
+	}
+
+	/**
+	 * Takes a slot in the pool for an exiftool process started outside of the pool, waiting for a slot if none are free. If
+	 * every slot is taken by a live process an idle one is closed to make room. Every slot taken must be returned with
+	 * endOneOff()
+	 *
+	 * @throws IOException If the calling thread was interrupted while waiting for a slot
+	 */
+	public void beginOneOff() throws IOException
+	{
+		this.acquireSlot();
+		ExifTool toClose = null;
+		synchronized (this)
+		{
+			// Every slot we don't hold a permit for is either free or holds an idle process, so one is idle if we are full
+			if (this.processCount.get() + this.oneOffCount.incrementAndGet() > this.poolSize)
+			{
+				toClose = this.idleProcesses.poll();
+				if (toClose != null)
+					this.processCount.decrementAndGet();
+			}
+		}
+		if (toClose != null)
+			this.close(toClose);
+	}
+
+	/**
+	 * Returns a slot taken with beginOneOff() once the exiftool process started outside of the pool has finished
+	 */
+	public void endOneOff()
+	{
+		this.oneOffCount.decrementAndGet();
+		this.slotPermits.release();
+	}
+
+	/**
+	 * Waits for a free slot in the pool
+	 *
+	 * @throws IOException If the calling thread was interrupted while waiting
+	 */
+	private void acquireSlot() throws IOException
+	{
+		try
+		{
+			this.slotPermits.acquire();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for an exiftool process");
+		}
+	}
+
+	/**
+	 * Closes all idle exiftool processes. Processes checked out at this time are closed when they are returned
+	 */
+	public void shutdown()
+	{
+		this.shutdown = true;
+		List<ExifTool> toClose = new ArrayList<>();
+		this.idleProcesses.drainTo(toClose);
+		toClose.forEach(this::close);
+		this.processCount.addAndGet(-toClose.size());
+	}
+
+	/**
+	 * Closes an exiftool process ignoring any errors
+	 *
+	 * @param exifTool The process to close
+	 */
+	private void close(ExifTool exifTool)
+	{
+		try
+		{
+			exifTool.close();
+		}
+		catch (Exception ignored) {}
+	}
+
+	///
+	/// Getters
+	///
+
+	public Integer getPoolSize()
+	{
+		return this.poolSize;
+	}
+
+	public Integer getProcessCount()
+	{
+		return this.processCount.get();
+	}
+
+	public Integer getRestartCount()
+	{
+		return this.restartCount.get();
+	}
+}
@@ -0,0 +1,514 @@
+package model.image;
+
+import com.thebuzzmedia.exiftool.Tag;
+import com.thebuzzmedia.exiftool.core.StandardTag;
+import model.util.ErrorDisplay;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A persistent cache of file metadata stored in a single append-only file. Entries are keyed by absolute path and are only
+ * valid while the file's size and last modified time are unchanged. Newer records for a path replace older ones, and the
+ * file is compacted once it grows past its size limit
+ */
+public class MetadataCache
+{
+	// Record types written to the cache file
+	private static final byte RECORD_ENTRY = 1;
+	private static final byte RECORD_TOMBSTONE = 2;
+	// The size of a record header, 1 byte type and 4 bytes payload length
+	private static final Integer HEADER_SIZE = 5;
+	// Prefixes used to store which tag enum a tag came from
+	private static final String STANDARD_TAG_PREFIX = "S:";
+	private static final String CUSTOM_TAG_PREFIX = "C:";
+
+	// The file the cache is stored in
+	private final File cacheFile;
+	// The maximum size of the cache file in bytes before it gets compacted
+	private final Long maxBytes;
+	// The error display used to print out errors
+	private final ErrorDisplay errorDisplay;
+	// A map of absolute path -> location of that path's latest record in the cache file. Lookups don't lock, but every change
+	// is made while holding this cache's lock
+	private final Map<String, IndexEntry> index = new ConcurrentHashMap<>();
+	// The open cache file, or null if it could not be opened. Only used while holding this cache's lock
+	private RandomAccessFile cacheAccess;
+	// The number of bytes in the cache file used by records that are still live
+	private Long liveBytes = 0L;
+
+	// Counters used to tune the cache
+	private final AtomicLong hits = new AtomicLong(0);
+	private final AtomicLong misses = new AtomicLong(0);
+
+	/**
+	 * Constructor opens the cache file and indexes every record in it
+	 *
+	 * @param cacheFile The file to store the cache in
+	 * @param maxBytes The maximum size of the cache file in bytes
+	 * @param errorDisplay The error display used to print out errors
+	 */
+	public MetadataCache(File cacheFile, Long maxBytes, ErrorDisplay errorDisplay)
+	{
+		this.cacheFile = cacheFile;
+		this.maxBytes = maxBytes;
+		this.errorDisplay = errorDisplay;
+		try
+		{
+			this.cacheAccess = new RandomAccessFile(cacheFile, "rw");
+			this.loadIndex();
+		}
+		catch (IOException e)
+		{
+			errorDisplay.printError("Could not open the metadata cache " + cacheFile.getAbsolutePath() + ", metadata will not be cached!\n" + ExceptionUtils.getStackTrace(e));
+			this.cacheAccess = null;
+		}
+	}
+
+	/**
+	 * Returns the cached metadata of a file if the file has not changed since it was cached. Only reading the record from the
+	 * cache file holds the lock, so many threads can check their files at once
+	 *
+	 * @param file The file to look up
+	 * @return The cached metadata or null if the file is not cached or has changed
+	 */
+	public CachedMetadata get(File file)
+	{
+		String path = file.getAbsolutePath();
+		IndexEntry indexEntry = this.index.get(path);
+		if (indexEntry != null)
+		{
+			try
+			{
+				// Make sure the file is the same as it was when we cached it
+				BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+				if (attributes.size() == indexEntry.fileSize && attributes.lastModifiedTime().toMillis() == indexEntry.lastModified)
+				{
+					byte[] payload = this.readPayload(path, indexEntry);
+					if (payload != null)
+					{
+						CachedMetadata cachedMetadata = parseEntry(payload);
+						this.hits.incrementAndGet();
+						return cachedMetadata;
+					}
+				}
+			}
+			catch (IOException e)
+			{
+				this.errorDisplay.printError("Could not read cached metadata for " + path + ": " + e.getMessage());
+			}
+		}
+		this.misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Stores the metadata of a file in the cache, replacing any older entry for the same file
+	 *
+	 * @param file The file the metadata was read from
+	 * @param metadata The file's metadata as returned by the metadata manager
+	 * @param groundElevation The ground elevation under the position the file was taken at
+	 */
+	public synchronized void put(File file, Map<Tag, String> metadata, Double groundElevation)
+	{
+		if (this.cacheAccess == null)
+			return;
+
+		try
+		{
+			BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+			// Write out the record payload
+			ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+			DataOutputStream payload = new DataOutputStream(payloadBytes);
+			writeString(payload, file.getAbsolutePath());
+			payload.writeLong(attributes.size());
+			payload.writeLong(attributes.lastModifiedTime().toMillis());
+			payload.writeDouble(groundElevation);
+			List<Map.Entry<String, String>> tags = new ArrayList<>();
+			for (Map.Entry<Tag, String> entry : metadata.entrySet())
+			{
+				String tagID = tagToID(entry.getKey());
+				if (tagID != null)
+					tags.add(new AbstractMap.SimpleEntry<>(tagID, entry.getValue()));
+			}
+			payload.writeInt(tags.size());
+			for (Map.Entry<String, String> tag : tags)
+			{
+				writeString(payload, tag.getKey());
+				writeString(payload, tag.getValue());
+			}
+
+			// Append the record and point the index at it
+			long offset = this.appendRecord(RECORD_ENTRY, payloadBytes.toByteArray());
+			IndexEntry oldEntry = this.index.put(file.getAbsolutePath(), new IndexEntry(offset, payloadBytes.size(), attributes.size(), attributes.lastModifiedTime().toMillis()));
+			if (oldEntry != null)
+				this.liveBytes = this.liveBytes - oldEntry.recordSize();
+			this.liveBytes = this.liveBytes + HEADER_SIZE + payloadBytes.size();
+
+			// If the file is too large, compact it
+			if (this.cacheAccess.length() > this.maxBytes)
+				this.compact();
+		}
+		catch (IOException e)
+		{
+			this.errorDisplay.printError("Could not cache metadata for " + file.getAbsolutePath() + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Removes a file from the cache
+	 *
+	 * @param file The file to remove
+	 */
+	public synchronized void invalidate(File file)
+	{
+		if (this.cacheAccess == null)
+			return;
+
+		IndexEntry oldEntry = this.index.remove(file.getAbsolutePath());
+		if (oldEntry != null)
+		{
+			this.liveBytes = this.liveBytes - oldEntry.recordSize();
+			try
+			{
+				// Write a tombstone so the removal persists
+				ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+				writeString(new DataOutputStream(payloadBytes), file.getAbsolutePath());
+				this.appendRecord(RECORD_TOMBSTONE, payloadBytes.toByteArray());
+			}
+			catch (IOException e)
+			{
+				this.errorDisplay.printError("Could not remove " + file.getAbsolutePath() + " from the metadata cache: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Rewrites the cache file with only the live records. If the live records alone are over the size limit the oldest
+	 * records are dropped until the file is at 3/4 of the size limit
+	 */
+	public synchronized void compact()
+	{
+		if (this.cacheAccess == null)
+			return;
+
+		// Sort live records oldest to newest
+		List<Map.Entry<String, IndexEntry>> liveEntries = new ArrayList<>(this.index.entrySet());
+		liveEntries.sort(Comparator.comparingLong(entry -> entry.getValue().offset));
+		// Drop the oldest records until we are under budget
+		Long budget = this.maxBytes * 3 / 4;
+		Integer firstKept = 0;
+		Long keptBytes = this.liveBytes;
+		while (keptBytes > budget && firstKept < liveEntries.size())
+		{
+			keptBytes = keptBytes - liveEntries.get(firstKept).getValue().recordSize();
+			firstKept++;
+		}
+
+		File compactFile = new File(this.cacheFile.getAbsolutePath() + ".compact");
+		Map<String, IndexEntry> newIndex = new HashMap<>();
+		try
+		{
+			// Copy every kept record into a new file
+			try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(compactFile))))
+			{
+				long offset = 0;
+				for (Map.Entry<String, IndexEntry> liveEntry : liveEntries.subList(firstKept, liveEntries.size()))
+				{
+					IndexEntry indexEntry = liveEntry.getValue();
+					byte[] payload = new byte[indexEntry.payloadSize];
+					this.cacheAccess.seek(indexEntry.offset + HEADER_SIZE);
+					this.cacheAccess.readFully(payload);
+					outputStream.writeByte(RECORD_ENTRY);
+					outputStream.writeInt(payload.length);
+					outputStream.write(payload);
+					newIndex.put(liveEntry.getKey(), new IndexEntry(offset, indexEntry.payloadSize, indexEntry.fileSize, indexEntry.lastModified));
+					offset = offset + indexEntry.recordSize();
+				}
+			}
+			// Swap the new file in for the old one, the handle is closed first since the file can't be replaced while open on Windows
+			this.cacheAccess.close();
+			Files.move(compactFile.toPath(), this.cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			// Update the index in place so lookups running without the lock never see it empty
+			this.index.keySet().retainAll(newIndex.keySet());
+			this.index.putAll(newIndex);
+			this.liveBytes = keptBytes;
+		}
+		catch (IOException e)
+		{
+			this.errorDisplay.printError("Could not compact the metadata cache!\n" + ExceptionUtils.getStackTrace(e));
+			compactFile.delete();
+		}
+
+		// Re-open the cache file, closing the old handle first in case compaction failed before it was closed
+		try
+		{
+			this.cacheAccess.close();
+			this.cacheAccess = new RandomAccessFile(this.cacheFile, "rw");
+		}
+		catch (IOException e)
+		{
+			this.errorDisplay.printError("Could not re-open the metadata cache, metadata will not be cached!\n" + ExceptionUtils.getStackTrace(e));
+			this.cacheAccess = null;
+		}
+	}
+
+	/**
+	 * Closes the cache file
+	 */
+	public synchronized void shutdown()
+	{
+		this.errorDisplay.printDebug("Metadata cache: " + this.hits.get() + " hits, " + this.misses.get() + " misses, " + this.index.size() + " entries");
+		if (this.cacheAccess != null)
+		{
+			try
+			{
+				this.cacheAccess.close();
+			}
+			catch (IOException ignored) {}
+			this.cacheAccess = null;
+		}
+	}
+
+	/**
+	 * Reads every record in the cache file to build the index. If the file ends with a partial record (for example if the
+	 * program was killed mid-write) the partial record is cut off
+	 *
+	 * @throws IOException If the file could not be read
+	 */
+	private void loadIndex() throws IOException
+	{
+		long offset = 0;
+		long fileLength = this.cacheAccess.length();
+		try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(this.cacheFile))))
+		{
+			while (offset + HEADER_SIZE <= fileLength)
+			{
+				byte recordType = inputStream.readByte();
+				int payloadSize = inputStream.readInt();
+				if ((recordType != RECORD_ENTRY && recordType != RECORD_TOMBSTONE) || payloadSize < 0 || offset + HEADER_SIZE + payloadSize > fileLength)
+					break;
+				byte[] payload = new byte[payloadSize];
+				inputStream.readFully(payload);
+				DataInputStream payloadStream = new DataInputStream(new ByteArrayInputStream(payload));
+				String path = readString(payloadStream);
+				IndexEntry oldEntry;
+				if (recordType == RECORD_ENTRY)
+				{
+					long fileSize = payloadStream.readLong();
+					long lastModified = payloadStream.readLong();
+					oldEntry = this.index.put(path, new IndexEntry(offset, payloadSize, fileSize, lastModified));
+					this.liveBytes = this.liveBytes + HEADER_SIZE + payloadSize;
+				}
+				else
+				{
+					oldEntry = this.index.remove(path);
+				}
+				if (oldEntry != null)
+					this.liveBytes = this.liveBytes - oldEntry.recordSize();
+				offset = offset + HEADER_SIZE + payloadSize;
+			}
+		}
+		// Cut off anything after the last complete record
+		if (offset < this.cacheAccess.length())
+			this.cacheAccess.setLength(offset);
+	}
+
+	/**
+	 * Appends a record to the end of the cache file
+	 *
+	 * @param recordType The type of the record
+	 * @param payload The record's payload
+	 * @return The offset the record was written at
+	 * @throws IOException If the record could not be written
+	 */
+	private long appendRecord(byte recordType, byte[] payload) throws IOException
+	{
+		long offset = this.cacheAccess.length();
+		ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(HEADER_SIZE + payload.length);
+		DataOutputStream record = new DataOutputStream(recordBytes);
+		record.writeByte(recordType);
+		record.writeInt(payload.length);
+		record.write(payload);
+		this.cacheAccess.seek(offset);
+		this.cacheAccess.write(recordBytes.toByteArray());
+		return offset;
+	}
+
+	/**
+	 * Reads the payload of the entry record at the index entry's offset
+	 *
+	 * @param path The path the index entry was looked up with
+	 * @param indexEntry The index entry pointing at the record
+	 * @return The record's payload, or null if the entry was replaced or moved by compaction since it was looked up
+	 * @throws IOException If the record could not be read
+	 */
+	private synchronized byte[] readPayload(String path, IndexEntry indexEntry) throws IOException
+	{
+		if (this.cacheAccess == null || this.index.get(path) != indexEntry)
+			return null;
+		byte[] payload = new byte[indexEntry.payloadSize];
+		this.cacheAccess.seek(indexEntry.offset + HEADER_SIZE);
+		this.cacheAccess.readFully(payload);
+		return payload;
+	}
+
+	/**
+	 * Parses the payload of an entry record
+	 *
+	 * @param payload The record's payload
+	 * @return The cached metadata stored in the record
+	 * @throws IOException If the payload is malformed
+	 */
+	private static CachedMetadata parseEntry(byte[] payload) throws IOException
+	{
+		DataInputStream payloadStream = new DataInputStream(new ByteArrayInputStream(payload));
+		// Skip the path, size, and last modified time since the index already has them
+		readString(payloadStream);
+		payloadStream.readLong();
+		payloadStream.readLong();
+		Double groundElevation = payloadStream.readDouble();
+		Integer tagCount = payloadStream.readInt();
+		Map<Tag, String> metadata = new Hashtable<>();
+		for (Integer i = 0; i < tagCount; i++)
+		{
+			Tag tag = idToTag(readString(payloadStream));
+			String value = readString(payloadStream);
+			if (tag != null)
+				metadata.put(tag, value);
+		}
+		return new CachedMetadata(metadata, groundElevation);
+	}
+
+	/**
+	 * Converts a tag into an ID that identifies which enum the tag came from, since tag names are not unique
+	 *
+	 * @param tag The tag to convert
+	 * @return The tag's ID or null if the tag can't be stored
+	 */
+	private static String tagToID(Tag tag)
+	{
+		if (tag instanceof StandardTag)
+			return STANDARD_TAG_PREFIX + ((StandardTag) tag).name();
+		else if (tag instanceof MetadataManager.CustomTags)
+			return CUSTOM_TAG_PREFIX + ((MetadataManager.CustomTags) tag).name();
+		return null;
+	}
+
+	/**
+	 * Converts an ID created by tagToID back into a tag
+	 *
+	 * @param tagID The ID to convert
+	 * @return The tag or null if the tag no longer exists
+	 */
+	private static Tag idToTag(String tagID)
+	{
+		try
+		{
+			if (tagID.startsWith(STANDARD_TAG_PREFIX))
+				return StandardTag.valueOf(tagID.substring(STANDARD_TAG_PREFIX.length()));
+			else if (tagID.startsWith(CUSTOM_TAG_PREFIX))
+				return MetadataManager.CustomTags.valueOf(tagID.substring(CUSTOM_TAG_PREFIX.length()));
+		}
+		catch (IllegalArgumentException ignored) {}
+		return null;
+	}
+
+	/**
+	 * Writes a string of any length as UTF-8, writeUTF is limited to 64KB which ALL_METADATA can exceed
+	 */
+	private static void writeString(DataOutputStream outputStream, String string) throws IOException
+	{
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		outputStream.writeInt(bytes.length);
+		outputStream.write(bytes);
+	}
+
+	/**
+	 * Reads a string written by writeString
+	 */
+	private static String readString(DataInputStream inputStream) throws IOException
+	{
+		byte[] bytes = new byte[inputStream.readInt()];
+		inputStream.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	///
+	/// Getters
+	///
+
+	public Long getHits()
+	{
+		return this.hits.get();
+	}
+
+	public Long getMisses()
+	{
+		return this.misses.get();
+	}
+
+	/**
+	 * The location of a path's latest record in the cache file
+	 */
+	private static class IndexEntry
+	{
+		// The offset of the record in the cache file
+		private final long offset;
+		// The size of the record's payload
+		private final int payloadSize;
+		// The size and last modified time of the file when it was cached
+		private final long fileSize;
+		private final long lastModified;
+
+		IndexEntry(long offset, int payloadSize, long fileSize, long lastModified)
+		{
+			this.offset = offset;
+			this.payloadSize = payloadSize;
+			this.fileSize = fileSize;
+			this.lastModified = lastModified;
+		}
+
+		/**
+		 * @return The size of the whole record including its header
+		 */
+		long recordSize()
+		{
+			return HEADER_SIZE + this.payloadSize;
+		}
+	}
+
+	/**
+	 * The metadata of a file that was stored in the cache
+	 */
+	public static class CachedMetadata
+	{
+		// The file's metadata as returned by the metadata manager
+		private final Map<Tag, String> metadata;
+		// The ground elevation under the position the file was taken at
+		private final Double groundElevation;
+
+		CachedMetadata(Map<Tag, String> metadata, Double groundElevation)
+		{
+			this.metadata = metadata;
+			this.groundElevation = groundElevation;
+		}
+
+		public Map<Tag, String> getMetadata()
+		{
+			return this.metadata;
+		}
+
+		public Double getGroundElevation()
+		{
+			return this.groundElevation;
+		}
+	}
+}
@@ -4,31 +4,51 @@ import com.thebuzzmedia.exiftool.ExifTool;
 import com.thebuzzmedia.exiftool.ExifToolBuilder;
 import com.thebuzzmedia.exiftool.Tag;
 import com.thebuzzmedia.exiftool.core.StandardTag;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 import javafx.beans.property.ReadOnlyBooleanProperty;
 import javafx.beans.property.ReadOnlyBooleanWrapper;
+import model.CalliopeData;
 import model.util.ErrorDisplay;
 import org.apache.commons.compress.utils.IOUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.lang3.SystemUtils;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
 
 /**
  * Class containing utils for writing & reading metadata
  */
 public class MetadataManager
 {
-	// A reference to the EXIF tool object used to read and write metadata
-	private ExifTool exifTool;
+	// The number of exiftool processes we run at once, one per core
+	private static final Integer EXIFTOOL_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
+	// The maximum number of files sent to exiftool in a single batch
+	public static final Integer BATCH_SIZE = 250;
+
+	// The list of tags we store in the typed metadata map, our standard tags and then our custom tags
+	private static final List<Tag> KNOWN_TAGS = new ArrayList<>();
+	static
+	{
+		KNOWN_TAGS.addAll(Arrays.asList(StandardTag.values()));
+		KNOWN_TAGS.addAll(Arrays.asList(CustomTags.values()));
+	}
+
+	// A pool of EXIF tool processes used to read and write metadata
+	private ExifToolPool exifToolPool;
+	// The path to the exiftool executable, used when running batches of files
+	private String exifToolPath;
 	// Flag that is used in testing if we have found exiftool or not
 	private final ReadOnlyBooleanWrapper exifToolFound = new ReadOnlyBooleanWrapper(false);
 
 	/**
-	 * Metadata Manager constructor just starts the exif tool process
+	 * Metadata Manager constructor just sets up the exif tool process pool
 	 */
 	public MetadataManager(ErrorDisplay errorDisplay)
 	{
@@ -58,14 +78,16 @@ public class MetadataManager
 					errorDisplay.notify("Error copying exiftool from jar to temporary directory!\n" + ExceptionUtils.getStackTrace(e));
 				}
 			}
-			// Open a connection to the exiftool file
-			this.exifTool = new ExifToolBuilder().withPath(exiftoolFile).enableStayOpen().build();
+			// Open a pool of connections to the exiftool file
+			this.exifToolPool = new ExifToolPool(() -> new ExifToolBuilder().withPath(exiftoolFile).enableStayOpen().build(), EXIFTOOL_POOL_SIZE);
+			this.exifToolPath = exiftoolFile.getAbsolutePath();
 			this.exifToolFound.setValue(true);
 		}
 		// Otherwise we test the path, if exiftool is in our path use that one
 		else if (System.getProperty("exiftool.path", "exiftool") != null)
 		{
-			this.exifTool = new ExifToolBuilder().enableStayOpen().build();
+			this.exifToolPool = new ExifToolPool(() -> new ExifToolBuilder().enableStayOpen().build(), EXIFTOOL_POOL_SIZE);
+			this.exifToolPath = System.getProperty("exiftool.path", "exiftool");
 			this.exifToolFound.setValue(true);
 		}
 	}
@@ -186,7 +208,8 @@ public class MetadataManager
 	}
 
 	/**
-	 * Function used to read a file's metadata
+	 * Function used to read a file's metadata. All tags are read in one exiftool call and the typed tags as well as the
+	 * ALL_METADATA string are both derived from that single result
 	 *
 	 * @param imageFile The file to read
 	 * @return The image's metadata as a map
@@ -194,24 +217,199 @@ public class MetadataManager
 	 */
 	public Map<Tag, String> readImageMetadata(File imageFile) throws IOException
 	{
-		// This is a list of our standard tags
-		List<Tag> tags = new ArrayList<>(Arrays.asList(StandardTag.values()));
-		// Add our custom tags
-		tags.addAll(Arrays.asList(CustomTags.values()));
-		// Ask exiftool to get our image's metadata
-		// The map returned by this call is unmodifiable. Dunno why.
-		Map<Tag, String> unmodifiableMap = this.exifTool.getImageMeta(imageFile, tags);
+		// Grab an exiftool process from the pool, we have sole access to it until we return it
+		ExifTool exifTool = this.exifToolPool.checkout();
+		// Track if the process worked correctly so that crashed processes can be restarted
+		Boolean succeeded = false;
+		try
+		{
+			// Ask exiftool to get all of our image's metadata in a single pass
+			Map<Tag, String> allTags = exifTool.getImageMeta(imageFile);
 
-		// Add a special tag to retval which contains all metadata found in the image.
-		Tag allMeta = CustomTags.ALL_METADATA;
-		String allData = this.exifTool.getImageMeta(imageFile).toString();
+			// Index every tag that exiftool returned by name
+			Map<String, String> tagValuesByName = new LinkedHashMap<>();
+			for (Map.Entry<Tag, String> entry : allTags.entrySet())
+				tagValuesByName.put(entry.getKey().getName(), entry.getValue());
+
+			Map<Tag, String> retval = this.toMetadataMap(tagValuesByName);
+			succeeded = true;
+			return retval;
+		}
+		finally
+		{
+			// Return the process to the pool
+			this.exifToolPool.checkin(exifTool, succeeded);
+		}
+	}
+
+	/**
+	 * Function used to read the metadata of many files at once. Files are sent to exiftool in batches of BATCH_SIZE so that
+	 * hundreds of files are processed per exiftool invocation, and each file's metadata is handed to the callback as soon as
+	 * it is parsed. Files that exiftool could not read are not passed to the callback
+	 *
+	 * @param imageFiles The files to read
+	 * @param onMetadataRead Callback that is given each file and its metadata as a map, same as readImageMetadata(File)
+	 * @throws IOException If exiftool could not be run, throw an exception
+	 */
+	public void readImageMetadata(List<File> imageFiles, BiConsumer<File, Map<Tag, String>> onMetadataRead) throws IOException
+	{
+		for (Integer batchStart = 0; batchStart < imageFiles.size(); batchStart = batchStart + BATCH_SIZE)
+			this.readImageMetadataBatch(imageFiles.subList(batchStart, Math.min(batchStart + BATCH_SIZE, imageFiles.size())), onMetadataRead);
+	}
+
+	/**
+	 * Function used to read the metadata of many files at once, see readImageMetadata(List, BiConsumer)
+	 *
+	 * @param imageFiles The files to read
+	 * @return A map of file to that file's metadata map. Files that could not be read are not present
+	 * @throws IOException If exiftool could not be run, throw an exception
+	 */
+	public Map<File, Map<Tag, String>> readImageMetadata(List<File> imageFiles) throws IOException
+	{
+		Map<File, Map<Tag, String>> toReturn = new HashMap<>();
+		this.readImageMetadata(imageFiles, toReturn::put);
+		return toReturn;
+	}
+
+	/**
+	 * Reads the metadata of a single batch of files with one exiftool process using JSON output
+	 *
+	 * @param imageFiles The files in the batch
+	 * @param onMetadataRead Callback that is given each file and its metadata as a map
+	 * @throws IOException If exiftool could not be run, throw an exception
+	 */
+	private void readImageMetadataBatch(List<File> imageFiles, BiConsumer<File, Map<Tag, String>> onMetadataRead) throws IOException
+	{
+		// Map absolute path to file so we can match exiftool's output back to our input
+		Map<String, File> pathToFile = new HashMap<>();
+		for (File imageFile : imageFiles)
+			pathToFile.put(imageFile.getAbsolutePath(), imageFile);
+
+		// Write the list of files into an argument file, this avoids command line length limits
+		File argFile = CalliopeData.getInstance().getTempDirectoryManager().createTempFile("exiftoolArgs.txt");
+		File errorFile = CalliopeData.getInstance().getTempDirectoryManager().createTempFile("exiftoolErrors.txt");
+		Files.write(argFile.toPath(), pathToFile.keySet(), StandardCharsets.UTF_8);
+
+		// Batch processes take a slot in the exiftool pool so that we never run more exiftool processes than the pool allows
+		try
+		{
+			this.exifToolPool.beginOneOff();
+		}
+		catch (IOException e)
+		{
+			argFile.delete();
+			errorFile.delete();
+			throw e;
+		}
 
-		// Create a modifiable copy of what exifTool returned, and add a string containing all the metadata to it.
+		Process process = null;
+		try
+		{
+			// Same options as our single file reads: numeric values and short tag names, but as JSON
+			process = new ProcessBuilder(this.exifToolPath, "-json", "-n", "-S", "-charset", "filename=utf8", "-@", argFile.getAbsolutePath())
+					.redirectError(errorFile)
+					.start();
+			// Stream the JSON array of results, handing each file off as soon as it is parsed
+			try (BufferedReader outputReader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)))
+			{
+				// If exiftool could not read any files it prints nothing at all
+				outputReader.mark(1);
+				if (outputReader.read() != -1)
+				{
+					outputReader.reset();
+					JsonReader jsonReader = new JsonReader(outputReader);
+					jsonReader.beginArray();
+					while (jsonReader.hasNext())
+					{
+						Map<String, String> tagValuesByName = this.readJSONTags(jsonReader);
+						// Exiftool always returns the file path under SourceFile
+						File imageFile = pathToFile.get(new File(tagValuesByName.getOrDefault("SourceFile", "")).getAbsolutePath());
+						if (imageFile != null)
+							onMetadataRead.accept(imageFile, this.toMetadataMap(tagValuesByName));
+					}
+					jsonReader.endArray();
+				}
+			}
+			Integer exitCode = process.waitFor();
+
+			// Exiftool exits with an error if any file could not be read, so report what it printed. Files it did read were
+			// already handed off, and the caller reads anything left over on its own
+			String errors = new String(Files.readAllBytes(errorFile.toPath()), StandardCharsets.UTF_8).trim();
+			if (exitCode != 0 || !errors.isEmpty())
+				CalliopeData.getInstance().getErrorDisplay().printError("Exiftool exited with code " + exitCode + " while reading a batch of " + imageFiles.size() + " files!\n" + errors);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for exiftool to finish");
+		}
+		finally
+		{
+			if (process != null && process.isAlive())
+				process.destroy();
+			this.exifToolPool.endOneOff();
+			argFile.delete();
+			errorFile.delete();
+		}
+	}
+
+	/**
+	 * Reads a single JSON object of tag name -> value from exiftool's JSON output
+	 *
+	 * @param jsonReader The reader positioned at the start of the object
+	 * @return A map of tag name to tag value in the order exiftool returned them
+	 * @throws IOException If the JSON is malformed
+	 */
+	private Map<String, String> readJSONTags(JsonReader jsonReader) throws IOException
+	{
+		Map<String, String> tagValuesByName = new LinkedHashMap<>();
+		jsonReader.beginObject();
+		while (jsonReader.hasNext())
+		{
+			String name = jsonReader.nextName();
+			switch (jsonReader.peek())
+			{
+				// Numbers and strings are both just read as a string
+				case STRING:
+				case NUMBER:
+					tagValuesByName.put(name, jsonReader.nextString());
+					break;
+				case BOOLEAN:
+					tagValuesByName.put(name, Boolean.toString(jsonReader.nextBoolean()));
+					break;
+				case NULL:
+					jsonReader.nextNull();
+					break;
+				// Lists and structures are stored as their JSON representation
+				default:
+					tagValuesByName.put(name, JsonParser.parseReader(jsonReader).toString());
+					break;
+			}
+		}
+		jsonReader.endObject();
+		return tagValuesByName;
+	}
+
+	/**
+	 * Given every tag exiftool returned for a file by name, this picks out our standard and custom tags into a typed map and
+	 * adds the ALL_METADATA tag containing all tags found in the file
+	 *
+	 * @param tagValuesByName A map of tag name -> tag value
+	 * @return The file's metadata as a map
+	 */
+	private Map<Tag, String> toMetadataMap(Map<String, String> tagValuesByName)
+	{
 		// TODO: Better choice than Hashtable?
 		Map<Tag, String> retval = new Hashtable<>();
-		retval.putAll(unmodifiableMap);
-		retval.put(allMeta, allData);
+		for (Tag tag : KNOWN_TAGS)
+		{
+			String value = tagValuesByName.get(tag.getName());
+			if (value != null)
+				retval.put(tag, value);
+		}
 
+		// Add a special tag to retval which contains all metadata found in the image.
+		retval.put(CustomTags.ALL_METADATA, tagValuesByName.entrySet().stream().filter(entry -> !entry.getKey().equals("SourceFile")).map(Map.Entry::toString).collect(Collectors.joining(", ", "{", "}")));
 		return retval;
 	}
 
@@ -232,18 +430,12 @@ public class MetadataManager
 	}
 
 	/**
-	 * Called to stop the ExifTool process
+	 * Called to stop the ExifTool processes
 	 */
 	public void shutdown()
 	{
-		if (this.exifTool != null)
-		{
-			// Close the exiftool process
-			try
-			{
-				this.exifTool.close();
-			}
-			catch (Exception ignored) {}
-		}
+		// Close the exiftool processes
+		if (this.exifToolPool != null)
+			this.exifToolPool.shutdown();
 	}
 }
@@ -60,9 +60,25 @@ public class VideoEntry extends DataContainer
 	{
 		try
 		{
-			// Read the metadata off of the video
-			Map<Tag, String> imageMetadataMap = CalliopeData.getInstance().getMetadataManager().readImageMetadata(this.getFile());
-			this.readFileMetadataFromMap(imageMetadataMap);
+			// If the file hasn't changed since we last read it, use the cached metadata
+			MetadataCache metadataCache = CalliopeData.getInstance().getMetadataCache();
+			MetadataCache.CachedMetadata cachedMetadata = metadataCache.get(this.getFile());
+			if (cachedMetadata != null)
+			{
+				this.readFileMetadataFromMap(cachedMetadata.getMetadata(), false);
+				this.computeAltitude(cachedMetadata.getGroundElevation());
+			}
+			else
+			{
+				// Read the metadata off of the video
+				Map<Tag, String> imageMetadataMap = CalliopeData.getInstance().getMetadataManager().readImageMetadata(this.getFile());
+				this.readFileMetadataFromMap(imageMetadataMap, false);
+				Double groundElevation = CalliopeData.getInstance().getElevationData().getGroundElevation(this.getPositionTaken().getLatitude(), this.getPositionTaken().getLongitude());
+				this.computeAltitude(groundElevation);
+				// Only cache the metadata if the ground elevation lookup worked so that it gets retried next time
+				if (Double.isFinite(groundElevation))
+					metadataCache.put(this.getFile(), imageMetadataMap, groundElevation);
+			}
 		}
 		catch (Exception e)
 		{
@@ -76,7 +92,18 @@ public class VideoEntry extends DataContainer
 	 *
 	 * @param imageMetadataMap A mapping of tag -> string with the image's metadata
 	 */
-	protected void readFileMetadataFromMap(Map<Tag, String> imageMetadataMap)
+	public void readFileMetadataFromMap(Map<Tag, String> imageMetadataMap)
+	{
+		this.readFileMetadataFromMap(imageMetadataMap, true);
+	}
+
+	/**
+	 * Given a map of Tag -> String metadata, this method stores the given metadata into the image
+	 *
+	 * @param imageMetadataMap A mapping of tag -> string with the image's metadata
+	 * @param computeAltitude If false the ground elevation is not looked up, and the caller must call computeAltitude() later
+	 */
+	public void readFileMetadataFromMap(Map<Tag, String> imageMetadataMap, Boolean computeAltitude)
 	{
 		// Constant meaning that the metadata attribute was not given in the metadata
 		final String UNSPECIFIED = "Unspecified";
@@ -114,7 +141,8 @@ public class VideoEntry extends DataContainer
 		// Grab the position this image was taken at
 		Position position = this.positionTaken.getValue();
 		// Set the altitude to the position's elevation - the ground elevation position
-		this.altitude.setValue(position.getElevation() - CalliopeData.getInstance().getElevationData().getGroundElevation(position.getLatitude(), position.getLongitude()));
+		if (computeAltitude)
+			this.computeAltitude(CalliopeData.getInstance().getElevationData().getGroundElevation(position.getLatitude(), position.getLongitude()));
 		// Store the file type, focal length, width, and height
 		this.fileType.setValue(imageMetadataMap.getOrDefault(StandardTag.FILE_TYPE, UNSPECIFIED));
 		this.focalLength.setValue(Double.parseDouble(imageMetadataMap.getOrDefault(StandardTag.FOCAL_LENGTH, "0")));
@@ -24,6 +24,36 @@ public class SensitiveConfigurationManager
 	private String elasticSearchHost;
 	// The port of the ES host
 	private Integer elasticSearchPort;
+	// The maximum number of connections to the ES host
+	private Integer elasticSearchMaxConnectionsPerRoute = 20;
+	// The maximum number of connections to every ES host combined
+	private Integer elasticSearchMaxConnectionsTotal = 40;
+	// The number of seconds idle ES connections are kept open
+	private Long elasticSearchKeepAliveSeconds = 60L;
+	// If ES responses and bulk bodies are gzipped
+	private Boolean elasticSearchCompression = true;
+	// The number of threads handling ES network IO
+	private Integer elasticSearchIOThreads = Runtime.getRuntime().availableProcessors();
+	// The directory containing local elevation tiles
+	private File elevationTileDirectory;
+	// The size of an elevation cache grid cell in arc-seconds
+	private Double elevationCacheResolutionArcSeconds = 1.0;
+	// The maximum number of elevation cache entries
+	private Integer elevationCacheSize = 100000;
+	// The file the elevation cache is saved to
+	private File elevationCacheFile = new File("./elevationCache.dat");
+	// The number of TAR files uploaded to CyVerse at once
+	private Integer cyVerseUploadThreads = 4;
+	// The number of files downloaded from CyVerse at once
+	private Integer cyVerseDownloadConnections = 8;
+	// The directory upload journals are stored in
+	private File uploadJournalDirectory = new File("./uploadJournals");
+	// The file the metadata cache is stored in
+	private File metadataCacheFile = new File("./metadataCache.dat");
+	// The maximum size of the metadata cache file in megabytes
+	private Long metadataCacheMaxMegabytes = 512L;
+	// The maximum size of the map's geo-aggregation cache in megabytes
+	private Long mapGeoCacheMaxMegabytes = 64L;
 	// If the configuration loaded successfully
 	private BooleanProperty configurationValid = new SimpleBooleanProperty(false);
 
@@ -60,6 +90,29 @@ public class SensitiveConfigurationManager
 			this.elasticSearchHost = configuration.getString("elasticSearch.host");
 			// Read the configuration file's ES port
 			this.elasticSearchPort = configuration.getInteger("elasticSearch.port", 9200);
+			// Read the configuration file's ES connection settings
+			this.elasticSearchMaxConnectionsPerRoute = configuration.getInteger("elasticSearch.maxConnectionsPerRoute", this.elasticSearchMaxConnectionsPerRoute);
+			this.elasticSearchMaxConnectionsTotal = configuration.getInteger("elasticSearch.maxConnectionsTotal", this.elasticSearchMaxConnectionsTotal);
+			this.elasticSearchKeepAliveSeconds = configuration.getLong("elasticSearch.keepAliveSeconds", this.elasticSearchKeepAliveSeconds);
+			this.elasticSearchCompression = configuration.getBoolean("elasticSearch.compression", this.elasticSearchCompression);
+			this.elasticSearchIOThreads = configuration.getInteger("elasticSearch.ioThreads", this.elasticSearchIOThreads);
+			// Read the configuration file's elevation tile directory
+			this.elevationTileDirectory = new File(configuration.getString("elevation.tileDirectory", "./elevationTiles"));
+			// Read the configuration file's elevation cache settings
+			this.elevationCacheResolutionArcSeconds = configuration.getDouble("elevation.cacheResolutionArcSeconds", this.elevationCacheResolutionArcSeconds);
+			this.elevationCacheSize = configuration.getInteger("elevation.cacheSize", this.elevationCacheSize);
+			this.elevationCacheFile = new File(configuration.getString("elevation.cacheFile", this.elevationCacheFile.getPath()));
+			// Read the configuration file's number of upload threads
+			this.cyVerseUploadThreads = configuration.getInteger("cyverse.uploadThreads", this.cyVerseUploadThreads);
+			// Read the configuration file's number of download connections
+			this.cyVerseDownloadConnections = configuration.getInteger("cyverse.downloadConnections", this.cyVerseDownloadConnections);
+			// Read the configuration file's upload journal directory
+			this.uploadJournalDirectory = new File(configuration.getString("cyverse.uploadJournalDirectory", this.uploadJournalDirectory.getPath()));
+			// Read the configuration file's metadata cache settings
+			this.metadataCacheFile = new File(configuration.getString("metadata.cacheFile", this.metadataCacheFile.getPath()));
+			this.metadataCacheMaxMegabytes = configuration.getLong("metadata.cacheMaxMegabytes", this.metadataCacheMaxMegabytes);
+			// Read the configuration file's map geo-aggregation cache size
+			this.mapGeoCacheMaxMegabytes = configuration.getLong("map.geoCacheMaxMegabytes", this.mapGeoCacheMaxMegabytes);
 
 			// Config is good to go
 			if (this.elasticSearchHost != null)
@@ -95,6 +148,126 @@ public class SensitiveConfigurationManager
 		return this.elasticSearchPort;
 	}
 
+	/**
+	 * @return Getter for the maximum number of connections to the ES host
+	 */
+	public Integer getElasticSearchMaxConnectionsPerRoute()
+	{
+		return this.elasticSearchMaxConnectionsPerRoute;
+	}
+
+	/**
+	 * @return Getter for the maximum number of connections to every ES host combined
+	 */
+	public Integer getElasticSearchMaxConnectionsTotal()
+	{
+		return this.elasticSearchMaxConnectionsTotal;
+	}
+
+	/**
+	 * @return Getter for the number of seconds idle ES connections are kept open
+	 */
+	public Long getElasticSearchKeepAliveSeconds()
+	{
+		return this.elasticSearchKeepAliveSeconds;
+	}
+
+	/**
+	 * @return Getter for if ES responses and bulk bodies are gzipped
+	 */
+	public Boolean getElasticSearchCompression()
+	{
+		return this.elasticSearchCompression;
+	}
+
+	/**
+	 * @return Getter for the number of threads handling ES network IO
+	 */
+	public Integer getElasticSearchIOThreads()
+	{
+		return this.elasticSearchIOThreads;
+	}
+
+	/**
+	 * @return Getter for the local elevation tile directory, may be null if the configuration could not be read
+	 */
+	public File getElevationTileDirectory()
+	{
+		return this.elevationTileDirectory;
+	}
+
+	/**
+	 * @return Getter for the size of an elevation cache grid cell in arc-seconds
+	 */
+	public Double getElevationCacheResolutionArcSeconds()
+	{
+		return this.elevationCacheResolutionArcSeconds;
+	}
+
+	/**
+	 * @return Getter for the maximum number of elevation cache entries
+	 */
+	public Integer getElevationCacheSize()
+	{
+		return this.elevationCacheSize;
+	}
+
+	/**
+	 * @return Getter for the file the elevation cache is saved to
+	 */
+	public File getElevationCacheFile()
+	{
+		return this.elevationCacheFile;
+	}
+
+	/**
+	 * @return Getter for the number of TAR files uploaded to CyVerse at once
+	 */
+	public Integer getCyVerseUploadThreads()
+	{
+		return this.cyVerseUploadThreads;
+	}
+
+	/**
+	 * @return Getter for the number of files downloaded from CyVerse at once
+	 */
+	public Integer getCyVerseDownloadConnections()
+	{
+		return this.cyVerseDownloadConnections;
+	}
+
+	/**
+	 * @return Getter for the directory upload journals are stored in
+	 */
+	public File getUploadJournalDirectory()
+	{
+		return this.uploadJournalDirectory;
+	}
+
+	/**
+	 * @return Getter for the file the metadata cache is stored in
+	 */
+	public File getMetadataCacheFile()
+	{
+		return this.metadataCacheFile;
+	}
+
+	/**
+	 * @return Getter for the maximum size of the metadata cache file in megabytes
+	 */
+	public Long getMetadataCacheMaxMegabytes()
+	{
+		return this.metadataCacheMaxMegabytes;
+	}
+
+	/**
+	 * @return Getter for the maximum size of the map's geo-aggregation cache in megabytes
+	 */
+	public Long getMapGeoCacheMaxMegabytes()
+	{
+		return this.mapGeoCacheMaxMegabytes;
+	}
+
 	/**
 	 * @return True if the configuration was loaded successfully
 	 */
@@ -0,0 +1,75 @@
+package model.threading;
+
+import javafx.application.Platform;
+import model.CalliopeData;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous counterpart to the ReRunnableService. Instead of running a task on an executor thread that blocks until its
+ * request finishes, this service starts a non-blocking request that returns a future. Requesting another run cancels the
+ * request in progress so that only the newest result is ever delivered, and no thread is tied up waiting on stale requests
+ *
+ * @param <T> The type of result the service returns
+ */
+public class ReRunnableAsyncService<T>
+{
+	// The factory used to start a new request, always called on the FX thread
+	private final Supplier<CompletableFuture<T>> requestCreator;
+	// The listeners called on the FX thread with the result of the newest request
+	private final List<Consumer<T>> finishListeners = new ArrayList<>();
+	// The request currently in progress, only touched on the FX thread
+	private CompletableFuture<T> currentRequest = null;
+
+	/**
+	 * Constructor requires one argument, a factory for a request
+	 *
+	 * @param requestCreator The request factory, called on the FX thread so it may read UI state
+	 */
+	public ReRunnableAsyncService(Supplier<CompletableFuture<T>> requestCreator)
+	{
+		this.requestCreator = requestCreator;
+	}
+
+	/**
+	 * Starts a new request, cancelling the one in progress if there is one. Must be called on the FX thread
+	 */
+	public void requestAnotherRun()
+	{
+		// The result of the old request is stale now, so throw it away
+		if (this.currentRequest != null)
+			this.currentRequest.cancel(false);
+
+		CompletableFuture<T> request = this.requestCreator.get();
+		this.currentRequest = request;
+		request.whenComplete((result, exception) -> Platform.runLater(() ->
+		{
+			// Only deliver the result if no newer request was started in the meantime
+			if (this.currentRequest != request)
+				return;
+			this.currentRequest = null;
+
+			if (exception == null)
+				this.finishListeners.forEach(finishListener -> finishListener.accept(result));
+			else if (!(exception instanceof CancellationException))
+				CalliopeData.getInstance().getErrorDisplay().printError("Asynchronous request failed:\n" + ExceptionUtils.getStackTrace(exception));
+		}));
+	}
+
+	/**
+	 * Allows us to add a listener for when the newest request finishes. Takes one argument which is the consumer to take the
+	 * result of the request
+	 *
+	 * @param toExecute The consumer to be called on the FX thread with the result of the request
+	 */
+	public void addFinishListener(Consumer<T> toExecute)
+	{
+		this.finishListeners.add(toExecute);
+	}
+}
@@ -0,0 +1,173 @@
+package model.util;
+
+import org.elasticsearch.common.geo.GeoPoint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Set of utility functions to work with geohash cells, the same cells elastic search's geohash grid aggregation buckets by
+ */
+public class GeohashUtils
+{
+	// The characters used to encode a geohash, 5 bits per character
+	private static final String GEOHASH_ALPHABET = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+	/**
+	 * Counts the number of geohash cells of a precision that cover a bounding box
+	 *
+	 * @param topLeftLat The top left corner's latitude
+	 * @param topLeftLong The top left corner's longitude
+	 * @param bottomRightLat The bottom right corner's latitude
+	 * @param bottomRightLong The bottom right corner's longitude
+	 * @param precision The geohash precision of the cells
+	 * @return The number of cells covering the box
+	 */
+	public static Long countCellsCovering(Double topLeftLat, Double topLeftLong, Double bottomRightLat, Double bottomRightLong, Integer precision)
+	{
+		Integer longitudeBits = longitudeBits(precision);
+		Integer latitudeBits = latitudeBits(precision);
+		Long columns = cellIndex(bottomRightLong, -180.0, 360.0, longitudeBits) - cellIndex(topLeftLong, -180.0, 360.0, longitudeBits) + 1;
+		Long rows = cellIndex(topLeftLat, -90.0, 180.0, latitudeBits) - cellIndex(bottomRightLat, -90.0, 180.0, latitudeBits) + 1;
+		return columns * rows;
+	}
+
+	/**
+	 * Lists the geohash cells of a precision that cover a bounding box
+	 *
+	 * @param topLeftLat The top left corner's latitude
+	 * @param topLeftLong The top left corner's longitude
+	 * @param bottomRightLat The bottom right corner's latitude
+	 * @param bottomRightLong The bottom right corner's longitude
+	 * @param precision The geohash precision of the cells
+	 * @return The geohashes of the cells covering the box
+	 */
+	public static List<String> cellsCovering(Double topLeftLat, Double topLeftLong, Double bottomRightLat, Double bottomRightLong, Integer precision)
+	{
+		Integer longitudeBits = longitudeBits(precision);
+		Integer latitudeBits = latitudeBits(precision);
+
+		List<String> toReturn = new ArrayList<>();
+		for (Long column = cellIndex(topLeftLong, -180.0, 360.0, longitudeBits); column <= cellIndex(bottomRightLong, -180.0, 360.0, longitudeBits); column++)
+			for (Long row = cellIndex(bottomRightLat, -90.0, 180.0, latitudeBits); row <= cellIndex(topLeftLat, -90.0, 180.0, latitudeBits); row++)
+				toReturn.add(encode(column, row, precision));
+		return toReturn;
+	}
+
+	/**
+	 * Computes the top left corner of a geohash cell
+	 *
+	 * @param geohash The geohash of the cell
+	 * @return The top left corner of the cell
+	 */
+	public static GeoPoint topLeftOf(String geohash)
+	{
+		Double[] bounds = decodeBounds(geohash);
+		return new GeoPoint(bounds[1], bounds[2]);
+	}
+
+	/**
+	 * Computes the bottom right corner of a geohash cell
+	 *
+	 * @param geohash The geohash of the cell
+	 * @return The bottom right corner of the cell
+	 */
+	public static GeoPoint bottomRightOf(String geohash)
+	{
+		Double[] bounds = decodeBounds(geohash);
+		return new GeoPoint(bounds[0], bounds[3]);
+	}
+
+	/**
+	 * Decodes a geohash into the bounds of its cell
+	 *
+	 * @param geohash The geohash of the cell
+	 * @return The bounds of the cell as min latitude, max latitude, min longitude, max longitude
+	 */
+	private static Double[] decodeBounds(String geohash)
+	{
+		Double[] bounds = new Double[] { -90.0, 90.0, -180.0, 180.0 };
+		// A geohash interleaves longitude and latitude bits starting with longitude, each bit halves the range
+		Boolean longitudeBit = true;
+		for (char character : geohash.toCharArray())
+		{
+			Integer characterBits = GEOHASH_ALPHABET.indexOf(character);
+			if (characterBits == -1)
+				throw new IllegalArgumentException("Invalid geohash character '" + character + "' in " + geohash);
+			for (Integer bit = 4; bit >= 0; bit--)
+			{
+				Integer minIndex = longitudeBit ? 2 : 0;
+				Double middle = (bounds[minIndex] + bounds[minIndex + 1]) / 2;
+				if (((characterBits >> bit) & 1) == 1)
+					bounds[minIndex] = middle;
+				else
+					bounds[minIndex + 1] = middle;
+				longitudeBit = !longitudeBit;
+			}
+		}
+		return bounds;
+	}
+
+	/**
+	 * Computes the index of the cell a coordinate falls into along one axis
+	 *
+	 * @param coordinate The latitude or longitude
+	 * @param axisMinimum The smallest value on the axis
+	 * @param axisRange The range of values on the axis
+	 * @param bits The number of bits used to index cells on the axis
+	 * @return The index of the cell containing the coordinate
+	 */
+	private static Long cellIndex(Double coordinate, Double axisMinimum, Double axisRange, Integer bits)
+	{
+		Long cellCount = 1L << bits;
+		Long index = (long) Math.floor((coordinate - axisMinimum) / axisRange * cellCount);
+		// The top edge of the axis belongs to the last cell
+		return Math.max(0L, Math.min(cellCount - 1, index));
+	}
+
+	/**
+	 * Encodes a cell's column and row into a geohash string
+	 *
+	 * @param column The index of the cell along the longitude axis
+	 * @param row The index of the cell along the latitude axis
+	 * @param precision The number of characters in the geohash
+	 * @return The geohash of the cell
+	 */
+	private static String encode(Long column, Long row, Integer precision)
+	{
+		Integer longitudeBits = longitudeBits(precision);
+		Integer latitudeBits = latitudeBits(precision);
+
+		// Interleave the bits, most significant first, starting with longitude
+		Long bits = 0L;
+		for (Integer bit = 0; bit < 5 * precision; bit++)
+		{
+			Long nextBit = bit % 2 == 0 ? (column >> (longitudeBits - 1 - bit / 2)) & 1 : (row >> (latitudeBits - 1 - bit / 2)) & 1;
+			bits = (bits << 1) | nextBit;
+		}
+
+		// Then write out 5 bits per character
+		StringBuilder geohash = new StringBuilder(precision);
+		for (Integer character = 0; character < precision; character++)
+			geohash.append(GEOHASH_ALPHABET.charAt((int) ((bits >> (5 * (precision - 1 - character))) & 31)));
+		return geohash.toString();
+	}
+
+	/**
+	 * @param precision The geohash precision
+	 * @return The number of longitude bits in a geohash of the precision, longitude gets the extra bit since it goes first
+	 */
+	private static Integer longitudeBits(Integer precision)
+	{
+		return (5 * precision + 1) / 2;
+	}
+
+	/**
+	 * @param precision The geohash precision
+	 * @return The number of latitude bits in a geohash of the precision
+	 */
+	private static Integer latitudeBits(Integer precision)
+	{
+		return (5 * precision) / 2;
+	}
+}
@@ -0,0 +1,156 @@
+package model.elasticsearch;
+
+import org.apache.http.HttpHost;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.geo.GeoPoint;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.filter.Filter;
+import org.elasticsearch.search.aggregations.bucket.geogrid.GeoGrid;
+import org.elasticsearch.search.aggregations.bucket.geogrid.GeoGridAggregationBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Standalone benchmark comparing the latency of the map's geo-aggregation before and after bucket centers moved from scripted
+ * avg sub-aggregations to a geo_centroid sub-aggregation. Run it against a local test cluster with a populated metadata index:
+ *
+ * java model.elasticsearch.GeoAggregationBenchmark [host] [port] [index] [runs]
+ *
+ * Each variant is run at every precision the map uses with the request cache turned off, after a few warm up runs. The median
+ * and 95th percentile of the server side "took" time and the client round trip are printed for each
+ */
+public class GeoAggregationBenchmark
+{
+	// Defaults used if no arguments are given, a local single node cluster
+	private static final String DEFAULT_HOST = "localhost";
+	private static final Integer DEFAULT_PORT = 9200;
+	private static final String DEFAULT_INDEX = "metadata";
+	private static final Integer DEFAULT_RUNS = 20;
+	// The number of runs thrown away before measuring so that caches and JIT are warm
+	private static final Integer WARM_UP_RUNS = 3;
+	// The precisions to benchmark, from zoomed all the way out to zoomed in on a site
+	private static final Integer[] PRECISIONS = { 2, 4, 6, 8 };
+	// The number of document IDs the old aggregation fetched per bucket, the map's default
+	private static final Integer OLD_DOC_IDS_PER_BUCKET = 100;
+
+	/**
+	 * Runs every variant at every precision and prints the latencies
+	 *
+	 * @param args Optionally the host, port, index, and number of runs
+	 * @throws IOException If elastic search could not be reached
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		String host = args.length > 0 ? args[0] : DEFAULT_HOST;
+		Integer port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+		String index = args.length > 2 ? args[2] : DEFAULT_INDEX;
+		Integer runs = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_RUNS;
+
+		// The aggregations being compared, in the order they are printed
+		Map<String, Function<Integer, GeoGridAggregationBuilder>> variants = new LinkedHashMap<>();
+		variants.put("scripted avg", GeoAggregationBenchmark::scriptedAvgAggregation);
+		variants.put("geo_centroid", GeoAggregationBenchmark::geoCentroidAggregation);
+
+		try (RestHighLevelClient client = new RestHighLevelClient(RestClient.builder(new HttpHost(host, port, "http"))))
+		{
+			System.out.println(String.format("Benchmarking geo-aggregations on %s:%d/%s, %d runs each", host, port, index, runs));
+			System.out.println(String.format("%-14s %9s %8s %12s %12s %14s %14s", "variant", "precision", "buckets", "took p50 ms", "took p95 ms", "round p50 ms", "round p95 ms"));
+			for (Integer precision : PRECISIONS)
+			{
+				for (Map.Entry<String, Function<Integer, GeoGridAggregationBuilder>> variant : variants.entrySet())
+				{
+					SearchRequest searchRequest = buildRequest(index, variant.getValue().apply(precision));
+					List<Double> tookMillis = new ArrayList<>();
+					List<Double> roundTripMillis = new ArrayList<>();
+					Integer bucketCount = 0;
+					for (Integer run = 0; run < WARM_UP_RUNS + runs; run++)
+					{
+						Long startTime = System.nanoTime();
+						SearchResponse searchResponse = client.search(searchRequest, RequestOptions.DEFAULT);
+						Double elapsedMillis = (System.nanoTime() - startTime) / 1E6;
+						if (run >= WARM_UP_RUNS)
+						{
+							tookMillis.add((double) searchResponse.getTook().millis());
+							roundTripMillis.add(elapsedMillis);
+						}
+						Filter filteredCells = searchResponse.getAggregations().get("filtered_cells");
+						bucketCount = ((GeoGrid) filteredCells.getAggregations().get("cells")).getBuckets().size();
+					}
+					System.out.println(String.format("%-14s %9d %8d %12.1f %12.1f %14.1f %14.1f", variant.getKey(), precision, bucketCount, percentile(tookMillis, 0.5), percentile(tookMillis, 0.95), percentile(roundTripMillis, 0.5), percentile(roundTripMillis, 0.95)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * The aggregation the map used before, averaging each bucket's points with a script per document
+	 *
+	 * @param precision The geohash precision
+	 * @return The geohash grid aggregation
+	 */
+	private static GeoGridAggregationBuilder scriptedAvgAggregation(Integer precision)
+	{
+		return AggregationBuilders.geohashGrid("cells").field("imageMetadata.position").precision(precision)
+				.subAggregation(AggregationBuilders.avg("center_lat").script(new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG, "doc['imageMetadata.position'].lat", Collections.emptyMap())))
+				.subAggregation(AggregationBuilders.avg("center_lon").script(new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG, "doc['imageMetadata.position'].lon", Collections.emptyMap())))
+				.subAggregation(AggregationBuilders.terms("document_ids").field("_id").size(OLD_DOC_IDS_PER_BUCKET));
+	}
+
+	/**
+	 * The aggregation the map uses now, a native centroid per bucket with bounded shard sizes
+	 *
+	 * @param precision The geohash precision
+	 * @return The geohash grid aggregation
+	 */
+	private static GeoGridAggregationBuilder geoCentroidAggregation(Integer precision)
+	{
+		return AggregationBuilders.geohashGrid("cells").field("imageMetadata.position").precision(precision)
+				.size(ElasticSearchConnectionManager.MAX_GEO_BUCKETS)
+				.shardSize(ElasticSearchConnectionManager.MAX_GEO_BUCKETS)
+				.subAggregation(AggregationBuilders.geoCentroid("center").field("imageMetadata.position"));
+	}
+
+	/**
+	 * Wraps a geohash grid aggregation in the same whole world filter and search request the map sends
+	 *
+	 * @param index The index to search
+	 * @param geoHashAggregation The aggregation to run
+	 * @return The search request
+	 */
+	private static SearchRequest buildRequest(String index, GeoGridAggregationBuilder geoHashAggregation)
+	{
+		return new SearchRequest()
+				.indices(index)
+				// Measure the aggregation itself, not the shard request cache
+				.requestCache(false)
+				.source(new SearchSourceBuilder()
+						.size(0)
+						.fetchSource(false)
+						.query(QueryBuilders.matchAllQuery())
+						.aggregation(AggregationBuilders
+								.filter("filtered_cells", QueryBuilders.geoBoundingBoxQuery("imageMetadata.position").setCorners(new GeoPoint(90, -180), new GeoPoint(-90, 180)))
+								.subAggregation(geoHashAggregation)));
+	}
+
+	/**
+	 * @param values The measured values
+	 * @param fraction The percentile as a fraction from 0 to 1
+	 * @return The value at that percentile
+	 */
+	private static Double percentile(List<Double> values, Double fraction)
+	{
+		List<Double> sorted = new ArrayList<>(values);
+		Collections.sort(sorted);
+		return sorted.get((int) Math.min(sorted.size() - 1, Math.floor(fraction * sorted.size())));
+	}
+}
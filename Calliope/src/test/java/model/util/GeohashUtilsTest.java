@@ -0,0 +1,124 @@
+package model.util;
+
+import org.elasticsearch.common.geo.GeoPoint;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the geohash cell math the geo-aggregation cache splits the map view into tiles with
+ */
+public class GeohashUtilsTest
+{
+	// Tolerance used when comparing decoded coordinates
+	private static final Double EPSILON = 1E-9;
+
+	/**
+	 * A known geohash decodes to its published cell bounds
+	 */
+	@Test
+	public void decodesKnownGeohash()
+	{
+		// San Francisco, bounds from the reference geohash implementation
+		GeoPoint topLeft = GeohashUtils.topLeftOf("9q8yy");
+		GeoPoint bottomRight = GeohashUtils.bottomRightOf("9q8yy");
+		assertEquals(37.79296875, topLeft.getLat(), EPSILON);
+		assertEquals(-122.431640625, topLeft.getLon(), EPSILON);
+		assertEquals(37.7490234375, bottomRight.getLat(), EPSILON);
+		assertEquals(-122.3876953125, bottomRight.getLon(), EPSILON);
+	}
+
+	/**
+	 * A point encodes to the geohash of the cell it is in
+	 */
+	@Test
+	public void encodesKnownPoints()
+	{
+		assertEquals(Collections.singletonList("9q8yy"), GeohashUtils.cellsCovering(37.77, -122.41, 37.77, -122.41, 5));
+		// Jutland, the example from the original geohash description
+		assertEquals(Collections.singletonList("u4pruydqqvj"), GeohashUtils.cellsCovering(57.64911, 10.40744, 57.64911, 10.40744, 11));
+	}
+
+	/**
+	 * A box inside of a single cell is only covered by that cell
+	 */
+	@Test
+	public void boxInsideCellIsCoveredByThatCell()
+	{
+		assertEquals(Collections.singletonList("9q8yy"), GeohashUtils.cellsCovering(37.79, -122.43, 37.75, -122.39, 5));
+		assertEquals(Long.valueOf(1), GeohashUtils.countCellsCovering(37.79, -122.43, 37.75, -122.39, 5));
+	}
+
+	/**
+	 * The whole world is covered by every cell of a precision
+	 */
+	@Test
+	public void wholeWorldIsCoveredByEveryCell()
+	{
+		List<String> cells = GeohashUtils.cellsCovering(90.0, -180.0, -90.0, 180.0, 1);
+		assertEquals(32, cells.size());
+		assertEquals(32, new HashSet<>(cells).size());
+		assertEquals(Long.valueOf(32 * 32), GeohashUtils.countCellsCovering(90.0, -180.0, -90.0, 180.0, 2));
+	}
+
+	/**
+	 * The number of cells counted covering a box matches the cells listed, and no cell is listed twice
+	 */
+	@Test
+	public void countMatchesCellsListed()
+	{
+		Double[][] boxes = new Double[][]
+		{
+			{ 37.8, -122.5, 37.7, -122.3 },
+			{ 38.0, -123.0, 37.0, -122.0 },
+			{ 1.0, -1.0, -1.0, 1.0 },
+			{ 57.7, 10.3, 57.6, 10.5 }
+		};
+		for (Double[] box : boxes)
+		{
+			for (Integer precision = 1; precision <= 6; precision++)
+			{
+				List<String> cells = GeohashUtils.cellsCovering(box[0], box[1], box[2], box[3], precision);
+				assertEquals(GeohashUtils.countCellsCovering(box[0], box[1], box[2], box[3], precision), Long.valueOf(cells.size()));
+				assertEquals(cells.size(), new HashSet<>(cells).size());
+			}
+		}
+	}
+
+	/**
+	 * Every cell covering a box overlaps the box, and encoding the inside of a cell gives back the same cell
+	 */
+	@Test
+	public void cellCornersRoundTrip()
+	{
+		Double topLeftLat = 37.8;
+		Double topLeftLong = -122.5;
+		Double bottomRightLat = 37.7;
+		Double bottomRightLong = -122.3;
+		for (String cell : GeohashUtils.cellsCovering(topLeftLat, topLeftLong, bottomRightLat, bottomRightLong, 6))
+		{
+			GeoPoint topLeft = GeohashUtils.topLeftOf(cell);
+			GeoPoint bottomRight = GeohashUtils.bottomRightOf(cell);
+			// The cell overlaps the box
+			assertTrue(cell, topLeft.getLat() >= bottomRightLat && bottomRight.getLat() <= topLeftLat);
+			assertTrue(cell, topLeft.getLon() <= bottomRightLong && bottomRight.getLon() >= topLeftLong);
+			// Shrink the cell slightly so its edges don't touch the neighbouring cells, it should then only cover itself
+			Double latInset = (topLeft.getLat() - bottomRight.getLat()) / 4;
+			Double lonInset = (bottomRight.getLon() - topLeft.getLon()) / 4;
+			assertEquals(Collections.singletonList(cell), GeohashUtils.cellsCovering(topLeft.getLat() - latInset, topLeft.getLon() + lonInset, bottomRight.getLat() + latInset, bottomRight.getLon() - lonInset, 6));
+		}
+	}
+
+	/**
+	 * Invalid geohash characters are rejected
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsInvalidGeohash()
+	{
+		GeohashUtils.topLeftOf("9q8ya");
+	}
+}
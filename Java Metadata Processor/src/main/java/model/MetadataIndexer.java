@@ -1,17 +1,22 @@
 package model;
 
 import org.apache.http.HttpHost;
-import org.elasticsearch.action.bulk.BulkRequest;
-import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.bulk.*;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -31,6 +36,19 @@ public class MetadataIndexer
 	// The type that each image is indexed as
 	private static final String ELASTIC_SEARCH_TYPE = "_doc";
 
+	// The maximum number of images sent in a single bulk request
+	private static final Integer MAX_ACTIONS_PER_BULK = 1000;
+	// The maximum size of a single bulk request in megabytes
+	private static final Long MAX_MEGABYTES_PER_BULK = 5L;
+	// The number of bulk requests that may be in flight while more are being built
+	private static final Integer CONCURRENT_BULK_REQUESTS = 2;
+	// The delay before the first retry of rejected images
+	private static final Long INITIAL_RETRY_DELAY_MS = 500L;
+	// The number of times rejected images are retried
+	private static final Integer MAX_RETRIES = 5;
+	// The longest we wait for the last bulk requests to finish
+	private static final Long CLOSE_TIMEOUT_MINUTES = 15L;
+
 	// The converter used to convert raw metadata into index metadata
 	private MetadataConverter metadataConverter = new MetadataConverter();
 
@@ -74,7 +92,8 @@ public class MetadataIndexer
 	}
 
 	/**
-	 * Indexes a list of exif tag -> exif value mappings all at once with bulk optimization
+	 * Indexes a list of exif tag -> exif value mappings with bulk optimization, sent in chunks so large batches never
+	 * become one huge request
 	 *
 	 * @param rawMetadataList The list of raw metadata to index
 	 */
@@ -101,26 +120,70 @@ public class MetadataIndexer
 		// Open a DB connection
 		try (RestHighLevelClient client = new RestHighLevelClient(RestClient.builder(new HttpHost(ELASTIC_SEARCH_HOST, ELASTIC_SEARCH_PORT, ELASTIC_SEARCH_SCHEME))))
 		{
-			// Create a bulk index request
-			BulkRequest bulkRequest = new BulkRequest();
+			// Count how many items were indexed and how many failed across every chunk
+			AtomicInteger succeededCount = new AtomicInteger(0);
+			AtomicInteger failedCount = new AtomicInteger(0);
 
-			// Create an index request for each metadata mapping
+			// Send the metadata in chunks with a limited number in flight, retrying items the cluster rejects because it's overloaded
+			BulkProcessor bulkProcessor = BulkProcessor.builder((bulkRequest, bulkListener) -> client.bulkAsync(bulkRequest, RequestOptions.DEFAULT, bulkListener), new BulkProcessor.Listener()
+			{
+				// Nothing to do before a chunk is sent
+				@Override
+				public void beforeBulk(long executionId, BulkRequest request) {}
+
+				@Override
+				public void afterBulk(long executionId, BulkRequest request, BulkResponse response)
+				{
+					// Print the response and any failures if there were any
+					DroneLogger.logDebug("Index response: " + response.status());
+					for (BulkItemResponse itemResponse : response.getItems())
+					{
+						if (itemResponse.isFailed())
+						{
+							DroneLogger.logError("Indexing item " + itemResponse.getItemId() + " failed: " + itemResponse.getFailureMessage());
+							failedCount.incrementAndGet();
+						}
+						else
+						{
+							succeededCount.incrementAndGet();
+						}
+					}
+				}
+
+				@Override
+				public void afterBulk(long executionId, BulkRequest request, Throwable failure)
+				{
+					// The whole chunk failed, so every item in it failed
+					DroneLogger.logError("Indexing a chunk of " + request.numberOfActions() + " items failed: " + failure);
+					failedCount.addAndGet(request.numberOfActions());
+				}
+			})
+			.setBulkActions(MAX_ACTIONS_PER_BULK)
+			.setBulkSize(new ByteSizeValue(MAX_MEGABYTES_PER_BULK, ByteSizeUnit.MB))
+			.setConcurrentRequests(CONCURRENT_BULK_REQUESTS)
+			.setBackoffPolicy(BackoffPolicy.exponentialBackoff(TimeValue.timeValueMillis(INITIAL_RETRY_DELAY_MS), MAX_RETRIES))
+			.build();
+
+			// Create an index request for each metadata mapping, adding blocks if too many chunks are in flight
 			cleanedMetadataList.forEach(cleanedMetadata ->
 			{
 				IndexRequest request = new IndexRequest()
 						.index(ELASTIC_SEARCH_INDEX)
 						.type(ELASTIC_SEARCH_TYPE)
 						.source(cleanedMetadata);
-				bulkRequest.add(request);
+				bulkProcessor.add(request);
 			});
 
-			// Execute the insert and save the response
-			BulkResponse response = client.bulk(bulkRequest);
-
-			// Print the response and any failures if there were any
-			DroneLogger.logDebug("Index response: " + response.status());
-			if (response.hasFailures())
-				DroneLogger.logDebug(response.buildFailureMessage());
+			// Send the last chunk and wait for everything to finish
+			if (!bulkProcessor.awaitClose(CLOSE_TIMEOUT_MINUTES, TimeUnit.MINUTES))
+				DroneLogger.logError("Timed out waiting for the metadata to be indexed!");
+			DroneLogger.logDebug("Indexed " + succeededCount.get() + " images, " + failedCount.get() + " failed.");
+		}
+		// If we get interrupted while waiting for the index to finish just stop
+		catch (InterruptedException e)
+		{
+			DroneLogger.logError("Interrupted while waiting for the metadata to be indexed!");
+			Thread.currentThread().interrupt();
 		}
 		// If the connection to the elasticsearch server fails catch it here
 		catch (IOException e)